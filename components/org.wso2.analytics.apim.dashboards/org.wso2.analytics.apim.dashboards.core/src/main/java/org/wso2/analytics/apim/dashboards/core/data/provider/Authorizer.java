@@ -21,7 +21,9 @@ import com.google.gson.JsonElement;
 import feign.Response;
 import feign.RetryableException;
 import feign.gson.GsonDecoder;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
@@ -29,6 +31,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.analytics.apim.dashboards.core.bean.TenantIdInfo;
 import org.wso2.analytics.apim.dashboards.core.internal.DashboardAuthorizerServiceFactory;
+import org.wso2.analytics.apim.dashboards.core.internal.DashboardAuthorizerServiceStub;
+import org.wso2.analytics.apim.dashboards.core.internal.TenantIdCache;
 import org.wso2.carbon.analytics.idp.client.core.api.AnalyticsHttpClientBuilderService;
 import org.wso2.carbon.config.ConfigurationException;
 import org.wso2.carbon.config.provider.ConfigProvider;
@@ -52,6 +56,8 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.wso2.carbon.dashboards.core.utils.DashboardUtil.findWidgets;
 
@@ -70,6 +76,10 @@ public class Authorizer implements DataProviderAuthorizer {
     private static final String ADMIN_SERVICE_BASE_URL_KEY = "publisherUrl";
     private static final String ADMIN_USERNAME_KEY = "adminUsername";
     private static final String ADMIN_PASSWORD_KEY = "adminPassword";
+    private static final String TENANT_ID_CACHE_TIMEOUT_KEY = "tenantIdCacheTimeout";
+    private static final long DEFAULT_TENANT_ID_CACHE_TIMEOUT = 86400;
+    private static final String TENANT_INFO_API_PATH = "/api/am/admin/v1/tenant-info";
+    private static final GsonDecoder GSON_DECODER = new GsonDecoder();
     private static final String MAIN_CONFIG = "configs";
     private static final String DATA_PROVIDER_CONFIG = "config";
     private static final String QUERY_DATA = "queryData";
@@ -91,6 +101,31 @@ public class Authorizer implements DataProviderAuthorizer {
     private AnalyticsHttpClientBuilderService clientBuilderService;
     private DashboardMetadataProvider dashboardMetadataProvider;
     private ConfigProvider configProvider;
+    private volatile DashboardAuthorizerServiceStub tenantInfoClient;
+    private volatile TenantIdCache tenantIdCache;
+    private ExecutorService tenantIdRefreshExecutor;
+
+    @Activate
+    protected void activate() {
+        tenantIdRefreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "apim-dashboard-tenant-id-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            initTenantInfoClient();
+        } catch (DataProviderException e) {
+            // the initialization is retried when a tenant id is requested
+            LOGGER.error("Error occurred while initializing the client of the admin rest api.", e);
+        }
+        LOGGER.debug("Authorizer '{}' activated.", this.getClass().getName());
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        tenantIdRefreshExecutor.shutdownNow();
+        LOGGER.debug("Authorizer '{}' deactivated.", this.getClass().getName());
+    }
 
     @Reference(service = DashboardMetadataProvider.class,
             cardinality = ReferenceCardinality.MANDATORY,
@@ -115,11 +150,13 @@ public class Authorizer implements DataProviderAuthorizer {
     )
     protected void registerAnalyticsHttpClient(AnalyticsHttpClientBuilderService service) {
         this.clientBuilderService = service;
+        this.tenantInfoClient = null;
         LOGGER.debug("AnalyticsHttpClientBuilderService '{}' registered.", service.getClass().getName());
     }
 
     protected void unregisterAnalyticsHttpClient(AnalyticsHttpClientBuilderService service) {
         this.clientBuilderService = null;
+        this.tenantInfoClient = null;
         LOGGER.debug("AnalyticsHttpClientBuilderService '{}' unregistered.", service.getClass().getName());
     }
 
@@ -129,11 +166,13 @@ public class Authorizer implements DataProviderAuthorizer {
             unbind = "unsetConfigProvider")
     protected void setConfigProvider(ConfigProvider configProvider) {
         this.configProvider = configProvider;
+        this.tenantInfoClient = null;
         LOGGER.debug("ConfigProvider '{}' registered.", configProvider.getClass().getName());
     }
 
     protected void unsetConfigProvider(ConfigProvider configProvider) {
         this.configProvider = null;
+        this.tenantInfoClient = null;
         LOGGER.debug("ConfigProvider '{}' unregistered.", configProvider.getClass().getName());
     }
 
@@ -290,7 +329,7 @@ public class Authorizer implements DataProviderAuthorizer {
                 contextPath = LIKE_CONTEXT_PATH;
                 contextContainsCondition = STRING_CONTAIN_CONTEXT;
             }
-            String tenantId = getTenantId(username);
+            String tenantId = getTenantId(username, tenantDomain);
             query = query.replace(CONTEXT_CONDITION_KEY, contextPath)
                     .replace(CONTEXT_CONTAINS_CONDITION_KEY, contextContainsCondition)
                     .replace(TENANT_DOMAIN_KEY, tenantDomain)
@@ -309,15 +348,36 @@ public class Authorizer implements DataProviderAuthorizer {
     }
 
     /**
-     * This method replaces the template values in the query with the values sent from front-end.
+     * This method returns the id of the tenant which the logged in user belongs to. The tenant ids are cached per
+     * tenant domain, hence the admin rest api is invoked only once per tenant until the cached id expires.
      *
      * @param username name of the logged in user
+     * @param tenantDomain tenant domain of the logged in user
      * @return id of the tenant
      **/
-    private String getTenantId(String username) throws DataProviderException {
+    private String getTenantId(String username, String tenantDomain) throws DataProviderException {
+        TenantIdCache cache = this.tenantIdCache;
+        if (cache == null) {
+            initTenantInfoClient();
+            cache = this.tenantIdCache;
+        }
+        return cache.getTenantId(tenantDomain, username);
+    }
+
+    /**
+     * This method builds the client of the admin rest api from the auth.configs in the deployment.yaml file, along
+     * with the tenant id cache if it is not created yet.
+     *
+     * @return client of the admin rest api
+     **/
+    private synchronized DashboardAuthorizerServiceStub initTenantInfoClient() throws DataProviderException {
+        if (this.tenantInfoClient != null) {
+            return this.tenantInfoClient;
+        }
         String adminServiceUrl;
         String adminUsername;
         String adminPassword;
+        long tenantIdCacheTimeout = DEFAULT_TENANT_ID_CACHE_TIMEOUT;
         try {
             Map authConfigs = (Map) this.configProvider.getConfigurationObject(AUTH_CONFIGS_HEADER);
             if (authConfigs == null) {
@@ -332,6 +392,9 @@ public class Authorizer implements DataProviderAuthorizer {
                 adminServiceUrl = getPropertyValueFromParentMap(properties, ADMIN_SERVICE_BASE_URL_KEY);
                 adminUsername = getPropertyValueFromParentMap(properties, ADMIN_USERNAME_KEY);
                 adminPassword = getPropertyValueFromParentMap(properties, ADMIN_PASSWORD_KEY);
+                if (properties.get(TENANT_ID_CACHE_TIMEOUT_KEY) != null) {
+                    tenantIdCacheTimeout = Long.parseLong(properties.get(TENANT_ID_CACHE_TIMEOUT_KEY).toString());
+                }
             } else {
                 throw new DataProviderException("Cannot find " + AUTH_CONFIGS_PROPERTIES_HEADER + " header under the "
                         + AUTH_CONFIGS_HEADER + " in the deployment.yaml file.");
@@ -339,21 +402,42 @@ public class Authorizer implements DataProviderAuthorizer {
         } catch (ConfigurationException e) {
             throw new DataProviderException("Error occurred while getting the " + AUTH_CONFIGS_HEADER
                     + " configuration from deployment.yaml file.");
+        } catch (NumberFormatException e) {
+            throw new DataProviderException("Value of the property '" + TENANT_ID_CACHE_TIMEOUT_KEY + "' under "
+                    + AUTH_CONFIGS_HEADER + " in the deployment.yaml file is invalid.", e);
+        }
+        if (tenantIdCacheTimeout <= 0) {
+            throw new DataProviderException("Value of the property '" + TENANT_ID_CACHE_TIMEOUT_KEY + "' under "
+                    + AUTH_CONFIGS_HEADER + " in the deployment.yaml file must be positive.");
+        }
+        this.tenantInfoClient = DashboardAuthorizerServiceFactory.getAuthorizerHttpsClient(this.clientBuilderService,
+                adminServiceUrl + TENANT_INFO_API_PATH, adminUsername, adminPassword);
+        if (this.tenantIdCache == null) {
+            this.tenantIdCache = new TenantIdCache(this::fetchTenantId, this.tenantIdRefreshExecutor,
+                    tenantIdCacheTimeout);
+        }
+        return this.tenantInfoClient;
+    }
+
+    /**
+     * This method invokes the admin rest api to get the id of the tenant which the given user belongs to.
+     *
+     * @param username name of a user of the tenant
+     * @return id of the tenant
+     **/
+    private String fetchTenantId(String username) throws DataProviderException {
+        DashboardAuthorizerServiceStub client = this.tenantInfoClient;
+        if (client == null) {
+            client = initTenantInfoClient();
         }
         try {
             String encodedUsername = Base64.getEncoder().encodeToString(username.getBytes(StandardCharsets.UTF_8));
-            Response response = DashboardAuthorizerServiceFactory
-                    .getAuthorizerHttpsClient(
-                            this.clientBuilderService,
-                            (adminServiceUrl + "/api/am/admin/v1/tenant-info"),
-                            adminUsername,
-                            adminPassword)
-                    .getTenantId(encodedUsername);
+            Response response = client.getTenantId(encodedUsername);
             if (response == null) {
                 throw new DataProviderException("Response returned from the admin rest api is null.");
             } else {
                 if (response.status() == 200) {
-                    TenantIdInfo tenantIdInfo = (TenantIdInfo) new GsonDecoder().decode(response, TenantIdInfo.class);
+                    TenantIdInfo tenantIdInfo = (TenantIdInfo) GSON_DECODER.decode(response, TenantIdInfo.class);
                     if (tenantIdInfo.getTenantId() == null) {
                         throw new DataProviderException("Tenant Id cannot be null");
                     }
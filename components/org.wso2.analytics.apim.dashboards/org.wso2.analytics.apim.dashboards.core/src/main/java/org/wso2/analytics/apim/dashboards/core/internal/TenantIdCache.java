@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.dashboards.core.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.data.provider.exception.DataProviderException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache of tenant ids by tenant domain. The tenant id of a domain is loaded once even if it is requested concurrently,
+ * refreshed in the background once half of its time to live has elapsed, and loaded again only if it expired.
+ */
+public class TenantIdCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TenantIdCache.class);
+
+    private final ConcurrentMap<String, CompletableFuture<Entry>> entries = new ConcurrentHashMap<>();
+    private final TenantIdLoader loader;
+    private final Executor refreshExecutor;
+    private final long timeToLive;
+    private final long refreshInterval;
+    private final LongSupplier clock;
+
+    /**
+     * @param loader          loads the tenant id of the tenant which the given user belongs to
+     * @param refreshExecutor executor used to refresh tenant ids in the background
+     * @param timeToLive      time in seconds for which a tenant id is cached, which must be positive
+     */
+    public TenantIdCache(TenantIdLoader loader, Executor refreshExecutor, long timeToLive) {
+        this(loader, refreshExecutor, timeToLive, System::currentTimeMillis);
+    }
+
+    TenantIdCache(TenantIdLoader loader, Executor refreshExecutor, long timeToLive, LongSupplier clock) {
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("Time to live of the cached tenant ids must be positive.");
+        }
+        this.loader = loader;
+        this.refreshExecutor = refreshExecutor;
+        this.timeToLive = TimeUnit.SECONDS.toMillis(timeToLive);
+        this.refreshInterval = this.timeToLive / 2;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the tenant id of the given tenant domain, loading it with the given user if it is not cached.
+     *
+     * @param tenantDomain tenant domain
+     * @param username     name of a user of the tenant
+     * @return id of the tenant
+     * @throws DataProviderException if the tenant id cannot be loaded
+     */
+    public String getTenantId(String tenantDomain, String username) throws DataProviderException {
+        while (true) {
+            CompletableFuture<Entry> future = entries.get(tenantDomain);
+            if (future == null) {
+                CompletableFuture<Entry> newFuture = new CompletableFuture<>();
+                future = entries.putIfAbsent(tenantDomain, newFuture);
+                if (future == null) {
+                    load(tenantDomain, username, newFuture);
+                    future = newFuture;
+                }
+            }
+            Entry entry = await(future);
+            long age = clock.getAsLong() - entry.loadedTime;
+            if (age >= timeToLive) {
+                entries.remove(tenantDomain, future);
+                continue;
+            }
+            if (age >= refreshInterval && entry.refreshing.compareAndSet(false, true)) {
+                refresh(tenantDomain, future, entry);
+            }
+            return entry.tenantId;
+        }
+    }
+
+    private void load(String tenantDomain, String username, CompletableFuture<Entry> future) {
+        try {
+            future.complete(new Entry(loader.loadTenantId(username), username, clock.getAsLong()));
+        } catch (DataProviderException | RuntimeException e) {
+            // failures are not cached, hence the next request loads the tenant id again
+            entries.remove(tenantDomain, future);
+            future.completeExceptionally(e);
+        }
+    }
+
+    private void refresh(String tenantDomain, CompletableFuture<Entry> future, Entry entry) {
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    Entry newEntry = new Entry(loader.loadTenantId(entry.username), entry.username,
+                            clock.getAsLong());
+                    entries.replace(tenantDomain, future, CompletableFuture.completedFuture(newEntry));
+                } catch (DataProviderException | RuntimeException e) {
+                    LOGGER.warn("Error occurred while refreshing the tenant id of the tenant domain '{}'.",
+                            tenantDomain, e);
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    private static Entry await(CompletableFuture<Entry> future) throws DataProviderException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataProviderException("Interrupted while loading the tenant id.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DataProviderException) {
+                throw new DataProviderException(e.getCause().getMessage(), e.getCause());
+            }
+            throw new DataProviderException("Error occurred while loading the tenant id.", e.getCause());
+        }
+    }
+
+    /**
+     * Loads the id of the tenant which a user belongs to.
+     */
+    @FunctionalInterface
+    public interface TenantIdLoader {
+        String loadTenantId(String username) throws DataProviderException;
+    }
+
+    /**
+     * Cached tenant id, along with the user it was loaded with, so that it can be refreshed.
+     */
+    private static final class Entry {
+
+        private final String tenantId;
+        private final String username;
+        private final long loadedTime;
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+        private Entry(String tenantId, String username, long loadedTime) {
+            this.tenantId = tenantId;
+            this.username = username;
+            this.loadedTime = loadedTime;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.analytics.apim.dashboards.core.internal;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.data.provider.exception.DataProviderException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests of {@link TenantIdCache}.
+ */
+public class TenantIdCacheTest {
+
+    private static final String TENANT_DOMAIN = "wso2.com";
+    private static final String USERNAME = "admin@wso2.com";
+
+    @Test(timeOut = 30000)
+    public void testConcurrentRequestsLoadOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch loadReleased = new CountDownLatch(1);
+        TenantIdCache cache = new TenantIdCache(username -> {
+            loads.incrementAndGet();
+            loadStarted.countDown();
+            try {
+                loadReleased.await();
+            } catch (InterruptedException e) {
+                throw new DataProviderException("Interrupted", e);
+            }
+            return "1";
+        }, Runnable::run, 60);
+        int threadCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                results.add(executor.submit(() -> cache.getTenantId(TENANT_DOMAIN, USERNAME)));
+            }
+            Assert.assertTrue(loadStarted.await(10, TimeUnit.SECONDS));
+            // let the other requests reach the pending load
+            Thread.sleep(100);
+            loadReleased.countDown();
+            for (Future<String> result : results) {
+                Assert.assertEquals(result.get(10, TimeUnit.SECONDS), "1");
+            }
+            Assert.assertEquals(loads.get(), 1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDomainsAreCachedSeparately() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        TenantIdCache cache = new TenantIdCache(username -> {
+            loads.incrementAndGet();
+            return username.endsWith("@" + TENANT_DOMAIN) ? "1" : "2";
+        }, Runnable::run, 60);
+        Assert.assertEquals(cache.getTenantId(TENANT_DOMAIN, USERNAME), "1");
+        Assert.assertEquals(cache.getTenantId("abc.com", "admin@abc.com"), "2");
+        Assert.assertEquals(cache.getTenantId(TENANT_DOMAIN, USERNAME), "1");
+        Assert.assertEquals(cache.getTenantId("abc.com", "admin@abc.com"), "2");
+        Assert.assertEquals(loads.get(), 2);
+    }
+
+    @Test
+    public void testFailureIsNotCached() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        TenantIdCache cache = new TenantIdCache(username -> {
+            if (loads.incrementAndGet() == 1) {
+                throw new DataProviderException("Key manager is unavailable.");
+            }
+            return "1";
+        }, Runnable::run, 60);
+        try {
+            cache.getTenantId(TENANT_DOMAIN, USERNAME);
+            Assert.fail("Returned a tenant id although it could not be loaded.");
+        } catch (DataProviderException e) {
+            Assert.assertEquals(e.getMessage(), "Key manager is unavailable.");
+        }
+        Assert.assertEquals(cache.getTenantId(TENANT_DOMAIN, USERNAME), "1");
+        Assert.assertEquals(loads.get(), 2);
+    }
+
+    @Test
+    public void testExpiredTenantIdIsLoadedAgain() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        AtomicLong time = new AtomicLong(1000);
+        // refreshes are never run, hence the tenant id is only loaded again once it expires
+        TenantIdCache cache = new TenantIdCache(username -> String.valueOf(loads.incrementAndGet()),
+                runnable -> { }, 60, time::get);
+        Assert.assertEquals(cache.getTenantId(TENANT_DOMAIN, USERNAME), "1");
+        time.addAndGet(59999);
+        Assert.assertEquals(cache.getTenantId(TENANT_DOMAIN, USERNAME), "1");
+        time.addAndGet(1);
+        Assert.assertEquals(cache.getTenantId(TENANT_DOMAIN, USERNAME), "2");
+        Assert.assertEquals(loads.get(), 2);
+    }
+
+    @Test
+    public void testTenantIdIsRefreshedBeforeExpiry() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        AtomicLong time = new AtomicLong(1000);
+        TenantIdCache cache = new TenantIdCache(username -> String.valueOf(loads.incrementAndGet()),
+                Runnable::run, 60, time::get);
+        Assert.assertEquals(cache.getTenantId(TENANT_DOMAIN, USERNAME), "1");
+        time.addAndGet(29999);
+        Assert.assertEquals(cache.getTenantId(TENANT_DOMAIN, USERNAME), "1");
+        Assert.assertEquals(loads.get(), 1);
+        time.addAndGet(1);
+        // the cached tenant id is returned while it is refreshed
+        Assert.assertEquals(cache.getTenantId(TENANT_DOMAIN, USERNAME), "1");
+        Assert.assertEquals(cache.getTenantId(TENANT_DOMAIN, USERNAME), "2");
+        Assert.assertEquals(loads.get(), 2);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNonPositiveTimeToLiveIsRejected() {
+        new TenantIdCache(username -> "1", Runnable::run, 0);
+    }
+}
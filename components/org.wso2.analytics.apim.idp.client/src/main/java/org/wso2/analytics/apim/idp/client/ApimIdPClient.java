@@ -17,8 +17,11 @@
  */
 package org.wso2.analytics.apim.idp.client;
 
-import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.gson.Gson;
 import feign.Response;
 import feign.gson.GsonDecoder;
@@ -30,8 +33,9 @@ import org.wso2.analytics.apim.idp.client.dto.CustomUrlInfoDevPortalDTO;
 import org.wso2.analytics.apim.idp.client.dto.DCRClientInfo;
 import org.wso2.analytics.apim.idp.client.dto.DCRClientResponse;
 import org.wso2.analytics.apim.idp.client.dto.DCRError;
+import org.wso2.analytics.apim.idp.client.token.JwtTokenValidator;
 import org.wso2.analytics.apim.idp.client.token.TokenData;
-import org.wso2.analytics.apim.idp.client.token.TokenDataHolder;
+import org.wso2.analytics.apim.idp.client.token.TokenSessionCache;
 import org.wso2.carbon.analytics.idp.client.core.exception.AuthenticationException;
 import org.wso2.carbon.analytics.idp.client.core.exception.IdPClientException;
 import org.wso2.carbon.analytics.idp.client.core.models.Role;
@@ -42,7 +46,6 @@ import org.wso2.carbon.analytics.idp.client.external.dto.OAuth2IntrospectionResp
 import org.wso2.carbon.analytics.idp.client.external.dto.OAuth2TokenInfo;
 import org.wso2.carbon.analytics.idp.client.external.impl.DCRMServiceStub;
 import org.wso2.carbon.analytics.idp.client.external.impl.OAuth2ServiceStubs;
-import org.wso2.carbon.analytics.idp.client.external.models.ExternalSession;
 import org.wso2.carbon.analytics.idp.client.external.models.OAuthApplicationInfo;
 
 import java.io.IOException;
@@ -50,6 +53,14 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static org.wso2.analytics.apim.idp.client.ApimIdPClientConstants.ANY_TENANT_DOMAIN_SCOPE_POSTFIX;
@@ -73,10 +84,20 @@ import static org.wso2.analytics.apim.idp.client.ApimIdPClientConstants.UNDERSCO
 public class ApimIdPClient extends ExternalIdPClient {
 
     private static final Logger LOG = LoggerFactory.getLogger(ApimIdPClient.class);
-    private static final Object OAuthAppCreationLock = new Object();
+    // Gson and the Feign decoder are thread safe, hence shared by all the requests
+    private static final Gson GSON = new Gson();
+    private static final GsonDecoder GSON_DECODER = new GsonDecoder();
     private final String portalAppContext;
     private final String brAppContext;
-    private Map<String, CustomUrlInfo> customUrlInfoMap = new HashMap<>();
+    private Map<String, CustomUrlInfo> customUrlInfoMap = new ConcurrentHashMap<>();
+    // custom url info and system apps rarely change, hence they are cached per tenant and refreshed in the background
+    private final LoadingCache<String, CustomUrlInfo> customUrlInfoCache;
+    private final LoadingCache<SystemAppKey, Optional<OAuthApplicationInfo>> systemAppCache;
+    private volatile boolean isOAuthAppDAOInitialized = false;
+    // registrations in progress, so that system apps of different tenants are registered in parallel while concurrent
+    // logins of the same tenant share a single registration
+    private final Map<SystemAppKey, CompletableFuture<OAuthApplicationInfo>> pendingRegistrations =
+            new ConcurrentHashMap<>();
 
     private DCRMServiceStub dcrmServiceStub;
     private OAuth2ServiceStubs oAuth2ServiceStubs;
@@ -88,7 +109,12 @@ public class ApimIdPClient extends ExternalIdPClient {
     private String adminScopeName;
     private String allScopes;
     private OAuthAppDAO oAuthAppDAO;
-    private Cache<String, ExternalSession> tokenCache;
+    private TokenSessionCache tokenSessionCache;
+    private JwtTokenValidator jwtTokenValidator;
+    private ExecutorService keyManagerExecutor;
+    // introspections in progress, so that concurrent requests carrying the same token share a single introspection
+    private final Map<String, CompletableFuture<OAuth2IntrospectionResponse>> pendingIntrospections =
+            new ConcurrentHashMap<>();
     private boolean isSSOEnabled;
     private String ssoLogoutURL;
     private boolean isHostnameVerifierEnabled;
@@ -99,10 +125,13 @@ public class ApimIdPClient extends ExternalIdPClient {
 
     public ApimIdPClient(String adminServiceUsername, String baseUrl, OAuthAppDAO oAuthAppDAO, String authorizeEndpoint,
                          String grantType, String adminScopeName, String allScopes,
-                         Map<String, OAuthApplicationInfo> oAuthAppInfoMap, int cacheTimeout, String kmUserName,
-                         DCRMServiceStub dcrmServiceStub, OAuth2ServiceStubs oAuth2ServiceStubs,
-                         boolean isSSOEnabled, String ssoLogoutURL, boolean isHostnameVerifierEnabled,
-                         ApimAdminApiClient apimAdminApiClient, String portalAppContext, String brAppContext) {
+                         Map<String, OAuthApplicationInfo> oAuthAppInfoMap, int cacheTimeout, int cacheMaxSize,
+                         int inactiveTokenCacheTimeout, int customUrlCacheTimeout, int systemAppCacheTimeout,
+                         String kmUserName, DCRMServiceStub dcrmServiceStub,
+                         OAuth2ServiceStubs oAuth2ServiceStubs, boolean isSSOEnabled, String ssoLogoutURL,
+                         boolean isHostnameVerifierEnabled, ApimAdminApiClient apimAdminApiClient,
+                         String portalAppContext, String brAppContext, JwtTokenValidator jwtTokenValidator,
+                         ExecutorService keyManagerExecutor) {
         super(baseUrl, authorizeEndpoint, grantType, null, adminScopeName, oAuthAppInfoMap,
                 cacheTimeout, null, dcrmServiceStub, oAuth2ServiceStubs, null, null, isSSOEnabled, ssoLogoutURL, null,
                 null);
@@ -117,26 +146,46 @@ public class ApimIdPClient extends ExternalIdPClient {
         this.oAuthAppDAO = oAuthAppDAO;
         this.dcrmServiceStub = dcrmServiceStub;
         this.oAuth2ServiceStubs = oAuth2ServiceStubs;
-        this.tokenCache = CacheBuilder.newBuilder()
-                .expireAfterWrite(cacheTimeout, TimeUnit.SECONDS)
-                .build();
+        this.tokenSessionCache = new TokenSessionCache(cacheMaxSize, cacheTimeout, inactiveTokenCacheTimeout);
+        this.tokenSessionCache.register();
         this.isSSOEnabled = isSSOEnabled;
         this.ssoLogoutURL = ssoLogoutURL;
         this.isHostnameVerifierEnabled = isHostnameVerifierEnabled;
         this.apimAdminApiClient = apimAdminApiClient;
         this.portalAppContext = portalAppContext;
         this.brAppContext = brAppContext;
+        this.jwtTokenValidator = jwtTokenValidator;
+        this.keyManagerExecutor = keyManagerExecutor;
+        Executor refreshExecutor = keyManagerExecutor != null ? keyManagerExecutor : MoreExecutors.directExecutor();
+        this.customUrlInfoCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(customUrlCacheTimeout, TimeUnit.SECONDS)
+                .refreshAfterWrite(Math.max(1, customUrlCacheTimeout / 2), TimeUnit.SECONDS)
+                .build(CacheLoader.asyncReloading(new CacheLoader<String, CustomUrlInfo>() {
+                    @Override
+                    public CustomUrlInfo load(String tenantDomain) throws IdPClientException {
+                        CustomUrlInfo customUrlInfo = getCustomUrlInfo(tenantDomain);
+                        if (customUrlInfo == null) {
+                            throw new IdPClientException("Unable to retrieve custom url info from APIM Admin API");
+                        }
+                        return customUrlInfo;
+                    }
+                }, refreshExecutor));
+        this.systemAppCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(systemAppCacheTimeout, TimeUnit.SECONDS)
+                .refreshAfterWrite(Math.max(1, systemAppCacheTimeout / 2), TimeUnit.SECONDS)
+                .build(CacheLoader.asyncReloading(new CacheLoader<SystemAppKey, Optional<OAuthApplicationInfo>>() {
+                    @Override
+                    public Optional<OAuthApplicationInfo> load(SystemAppKey key) throws IdPClientException {
+                        return Optional.ofNullable(oAuthAppDAO.getOAuthApp(key.clientName, key.tenantDomain));
+                    }
+                }, refreshExecutor));
     }
 
     public void init(String kmUserName, CustomUrlInfo customUrlInfo, String appContext) throws IdPClientException {
         if (!isHostnameVerifierEnabled) {
             System.setProperty("httpclient.hostnameVerifier", "AllowAll");
         }
-        this.oAuthAppDAO.init();
-        if (!this.oAuthAppDAO.systemAppsTableExists()) {
-            throw new IdPClientException(
-                    OAUTHAPP_TABLE + " does not exist in the " + this.oAuthAppDAO.getDatabaseName() + " database.");
-        }
+        initOAuthAppDAO();
         String clientName = getClientName(appContext);
         String tenantDomain = SUPER_TENANT_DOMAIN;
         String appOwner = kmUserName;
@@ -148,27 +197,116 @@ public class ApimIdPClient extends ExternalIdPClient {
             appOwner = customUrlInfo.getTenantAdminUsername();
         }
 
-        OAuthApplicationInfo persistedOAuthApp = this.oAuthAppDAO.getOAuthApp(clientName, tenantDomain);
+        SystemAppKey systemAppKey = new SystemAppKey(clientName, tenantDomain);
+        OAuthApplicationInfo persistedOAuthApp = getFromCache(systemAppCache, systemAppKey,
+                "Unable to retrieve OAuthApp of client name: " + clientName + " tenant : " + tenantDomain).orElse(null);
         if (persistedOAuthApp == null) {
-            synchronized (OAuthAppCreationLock) {
-                persistedOAuthApp = this.oAuthAppDAO.getOAuthApp(clientName, tenantDomain);
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("System app not found in database for client name: " + clientName + " tenant : " +
-                            tenantDomain + ". Hence creating service provider via DCR.");
-                }
+            persistedOAuthApp = registerSystemApp(systemAppKey, appContext, appOwner, customUrlInfo);
+            // the app is read again from the database by the next login
+            systemAppCache.invalidate(systemAppKey);
+        }
+        if (isCustomUrlApplicable) {
+            appContext = appContext + "_" + customUrlInfo.getTenantDomain();
+        }
+        this.oAuthAppInfoMap.put(appContext, persistedOAuthApp);
+        putCustomUrlInfo(customUrlInfo);
+    }
+
+    /**
+     * Registers the system app of the given key unless it is already in the database. Concurrent calls for the same
+     * key share a single registration.
+     *
+     * @param systemAppKey  client name and tenant domain of the system app
+     * @param appContext    context of the application
+     * @param appOwner      owner of the application
+     * @param customUrlInfo CustomUrlinfo for the tenant domain
+     * @return the registered or persisted system app
+     * @throws IdPClientException thrown when an error occurred while registering the system app
+     */
+    private OAuthApplicationInfo registerSystemApp(SystemAppKey systemAppKey, String appContext, String appOwner,
+                                                   CustomUrlInfo customUrlInfo) throws IdPClientException {
+        CompletableFuture<OAuthApplicationInfo> registration = new CompletableFuture<>();
+        CompletableFuture<OAuthApplicationInfo> pendingRegistration =
+                pendingRegistrations.putIfAbsent(systemAppKey, registration);
+        if (pendingRegistration == null) {
+            try {
+                OAuthApplicationInfo persistedOAuthApp = this.oAuthAppDAO.getOAuthApp(systemAppKey.clientName,
+                        systemAppKey.tenantDomain);
                 if (persistedOAuthApp == null) {
-                    registerApplication(appContext, clientName, appOwner, customUrlInfo);
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("System app not found in database for client name: " + systemAppKey.clientName +
+                                " tenant : " + systemAppKey.tenantDomain +
+                                ". Hence creating service provider via DCR.");
+                    }
+                    persistedOAuthApp = registerApplication(appContext, systemAppKey.clientName, appOwner,
+                            customUrlInfo);
                 }
+                registration.complete(persistedOAuthApp);
+                return persistedOAuthApp;
+            } catch (IdPClientException | RuntimeException e) {
+                registration.completeExceptionally(e);
+                throw e;
+            } finally {
+                pendingRegistrations.remove(systemAppKey, registration);
             }
-        } else {
-            if (isCustomUrlApplicable) {
-                appContext = appContext + "_" + customUrlInfo.getTenantDomain();
+        }
+        try {
+            return pendingRegistration.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdPClientException("Interrupted while registering the system app of client name: " +
+                    systemAppKey.clientName + " tenant : " + systemAppKey.tenantDomain, e);
+        } catch (ExecutionException e) {
+            throw new IdPClientException("Error occurred while registering the system app of client name: " +
+                    systemAppKey.clientName + " tenant : " + systemAppKey.tenantDomain, e.getCause());
+        }
+    }
+
+    /**
+     * Initializes the OAuth app DAO once, and checks whether the system apps table exists.
+     */
+    private void initOAuthAppDAO() throws IdPClientException {
+        if (isOAuthAppDAOInitialized) {
+            return;
+        }
+        synchronized (this.oAuthAppDAO) {
+            if (!isOAuthAppDAOInitialized) {
+                this.oAuthAppDAO.init();
+                if (!this.oAuthAppDAO.systemAppsTableExists()) {
+                    throw new IdPClientException(OAUTHAPP_TABLE + " does not exist in the " +
+                            this.oAuthAppDAO.getDatabaseName() + " database.");
+                }
+                isOAuthAppDAOInitialized = true;
             }
-            this.oAuthAppInfoMap.put(appContext, persistedOAuthApp);
+        }
+    }
+
+    private void putCustomUrlInfo(CustomUrlInfo customUrlInfo) {
+        if (customUrlInfo.getTenantDomain() != null) {
             this.customUrlInfoMap.put(customUrlInfo.getTenantDomain(), customUrlInfo);
         }
     }
 
+    /**
+     * Returns the value of the given key from a loading cache, loading it if it is not cached.
+     *
+     * @param cache        loading cache
+     * @param key          key of the value
+     * @param errorMessage message of the exception thrown if the value cannot be loaded
+     * @throws IdPClientException thrown when the value cannot be loaded
+     */
+    private static <K, V> V getFromCache(LoadingCache<K, V> cache, K key, String errorMessage)
+            throws IdPClientException {
+        try {
+            return cache.get(key);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof IdPClientException) {
+                throw (IdPClientException) e.getCause();
+            }
+            throw new IdPClientException(errorMessage, e.getCause());
+        }
+    }
+
     private String getClientName(String appContext) {
         if (this.portalAppContext.equals(appContext)) {
             return ApimIdPClientConstants.PORTAL_APP_NAME;
@@ -223,18 +361,18 @@ public class ApimIdPClient extends ExternalIdPClient {
     @Override
     public User getUser(String name) throws IdPClientException {
         String tenantDomain = extractTenantDomainFromUserName(name);
-        TokenData tokenData = TokenDataHolder.getInstance().getTokenMap().get(name);
+        TokenData tokenData = tokenSessionCache.getLatestSession(name);
         ArrayList<Role> roles;
         Map<String, String> properties = new HashMap<>();
         if (tokenData == null) {
             if (LOG.isDebugEnabled()) {
-                LOG.debug("Cannot find the token data for the user: " + name + " in the token data map. Hence, cannot" +
-                        " retrieve user scopes. Empty array returned for roles.");
+                LOG.debug("Cannot find the token data for the user: " + name + " in the token session cache. " +
+                        "Hence, cannot retrieve user scopes. Empty array returned for roles.");
             }
             roles = new ArrayList<>();
         } else {
             String scopes = tokenData.getScopes();
-            String[] scopeList = scopes.split(SPACE);
+            String[] scopeList = scopes == null ? new String[0] : scopes.split(SPACE);
             ArrayList<String> newScopes = new ArrayList<>();
             for (String scope: scopeList) {
                 if (!scope.equalsIgnoreCase(OPEN_ID_SCOPE) && !scope.equalsIgnoreCase(API_VIEW_SCOPE)
@@ -243,7 +381,15 @@ public class ApimIdPClient extends ExternalIdPClient {
                     newScopes.add(scope + UNDERSCORE + tenantDomain);
                 }
             }
-            roles = getRolesFromArray(newScopes.toArray(new String[0]));
+            if (newScopes.isEmpty()) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("The token of the user: " + name + " does not have any scopes which are considered "
+                            + "as roles. Empty array returned for roles.");
+                }
+                roles = new ArrayList<>();
+            } else {
+                roles = getRolesFromArray(newScopes.toArray(new String[0]));
+            }
         }
         return new User(name, properties, roles);
     }
@@ -292,13 +438,15 @@ public class ApimIdPClient extends ExternalIdPClient {
     public Map<String, String> login(Map<String, String> properties) throws IdPClientException {
 
         Map<String, String> returnProperties = new HashMap<>();
-        CustomUrlInfo customUrlInfo = getCustomUrlInfo(properties.getOrDefault(IdPClientConstants.DOMAIN,
-                SUPER_TENANT_DOMAIN));
-        if (customUrlInfo == null) {
-            throw new IdPClientException("Unable to retrieve custom url info from APIM Admin API");
-        }
+        CustomUrlInfo customUrlInfo = getFromCache(customUrlInfoCache,
+                properties.getOrDefault(IdPClientConstants.DOMAIN, SUPER_TENANT_DOMAIN),
+                "Unable to retrieve custom url info from APIM Admin API");
         String grantType = properties.getOrDefault(IdPClientConstants.GRANT_TYPE, this.grantType);
         String oAuthAppContext = properties.get(IdPClientConstants.APP_NAME);
+        if (oAuthAppContext == null) {
+            // the app info map does not accept null keys
+            oAuthAppContext = ApimIdPClientConstants.DEFAULT_SP_APP_CONTEXT;
+        }
         if (!IdPClientConstants.REFRESH_GRANT_TYPE.equals(grantType)) {
             this.init(this.kmUserName, customUrlInfo, oAuthAppContext);
         }
@@ -345,7 +493,7 @@ public class ApimIdPClient extends ExternalIdPClient {
                 LOG.debug("A new access token is successfully generated.");
             }
             try {
-                OAuth2TokenInfo oAuth2TokenInfo = (OAuth2TokenInfo) new GsonDecoder().decode(response,
+                OAuth2TokenInfo oAuth2TokenInfo = (OAuth2TokenInfo) GSON_DECODER.decode(response,
                         OAuth2TokenInfo.class);
                 long currentTimeInSeconds = System.currentTimeMillis() / 1000;
                 long tokenValidityPeriod = currentTimeInSeconds + oAuth2TokenInfo.getExpiresIn();
@@ -357,33 +505,23 @@ public class ApimIdPClient extends ExternalIdPClient {
                 if (IdPClientConstants.REFRESH_GRANT_TYPE.equals(grantType)) {
                     returnProperties.put(IdPClientConstants.ID_TOKEN_KEY, oAuth2TokenInfo.getIdToken());
                     /*
-                    * To add the access token(got through the refresh grant flow) to the TokenDataMap, we need to know
-                    * the username. Since the username is not included in the response we get in the refresh token flow,
-                    * an introspection is performed to get the username.
+                    * To add the access token(got through the refresh grant flow) to the token session cache, we need
+                    * to know the username. Since the username is not included in the response we get in the refresh
+                    * token flow, the username is read from the token if it is self-contained, or else an introspection
+                    * is performed to get the username.
                     * */
-                    Response introspectTokenResponse = oAuth2ServiceStubs.getIntrospectionServiceStub()
-                            .introspectAccessToken(oAuth2TokenInfo.getAccessToken());
-                    if (introspectTokenResponse.status() == 200) {   //200 - Success
-                        OAuth2IntrospectionResponse introspectResponse = (OAuth2IntrospectionResponse) new GsonDecoder()
-                                .decode(introspectTokenResponse, OAuth2IntrospectionResponse.class);
-                        username = introspectResponse.getUsername();
-                    } else {
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("Unable to get the username from introspection of the token '" +
-                                    oAuth2TokenInfo.getAccessToken() + "'. Response : '" +
-                                    introspectTokenResponse.toString());
-                        }
+                    String tokenUser = getUsernameOfNewToken(oAuth2TokenInfo.getAccessToken());
+                    if (tokenUser != null) {
+                        username = tokenUser;
                     }
                 }
                 returnProperties.put(IdPClientConstants.USERNAME, username);
-                TokenData tokenData = new TokenData(
+                tokenSessionCache.put(new TokenData(
+                        username,
                         oAuth2TokenInfo.getAccessToken(),
                         oAuth2TokenInfo.getScope(),
                         tokenValidityPeriod
-                );
-                TokenDataHolder.getInstance().addTokenDataToMap(username, tokenData);
-                tokenCache.put(oAuth2TokenInfo.getAccessToken(),
-                        new ExternalSession(username, oAuth2TokenInfo.getAccessToken()));
+                ));
                 return returnProperties;
             } catch (IOException e) {
                 throw new IdPClientException("Error occurred while parsing token response for user. Response: '" +
@@ -412,20 +550,9 @@ public class ApimIdPClient extends ExternalIdPClient {
         if (!this.oAuthAppInfoMap.containsKey(oAuthAppContext)) {
             oAuthAppContext = ApimIdPClientConstants.DEFAULT_SP_APP_CONTEXT;
         }
-        ExternalSession session = tokenCache.getIfPresent(token);
-        String username;
-        if (session == null) {
-            try {
-                OAuth2IntrospectionResponse introspectResponse = getIntrospectResponse(token);
-                username = introspectResponse.getUsername();
-            } catch (AuthenticationException e) {
-                throw new IdPClientException("Error occurred while introspecting the token '" + token + "'.", e);
-            }
-        } else {
-            username = session.getUserName();
-        }
-        TokenDataHolder.getInstance().removeTokenDataFromMap(username);
-        tokenCache.invalidate(token);
+        // sessions are kept per access token, hence other sessions of the same user are not affected. The token is
+        // remembered as revoked, so that it is not accepted again if it is validated locally.
+        tokenSessionCache.revoke(token);
 
         CustomUrlInfo customUrlInfo = customUrlInfoMap.get(tenantDomain);
         String baseUrl = this.baseUrl;
@@ -438,10 +565,9 @@ public class ApimIdPClient extends ExternalIdPClient {
             baseUrl = customUrlInfo.getDevPortalUrlDTO().getUrl();
             ssoLogoutURL = baseUrl + ApimIdPClientConstants.OIDC_LOGOUT_POSTFIX;
         }
-        oAuth2ServiceStubs.getRevokeServiceStub().revokeAccessToken(
-                token,
-                this.oAuthAppInfoMap.get(oAuthAppContext).getClientId(),
-                this.oAuthAppInfoMap.get(oAuthAppContext).getClientSecret());
+        // the session is already removed locally, hence the token is revoked in the key manager in the background
+        OAuthApplicationInfo oAuthApplicationInfo = this.oAuthAppInfoMap.get(oAuthAppContext);
+        executeKeyManagerRequest(() -> revokeAccessToken(token, oAuthApplicationInfo));
 
         Map<String, String> returnProperties = new HashMap<>();
         String idToken = properties.getOrDefault(IdPClientConstants.ID_TOKEN_KEY, null);
@@ -502,7 +628,7 @@ public class ApimIdPClient extends ExternalIdPClient {
                 LOG.debug("A new access token from code is successfully generated for the code '" + code + "'.");
             }
             try {
-                OAuth2TokenInfo oAuth2TokenInfo = (OAuth2TokenInfo) new GsonDecoder().decode(response,
+                OAuth2TokenInfo oAuth2TokenInfo = (OAuth2TokenInfo) GSON_DECODER.decode(response,
                         OAuth2TokenInfo.class);
                 long currentTimeInSeconds = System.currentTimeMillis() / 1000;
                 long tokenValidityPeriod = currentTimeInSeconds + oAuth2TokenInfo.getExpiresIn();
@@ -514,30 +640,15 @@ public class ApimIdPClient extends ExternalIdPClient {
                         Long.toString(oAuth2TokenInfo.getExpiresIn()));
                 returnProperties.put(ApimIdPClientConstants.REDIRECT_URL,
                         baseUrl + (baseUrl.endsWith("/") ? appContext : "/" + appContext));
-                Response introspectTokenResponse = oAuth2ServiceStubs.getIntrospectionServiceStub()
-                        .introspectAccessToken(oAuth2TokenInfo.getAccessToken());
-                String authUser = null;
-                if (introspectTokenResponse.status() == 200) {   //200 - Success
-                    OAuth2IntrospectionResponse introspectResponse = (OAuth2IntrospectionResponse) new GsonDecoder()
-                            .decode(introspectTokenResponse, OAuth2IntrospectionResponse.class);
-                    authUser = introspectResponse.getUsername();
-                    returnProperties.put(IdPClientConstants.USERNAME, authUser);
-                } else {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Unable to get the username from introspection of the token '" +
-                                oAuth2TokenInfo.getAccessToken() + "'. Response : '" +
-                                introspectTokenResponse.toString());
-                    }
-                }
+                String authUser = getUsernameOfNewToken(oAuth2TokenInfo.getAccessToken());
                 if (authUser != null) {
-                    tokenCache.put(oAuth2TokenInfo.getAccessToken(),
-                            new ExternalSession(authUser, oAuth2TokenInfo.getAccessToken()));
-                    TokenData tokenData = new TokenData(
+                    returnProperties.put(IdPClientConstants.USERNAME, authUser);
+                    tokenSessionCache.put(new TokenData(
+                            authUser,
                             oAuth2TokenInfo.getAccessToken(),
                             oAuth2TokenInfo.getScope(),
                             tokenValidityPeriod
-                    );
-                    TokenDataHolder.getInstance().addTokenDataToMap(authUser, tokenData);
+                    ));
                 }
                 return returnProperties;
             } catch (IOException e) {
@@ -559,18 +670,164 @@ public class ApimIdPClient extends ExternalIdPClient {
 
     @Override
     public String authenticate(String token) throws AuthenticationException, IdPClientException {
-        ExternalSession session = tokenCache.getIfPresent(token);
-        if (session != null) {
-            return session.getUserName();
+        TokenData tokenData = tokenSessionCache.getValidatedSession(token);
+        if (tokenData != null) {
+            return tokenData.getUsername();
+        }
+        if (tokenSessionCache.isRevoked(token) || tokenSessionCache.isInactive(token)) {
+            throw new AuthenticationException("The token is not active.");
+        }
+        if (jwtTokenValidator != null) {
+            tokenData = jwtTokenValidator.validate(token);
+            if (tokenData != null) {
+                tokenSessionCache.put(tokenData);
+                // the key manager is asked whether the token is revoked off the request path
+                executeKeyManagerRequest(() -> checkRevocation(token));
+                return tokenData.getUsername();
+            }
         }
-        OAuth2IntrospectionResponse introspectResponse = getIntrospectResponse(token);
+        OAuth2IntrospectionResponse introspectResponse = introspect(token);
         String username = introspectResponse.getUsername();
-        tokenCache.put(token, new ExternalSession(username, token));
-        TokenData tokenData = new TokenData(token, introspectResponse.getScope(), introspectResponse.getExp());
-        TokenDataHolder.getInstance().addTokenDataToMap(username, tokenData);
+        tokenSessionCache.put(new TokenData(username, token, introspectResponse.getScope(),
+                introspectResponse.getExp()));
         return username;
     }
 
+    /**
+     * Returns the user of an access token which was just issued by the key manager. The user is read from the token
+     * if it is self-contained, or else the token is introspected.
+     *
+     * @param accessToken newly issued access token
+     * @return name of the user or null if the user cannot be found
+     */
+    private String getUsernameOfNewToken(String accessToken) throws IOException {
+        if (jwtTokenValidator != null) {
+            try {
+                TokenData tokenData = jwtTokenValidator.validate(accessToken);
+                if (tokenData != null) {
+                    return tokenData.getUsername();
+                }
+            } catch (AuthenticationException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Unable to validate the token '" + accessToken + "' locally. " + e.getMessage());
+                }
+            }
+        }
+        Response introspectTokenResponse = oAuth2ServiceStubs.getIntrospectionServiceStub()
+                .introspectAccessToken(accessToken);
+        if (introspectTokenResponse.status() == 200) {   //200 - Success
+            OAuth2IntrospectionResponse introspectResponse = (OAuth2IntrospectionResponse) GSON_DECODER
+                    .decode(introspectTokenResponse, OAuth2IntrospectionResponse.class);
+            return introspectResponse.getUsername();
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Unable to get the username from introspection of the token '" + accessToken +
+                    "'. Response : '" + introspectTokenResponse.toString());
+        }
+        return null;
+    }
+
+    /**
+     * Revokes the given access token in the key manager.
+     *
+     * @param token                access token
+     * @param oAuthApplicationInfo OAuth application which the token was issued to
+     */
+    private void revokeAccessToken(String token, OAuthApplicationInfo oAuthApplicationInfo) {
+        try {
+            Response response = oAuth2ServiceStubs.getRevokeServiceStub().revokeAccessToken(token,
+                    oAuthApplicationInfo.getClientId(), oAuthApplicationInfo.getClientSecret());
+            if (response == null || response.status() != 200) {
+                LOG.warn("Unable to revoke the token '" + token + "'. Response : '" + response + "'.");
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Error occurred while revoking the token '" + token + "'.", e);
+        }
+    }
+
+    /**
+     * Runs a key manager request whose result is not needed to respond, in the background. The request is run on the
+     * calling thread if the key manager requests are not run in the background or too many of them are pending.
+     *
+     * @param request key manager request
+     */
+    private void executeKeyManagerRequest(Runnable request) {
+        if (keyManagerExecutor != null) {
+            try {
+                keyManagerExecutor.execute(request);
+                return;
+            } catch (RejectedExecutionException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Too many key manager requests are pending. Hence, running the request in the " +
+                            "calling thread.");
+                }
+            }
+        }
+        request.run();
+    }
+
+    /**
+     * Introspects a locally validated token and revokes its session if the token is no longer active.
+     *
+     * @param token token which needs to be checked
+     */
+    private void checkRevocation(String token) {
+        try {
+            introspect(token);
+        } catch (AuthenticationException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("The locally validated token '" + token + "' is revoked.");
+            }
+            tokenSessionCache.revoke(token);
+        } catch (IdPClientException | RuntimeException e) {
+            LOG.warn("Error occurred while checking whether the token '" + token + "' is revoked.", e);
+        }
+    }
+
+    /**
+     * Introspects the given token, joining an introspection of the same token which is already in progress. A token
+     * which is not active is remembered for a short while, so that it is rejected without asking the key manager.
+     *
+     * @param token token which needs to be introspected
+     * @throws IdPClientException      thrown when an error occurred when performing introspect
+     * @throws AuthenticationException thrown when the token is not active
+     * @return the introspect response
+     */
+    private OAuth2IntrospectionResponse introspect(String token) throws IdPClientException, AuthenticationException {
+        CompletableFuture<OAuth2IntrospectionResponse> introspection = new CompletableFuture<>();
+        CompletableFuture<OAuth2IntrospectionResponse> pendingIntrospection =
+                pendingIntrospections.putIfAbsent(token, introspection);
+        if (pendingIntrospection == null) {
+            try {
+                introspection.complete(getIntrospectResponse(token));
+            } catch (AuthenticationException e) {
+                tokenSessionCache.markInactive(token);
+                introspection.completeExceptionally(e);
+            } catch (IdPClientException | RuntimeException e) {
+                introspection.completeExceptionally(e);
+            } finally {
+                pendingIntrospections.remove(token, introspection);
+            }
+            pendingIntrospection = introspection;
+        } else if (LOG.isDebugEnabled()) {
+            LOG.debug("Waiting for the introspection of the token '" + token + "' which is in progress.");
+        }
+        try {
+            return pendingIntrospection.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdPClientException("Interrupted while introspecting the token '" + token + "'.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AuthenticationException) {
+                throw new AuthenticationException(cause.getMessage());
+            } else if (cause instanceof IdPClientException) {
+                throw new IdPClientException(cause.getMessage(), cause);
+            }
+            throw new IdPClientException("Error occurred while introspecting the token '" + token + "'.", cause);
+        }
+    }
+
     /**
      * This method returns response got from the introspection if the introspection is active.
      * @param token  token which needs to be introspected
@@ -589,7 +846,7 @@ public class ApimIdPClient extends ExternalIdPClient {
         try {
             int responseStatus = response.status();
             if (responseStatus == 200) {  //200 - OK
-                OAuth2IntrospectionResponse introspectResponse = (OAuth2IntrospectionResponse) new GsonDecoder()
+                OAuth2IntrospectionResponse introspectResponse = (OAuth2IntrospectionResponse) GSON_DECODER
                         .decode(response, OAuth2IntrospectionResponse.class);
                 if (introspectResponse.isActive()) {
                     return introspectResponse;
@@ -602,7 +859,7 @@ public class ApimIdPClient extends ExternalIdPClient {
                 }
             } else if (responseStatus == 400) {  //400 - Known Error
                 try {
-                    DCRError error = (DCRError) new GsonDecoder().decode(response, DCRError.class);
+                    DCRError error = (DCRError) GSON_DECODER.decode(response, DCRError.class);
                     throw new IdPClientException("Error occurred while introspecting the token. Error: "
                             + error.getErrorCode() + ". Error Description: " + error.getErrorDescription()
                             + ". Status Code: " + responseStatus);
@@ -619,17 +876,17 @@ public class ApimIdPClient extends ExternalIdPClient {
     }
 
     /**
-     * This method registers an application using a DCR call if the OAuth application does not exists. If is exists it
-     * retrieves the application data and saved in oAuthAppInfoMap.
+     * This method registers an application using a DCR call and saves it in the database.
      * @param appContext  context of the application
      * @param clientName name of the client
      * @param kmUserName username of the key manager
      * @param customUrlInfo CustomUrlinfo for the tenant domain
+     * @return the registered application
      * @throws IdPClientException thrown when an error occurred when sending the DCR call or retrieving application
      * data using OAuthAdminService service
      */
-    private void registerApplication(String appContext, String clientName, String kmUserName, CustomUrlInfo
-            customUrlInfo) throws IdPClientException {
+    private OAuthApplicationInfo registerApplication(String appContext, String clientName, String kmUserName,
+                                                     CustomUrlInfo customUrlInfo) throws IdPClientException {
 
         String grantType =
                 IdPClientConstants.AUTHORIZATION_CODE_GRANT_TYPE + SPACE + IdPClientConstants.REFRESH_GRANT_TYPE;
@@ -662,7 +919,7 @@ public class ApimIdPClient extends ExternalIdPClient {
         dcrClientInfo.setSaasApp(true);
         dcrClientInfo.setOwner(kmUserName);
 
-        Response response = dcrmServiceStub.registerApplication(new Gson().toJson(dcrClientInfo));
+        Response response = dcrmServiceStub.registerApplication(GSON.toJson(dcrClientInfo));
         if (response == null) {
             throw new IdPClientException("Error occurred while DCR application '" + dcrClientInfo + "' creation. " +
                     "Response is null.");
@@ -670,18 +927,15 @@ public class ApimIdPClient extends ExternalIdPClient {
         int responseStatus = response.status();
         if (responseStatus == 200) {  //200 - OK
             try {
-                DCRClientResponse dcrClientInfoResponse = (DCRClientResponse) new GsonDecoder()
+                DCRClientResponse dcrClientInfoResponse = (DCRClientResponse) GSON_DECODER
                         .decode(response, DCRClientResponse.class);
                 OAuthApplicationInfo oAuthApplicationInfo = new OAuthApplicationInfo(
                         clientName, dcrClientInfoResponse.getClientId(), dcrClientInfoResponse.getClientSecret()
                 );
                 String tenantDomain = SUPER_TENANT_DOMAIN;
                 if (isCustomUrlApplicable) {
-                    appContext = appContext + "_" + customUrlInfo.getTenantDomain();
                     tenantDomain = customUrlInfo.getTenantDomain();
                 }
-                this.oAuthAppInfoMap.put(appContext, oAuthApplicationInfo);
-                this.customUrlInfoMap.put(customUrlInfo.getTenantDomain(), customUrlInfo);
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("OAuth2 application created: " + oAuthApplicationInfo.toString());
                 }
@@ -689,13 +943,14 @@ public class ApimIdPClient extends ExternalIdPClient {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("System app created: " + oAuthApplicationInfo.toString());
                 }
+                return oAuthApplicationInfo;
             } catch (IOException e) {
                 throw new IdPClientException("Error occurred while parsing the DCR application creation response " +
                         "message. Response: '" + response.body().toString() + "'.", e);
             }
         } else if (responseStatus == 400) {  //400 - Known Error
             try {
-                DCRError error = (DCRError) new GsonDecoder().decode(response, DCRError.class);
+                DCRError error = (DCRError) GSON_DECODER.decode(response, DCRError.class);
                 throw new IdPClientException("Error occurred while DCR application creation. Error: " +
                         error.getErrorCode() + ". Error Description: " + error.getErrorDescription() +
                         ". Status Code: " + responseStatus);
@@ -728,7 +983,7 @@ public class ApimIdPClient extends ExternalIdPClient {
                 LOG.debug("Successfully fetched custom url info for tenant :" + tenantDomain);
             }
             try {
-                customUrlInfo = (CustomUrlInfo) new GsonDecoder().decode(response,
+                customUrlInfo = (CustomUrlInfo) GSON_DECODER.decode(response,
                         CustomUrlInfo.class);
                 if (customUrlInfo != null && customUrlInfo.isEnabled()) {
                     CustomUrlInfoDevPortalDTO customUrlInfoDevPortalDTO = customUrlInfo.getDevPortalUrlDTO();
@@ -746,4 +1001,35 @@ public class ApimIdPClient extends ExternalIdPClient {
         }
         return null;
     }
+
+    /**
+     * Key of a system app, which is registered per client name and tenant domain.
+     */
+    private static final class SystemAppKey {
+
+        private final String clientName;
+        private final String tenantDomain;
+
+        private SystemAppKey(String clientName, String tenantDomain) {
+            this.clientName = clientName;
+            this.tenantDomain = tenantDomain;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SystemAppKey)) {
+                return false;
+            }
+            SystemAppKey that = (SystemAppKey) o;
+            return Objects.equals(clientName, that.clientName) && Objects.equals(tenantDomain, that.tenantDomain);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(clientName, tenantDomain);
+        }
+    }
 }
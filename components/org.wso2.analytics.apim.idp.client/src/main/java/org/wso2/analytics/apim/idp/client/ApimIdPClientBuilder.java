@@ -18,11 +18,13 @@
 package org.wso2.analytics.apim.idp.client;
 
 import org.wso2.analytics.apim.idp.client.dao.OAuthAppDAO;
+import org.wso2.analytics.apim.idp.client.token.JwtTokenValidator;
 import org.wso2.carbon.analytics.idp.client.external.impl.DCRMServiceStub;
 import org.wso2.carbon.analytics.idp.client.external.impl.OAuth2ServiceStubs;
 import org.wso2.carbon.analytics.idp.client.external.models.OAuthApplicationInfo;
 
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  *  Builder class for ApimIdpClient
@@ -38,6 +40,10 @@ public class ApimIdPClientBuilder {
     private String allScopes;
     private Map<String, OAuthApplicationInfo> oAuthAppInfoMap;
     private int cacheTimeout;
+    private int cacheMaxSize;
+    private int inactiveTokenCacheTimeout;
+    private int customUrlCacheTimeout;
+    private int systemAppCacheTimeout;
     private String kmUserName;
     private DCRMServiceStub dcrmServiceStub;
     private OAuth2ServiceStubs oAuth2ServiceStubs;
@@ -47,6 +53,8 @@ public class ApimIdPClientBuilder {
     private ApimAdminApiClient apimAdminApiClient;
     private String portalAppContext;
     private String brAppContext;
+    private JwtTokenValidator jwtTokenValidator;
+    private ExecutorService keyManagerExecutor;
 
     public ApimIdPClientBuilder setAdminServiceUsername(String adminServiceUsername) {
 
@@ -102,6 +110,30 @@ public class ApimIdPClientBuilder {
         return this;
     }
 
+    public ApimIdPClientBuilder setCacheMaxSize(int cacheMaxSize) {
+
+        this.cacheMaxSize = cacheMaxSize;
+        return this;
+    }
+
+    public ApimIdPClientBuilder setInactiveTokenCacheTimeout(int inactiveTokenCacheTimeout) {
+
+        this.inactiveTokenCacheTimeout = inactiveTokenCacheTimeout;
+        return this;
+    }
+
+    public ApimIdPClientBuilder setCustomUrlCacheTimeout(int customUrlCacheTimeout) {
+
+        this.customUrlCacheTimeout = customUrlCacheTimeout;
+        return this;
+    }
+
+    public ApimIdPClientBuilder setSystemAppCacheTimeout(int systemAppCacheTimeout) {
+
+        this.systemAppCacheTimeout = systemAppCacheTimeout;
+        return this;
+    }
+
     public ApimIdPClientBuilder setKmUserName(String kmUserName) {
 
         this.kmUserName = kmUserName;
@@ -156,12 +188,25 @@ public class ApimIdPClientBuilder {
         return this;
     }
 
+    public ApimIdPClientBuilder setJwtTokenValidator(JwtTokenValidator jwtTokenValidator) {
+
+        this.jwtTokenValidator = jwtTokenValidator;
+        return this;
+    }
+
+    public ApimIdPClientBuilder setKeyManagerExecutor(ExecutorService keyManagerExecutor) {
+
+        this.keyManagerExecutor = keyManagerExecutor;
+        return this;
+    }
+
     public ApimIdPClient createApimIdPClient() {
 
         return new ApimIdPClient(adminServiceUsername, baseUrl, oAuthAppDAO, authorizeEndpoint, grantType,
-                adminScopeName, allScopes, oAuthAppInfoMap, cacheTimeout, kmUserName, dcrmServiceStub,
-                oAuth2ServiceStubs, isSSOEnabled, ssoLogoutURL, isHostnameVerifierEnabled, apimAdminApiClient,
-                portalAppContext, brAppContext);
+                adminScopeName, allScopes, oAuthAppInfoMap, cacheTimeout, cacheMaxSize, inactiveTokenCacheTimeout,
+                customUrlCacheTimeout, systemAppCacheTimeout, kmUserName, dcrmServiceStub, oAuth2ServiceStubs,
+                isSSOEnabled, ssoLogoutURL, isHostnameVerifierEnabled, apimAdminApiClient, portalAppContext,
+                brAppContext, jwtTokenValidator, keyManagerExecutor);
     }
 
 
@@ -45,11 +45,20 @@ public class ApimIdPClientConstants {
     public static final String PORTAL_CLIENT_SECRET = "portalClientSecret";
     public static final String BR_DB_CLIENT_SECRET = "businessRulesClientSecret";
     public static final String CACHE_TIMEOUT = "cacheTimeout";
+    public static final String CACHE_MAX_SIZE = "cacheMaxSize";
+    public static final String INACTIVE_TOKEN_CACHE_TIMEOUT = "inactiveTokenCacheTimeout";
+    public static final String CUSTOM_URL_CACHE_TIMEOUT = "customUrlCacheTimeout";
+    public static final String SYSTEM_APP_CACHE_TIMEOUT = "systemAppCacheTimeout";
     public static final String DATABASE_NAME = "databaseName";
     public static final String DCR_APP_OWNER = "dcrAppOwner";
     public static final String CONNECTION_TIMEOUT = "connectionTimeout";
     public static final String READ_TIMEOUT = "readTimeout";
     public static final String EXTERNAL_SSO_LOGOUT_URL = "externalLogoutUrl";
+    public static final String JWT_VALIDATION_ENABLED = "jwtValidationEnabled";
+    public static final String JWKS_URL = "jwksUrl";
+    public static final String JWT_ISSUER = "jwtIssuer";
+    public static final String JWKS_REFRESH_INTERVAL = "jwksRefreshInterval";
+    public static final String KM_REQUEST_THREAD_POOL_SIZE = "kmRequestThreadPoolSize";
 
     public static final String DEFAULT_ADMIN_SERVICE_USERNAME = "admin";
     public static final String DEFAULT_ADMIN_SERVICE_PASSWORD = "admin";
@@ -68,10 +77,18 @@ public class ApimIdPClientConstants {
     public static final String DEFAULT_PORTAL_APP_CONTEXT = "analytics-dashboard";
     public static final String DEFAULT_BR_DB_APP_CONTEXT = "business-rules";
     public static final String DEFAULT_CACHE_TIMEOUT = "30";
+    public static final String DEFAULT_CACHE_MAX_SIZE = "10000";
+    public static final String DEFAULT_INACTIVE_TOKEN_CACHE_TIMEOUT = "10";
+    public static final String DEFAULT_CUSTOM_URL_CACHE_TIMEOUT = "300";
+    public static final String DEFAULT_SYSTEM_APP_CACHE_TIMEOUT = "3600";
     public static final String DEFAULT_DATABASE_NAME = "AM_DB";
     public static final String DEFAULT_CONNECTION_TIMEOUT = "10000";
     public static final String DEFAULT_READ_TIMEOUT = "60000";
     public static final String DEFAULT_EXTERNAL_SSO_LOGOUT_URL = "https://localhost:9443/oidc/logout";
+    public static final String DEFAULT_JWT_VALIDATION_ENABLED = "false";
+    public static final String DEFAULT_JWKS_REFRESH_INTERVAL = "3600";
+    public static final String DEFAULT_KM_REQUEST_THREAD_POOL_SIZE = "10";
+    public static final int KM_REQUEST_QUEUE_SIZE = 1000;
     public static final String SSO_LOGING_ID_TOKEN_TAIL = "?id_token_hint=";
     public static final String POST_LOGOUT_REDIRECT_URI_PHRASE = "&post_logout_redirect_uri=";
 
@@ -95,6 +112,7 @@ public class ApimIdPClientConstants {
     public static final String REVOKE_POSTFIX = "/revoke";
     public static final String TOKEN_POSTFIX = "/token";
     public static final String INTROSPECT_POSTFIX = "/introspect";
+    public static final String JWKS_POSTFIX = "/jwks";
     public static final String AUTHORIZE_POSTFIX = "/authorize";
     public static final String OAUTH2_POSTFIX = "/oauth2";
     public static final String OIDC_LOGOUT_POSTFIX = "/oidc/logout";
@@ -27,7 +27,8 @@ import org.osgi.service.component.annotations.ReferencePolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.analytics.apim.idp.client.dao.OAuthAppDAO;
-import org.wso2.analytics.apim.idp.client.token.TokenDataMapCleaner;
+import org.wso2.analytics.apim.idp.client.token.JwtTokenValidator;
+import org.wso2.analytics.apim.idp.client.token.TokenSessionCache;
 import org.wso2.analytics.apim.idp.client.util.SSLConfiguration;
 import org.wso2.carbon.analytics.idp.client.core.api.AnalyticsHttpClientBuilderService;
 import org.wso2.carbon.analytics.idp.client.core.api.IdPClient;
@@ -44,8 +45,13 @@ import org.wso2.carbon.datasource.core.api.DataSourceService;
 import org.wso2.carbon.kernel.config.model.CarbonConfiguration;
 import org.wso2.carbon.utils.StringUtils;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Factory for APIM IdPClient.
@@ -60,7 +66,8 @@ public class ApimIdPClientFactory implements IdPClientFactory {
     private boolean isHostnameVerifierEnabled;
     private AnalyticsHttpClientBuilderService analyticsHttpClientBuilderService;
     private static final String CUSTOM_URL_API_ENDPOINT = "/api/am/admin/v1/custom-urls";
-    private TokenDataMapCleaner tokenDataMapCleaner;
+    private JwtTokenValidator jwtTokenValidator;
+    private ExecutorService keyManagerExecutor;
 
     private boolean isSSLConfigsExistInConfigProvider = false;
     private String keyStorePassword;
@@ -72,10 +79,6 @@ public class ApimIdPClientFactory implements IdPClientFactory {
     protected void activate(BundleContext bundleContext) {
         LOG.debug("APIM IDP client factory activated.");
 
-        // Start tokenData map cleaner.
-        this.tokenDataMapCleaner = new TokenDataMapCleaner();
-        this.tokenDataMapCleaner.startTokenDataMapCleaner();
-
         // In case keystore/trustore configs are defined in deployment.yaml, override the jvm parameter values set
         // through the carbon.sh files
         if (isSSLConfigsExistInConfigProvider) {
@@ -94,8 +97,18 @@ public class ApimIdPClientFactory implements IdPClientFactory {
     protected void deactivate(BundleContext bundleContext) {
         LOG.debug("APIM IDP client factory deactivated.");
 
-        // Stop tokenData map cleaner.
-        this.tokenDataMapCleaner.stopTokenDataMapCleaner();
+        // Remove the statistics of the token session cache.
+        TokenSessionCache.unregister();
+
+        // Stop refreshing the JSON Web Key Set.
+        if (this.jwtTokenValidator != null) {
+            this.jwtTokenValidator.shutdown();
+        }
+
+        // Stop the threads running the key manager requests in the background.
+        if (this.keyManagerExecutor != null) {
+            this.keyManagerExecutor.shutdown();
+        }
     }
 
     /**
@@ -233,12 +246,14 @@ public class ApimIdPClientFactory implements IdPClientFactory {
                 properties.get(ApimIdPClientConstants.BR_DB_CLIENT_ID),
                 properties.get(ApimIdPClientConstants.BR_DB_CLIENT_SECRET));
 
-        Map<String, OAuthApplicationInfo> oAuthAppInfoMap = new HashMap<>();
+        // Registered system apps are published to this map by concurrent logins.
+        Map<String, OAuthApplicationInfo> oAuthAppInfoMap = new ConcurrentHashMap<>();
         oAuthAppInfoMap.put(ApimIdPClientConstants.DEFAULT_SP_APP_CONTEXT, spOAuthApp);
         oAuthAppInfoMap.put(portalAppContext, portalOAuthApp);
         oAuthAppInfoMap.put(businessAppContext, businessOAuthApp);
 
-        int cacheTimeout, connectionTimeout, readTimeout;
+        int cacheTimeout, cacheMaxSize, inactiveTokenCacheTimeout, customUrlCacheTimeout, systemAppCacheTimeout;
+        int connectionTimeout, readTimeout;
         try {
             cacheTimeout = Integer.parseInt(properties.getOrDefault(ApimIdPClientConstants.CACHE_TIMEOUT,
                     ApimIdPClientConstants.DEFAULT_CACHE_TIMEOUT));
@@ -246,6 +261,37 @@ public class ApimIdPClientFactory implements IdPClientFactory {
             throw new IdPClientException("Cache timeout overriding property '" +
                     properties.get(ApimIdPClientConstants.CACHE_TIMEOUT) + "' is invalid.", e);
         }
+        try {
+            cacheMaxSize = Integer.parseInt(properties.getOrDefault(ApimIdPClientConstants.CACHE_MAX_SIZE,
+                    ApimIdPClientConstants.DEFAULT_CACHE_MAX_SIZE));
+        } catch (NumberFormatException e) {
+            throw new IdPClientException("Cache max size overriding property '" +
+                    properties.get(ApimIdPClientConstants.CACHE_MAX_SIZE) + "' is invalid.", e);
+        }
+        try {
+            inactiveTokenCacheTimeout = Integer.parseInt(properties.getOrDefault(
+                    ApimIdPClientConstants.INACTIVE_TOKEN_CACHE_TIMEOUT,
+                    ApimIdPClientConstants.DEFAULT_INACTIVE_TOKEN_CACHE_TIMEOUT));
+        } catch (NumberFormatException e) {
+            throw new IdPClientException("Inactive token cache timeout overriding property '" +
+                    properties.get(ApimIdPClientConstants.INACTIVE_TOKEN_CACHE_TIMEOUT) + "' is invalid.", e);
+        }
+        try {
+            customUrlCacheTimeout = Integer.parseInt(properties.getOrDefault(
+                    ApimIdPClientConstants.CUSTOM_URL_CACHE_TIMEOUT,
+                    ApimIdPClientConstants.DEFAULT_CUSTOM_URL_CACHE_TIMEOUT));
+        } catch (NumberFormatException e) {
+            throw new IdPClientException("Custom url cache timeout overriding property '" +
+                    properties.get(ApimIdPClientConstants.CUSTOM_URL_CACHE_TIMEOUT) + "' is invalid.", e);
+        }
+        try {
+            systemAppCacheTimeout = Integer.parseInt(properties.getOrDefault(
+                    ApimIdPClientConstants.SYSTEM_APP_CACHE_TIMEOUT,
+                    ApimIdPClientConstants.DEFAULT_SYSTEM_APP_CACHE_TIMEOUT));
+        } catch (NumberFormatException e) {
+            throw new IdPClientException("System app cache timeout overriding property '" +
+                    properties.get(ApimIdPClientConstants.SYSTEM_APP_CACHE_TIMEOUT) + "' is invalid.", e);
+        }
         try {
             connectionTimeout = Integer.parseInt(properties.getOrDefault(ApimIdPClientConstants.CONNECTION_TIMEOUT,
                     ApimIdPClientConstants.DEFAULT_CONNECTION_TIMEOUT));
@@ -260,6 +306,25 @@ public class ApimIdPClientFactory implements IdPClientFactory {
             throw new IdPClientException("Read timeout overriding property '" +
                     properties.get(ApimIdPClientConstants.READ_TIMEOUT) + "' is invalid.", e);
         }
+        int kmRequestThreadPoolSize;
+        try {
+            kmRequestThreadPoolSize = Integer.parseInt(properties.getOrDefault(
+                    ApimIdPClientConstants.KM_REQUEST_THREAD_POOL_SIZE,
+                    ApimIdPClientConstants.DEFAULT_KM_REQUEST_THREAD_POOL_SIZE));
+        } catch (NumberFormatException e) {
+            throw new IdPClientException("Key manager request thread pool size overriding property '" +
+                    properties.get(ApimIdPClientConstants.KM_REQUEST_THREAD_POOL_SIZE) + "' is invalid.", e);
+        }
+        boolean isJwtValidationEnabled = Boolean.parseBoolean(properties.getOrDefault(
+                ApimIdPClientConstants.JWT_VALIDATION_ENABLED, ApimIdPClientConstants.DEFAULT_JWT_VALIDATION_ENABLED));
+        int jwksRefreshInterval;
+        try {
+            jwksRefreshInterval = Integer.parseInt(properties.getOrDefault(ApimIdPClientConstants.JWKS_REFRESH_INTERVAL,
+                    ApimIdPClientConstants.DEFAULT_JWKS_REFRESH_INTERVAL));
+        } catch (NumberFormatException e) {
+            throw new IdPClientException("JWKS refresh interval overriding property '" +
+                    properties.get(ApimIdPClientConstants.JWKS_REFRESH_INTERVAL) + "' is invalid.", e);
+        }
 
         String databaseName = properties.getOrDefault(ApimIdPClientConstants.DATABASE_NAME,
                 ApimIdPClientConstants.DEFAULT_DATABASE_NAME);
@@ -273,6 +338,38 @@ public class ApimIdPClientFactory implements IdPClientFactory {
                 kmTokenUrl + ApimIdPClientConstants.REVOKE_POSTFIX, introspectUrl,
                 kmUsername, kmPassword, connectionTimeout, readTimeout);
 
+        // Self-contained access tokens are validated locally, and the key manager is introspected for opaque tokens.
+        if (this.jwtTokenValidator != null) {
+            this.jwtTokenValidator.shutdown();
+            this.jwtTokenValidator = null;
+        }
+        if (isJwtValidationEnabled) {
+            String jwksUrl = properties.getOrDefault(ApimIdPClientConstants.JWKS_URL,
+                    kmTokenUrl + ApimIdPClientConstants.JWKS_POSTFIX);
+            // the key manager issues tokens with its token endpoint as the issuer by default
+            String jwtIssuer = properties.getOrDefault(ApimIdPClientConstants.JWT_ISSUER,
+                    kmTokenUrl + ApimIdPClientConstants.TOKEN_POSTFIX);
+            JwksClient jwksClient = this.analyticsHttpClientBuilderService
+                    .build(kmUsername, kmPassword, connectionTimeout, readTimeout, JwksClient.class, jwksUrl);
+            this.jwtTokenValidator = new JwtTokenValidator(jwksClient, jwtIssuer, jwksRefreshInterval);
+        }
+
+        // Key manager requests whose results are not needed to respond, e.g. revoking the token on logout, are run by
+        // a bounded pool of threads instead of the HTTP worker threads.
+        if (this.keyManagerExecutor != null) {
+            this.keyManagerExecutor.shutdown();
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor keyManagerExecutor = new ThreadPoolExecutor(kmRequestThreadPoolSize,
+                kmRequestThreadPoolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(ApimIdPClientConstants.KM_REQUEST_QUEUE_SIZE), runnable -> {
+                    Thread thread = new Thread(runnable, "apim-idp-client-km-request-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        keyManagerExecutor.allowCoreThreadTimeOut(true);
+        this.keyManagerExecutor = keyManagerExecutor;
+
         String targetURIForRedirection = properties.getOrDefault(ApimIdPClientConstants.EXTERNAL_SSO_LOGOUT_URL,
                             ApimIdPClientConstants.DEFAULT_EXTERNAL_SSO_LOGOUT_URL);
 
@@ -291,6 +388,10 @@ public class ApimIdPClientFactory implements IdPClientFactory {
                 .setAllScopes(allScopes)
                 .setoAuthAppInfoMap(oAuthAppInfoMap)
                 .setCacheTimeout(cacheTimeout)
+                .setCacheMaxSize(cacheMaxSize)
+                .setInactiveTokenCacheTimeout(inactiveTokenCacheTimeout)
+                .setCustomUrlCacheTimeout(customUrlCacheTimeout)
+                .setSystemAppCacheTimeout(systemAppCacheTimeout)
                 .setKmUserName(dcrAppOwner)
                 .setDcrmServiceStub(dcrmServiceStub)
                 .setoAuth2ServiceStubs(keyManagerServiceStubs)
@@ -300,6 +401,8 @@ public class ApimIdPClientFactory implements IdPClientFactory {
                 .setApimAdminApiClient(apimAdminApiClient)
                 .setPortalAppContext(portalAppContext)
                 .setBrAppContext(businessAppContext)
+                .setJwtTokenValidator(this.jwtTokenValidator)
+                .setKeyManagerExecutor(this.keyManagerExecutor)
                 .createApimIdPClient();
     }
 }
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.idp.client.token;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import feign.Response;
+import feign.gson.GsonDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.analytics.apim.idp.client.JwksClient;
+import org.wso2.carbon.analytics.idp.client.core.exception.AuthenticationException;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.wso2.analytics.apim.idp.client.ApimIdPClientConstants.AT;
+import static org.wso2.analytics.apim.idp.client.ApimIdPClientConstants.SUPER_TENANT_DOMAIN;
+
+/**
+ * Validates self-contained (JWT) access tokens locally against the JSON Web Key Set of the key manager, which is
+ * refreshed in the background. Tokens which cannot be validated locally, e.g. opaque tokens, tokens signed with an
+ * unknown key, tokens of another issuer, or JWTs which are not access tokens such as ID tokens, are left to the
+ * introspection endpoint of the key manager.
+ */
+public class JwtTokenValidator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JwtTokenValidator.class);
+    private static final Map<String, String> SIGNATURE_ALGORITHMS = new HashMap<>();
+    // an unknown key id triggers a refresh of the key set, but not more often than this interval in milliseconds
+    private static final long MIN_REFRESH_INTERVAL = 60000;
+    private static final GsonDecoder GSON_DECODER = new GsonDecoder();
+    // values of the "typ" header of access tokens, in lower case
+    private static final Set<String> ACCESS_TOKEN_TYPES = new HashSet<>(Arrays.asList("jwt", "at+jwt",
+            "application/at+jwt"));
+
+    static {
+        SIGNATURE_ALGORITHMS.put("RS256", "SHA256withRSA");
+        SIGNATURE_ALGORITHMS.put("RS384", "SHA384withRSA");
+        SIGNATURE_ALGORITHMS.put("RS512", "SHA512withRSA");
+    }
+
+    private final JwksClient jwksClient;
+    private final String issuer;
+    private final ScheduledExecutorService executor;
+    private final Gson gson = new Gson();
+    private final AtomicLong lastRefreshRequest = new AtomicLong();
+    private volatile Map<String, PublicKey> keys = Collections.emptyMap();
+
+    /**
+     * @param jwksClient      client of the JWKS endpoint of the key manager
+     * @param issuer          issuer of the tokens of the key manager, which must match the "iss" claim
+     * @param refreshInterval time in seconds between two refreshes of the key set
+     */
+    public JwtTokenValidator(JwksClient jwksClient, String issuer, int refreshInterval) {
+        this.jwksClient = jwksClient;
+        this.issuer = issuer;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "apim-idp-client-jwks-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleWithFixedDelay(this::refreshKeys, 0, refreshInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Validates the signature and the validity period of the given access token locally.
+     *
+     * @param token access token
+     * @return data of the session, or null if the access token cannot be validated locally
+     * @throws AuthenticationException if the access token is a JWT signed by the key manager, which is not valid
+     */
+    public TokenData validate(String token) throws AuthenticationException {
+        int headerEnd = token.indexOf('.');
+        int claimsEnd = headerEnd < 0 ? -1 : token.indexOf('.', headerEnd + 1);
+        if (claimsEnd < 0 || token.indexOf('.', claimsEnd + 1) >= 0) {
+            return null;
+        }
+        JsonObject header;
+        JsonObject claims;
+        byte[] signature;
+        try {
+            header = decodeJson(token.substring(0, headerEnd));
+            claims = decodeJson(token.substring(headerEnd + 1, claimsEnd));
+            signature = Base64.getUrlDecoder().decode(token.substring(claimsEnd + 1));
+        } catch (IllegalArgumentException | JsonParseException e) {
+            // not a JWT, e.g. an opaque token containing dots
+            return null;
+        }
+        if (header == null || claims == null) {
+            return null;
+        }
+        String algorithm = SIGNATURE_ALGORITHMS.get(getString(header, "alg"));
+        String type = getString(header, "typ");
+        if (algorithm == null || (type != null && !ACCESS_TOKEN_TYPES.contains(type.toLowerCase(Locale.ENGLISH)))) {
+            return null;
+        }
+        PublicKey key = getKey(getString(header, "kid"));
+        if (key == null) {
+            requestRefresh();
+            return null;
+        }
+        try {
+            Signature verifier = Signature.getInstance(algorithm);
+            verifier.initVerify(key);
+            verifier.update(token.substring(0, claimsEnd).getBytes(StandardCharsets.US_ASCII));
+            if (!verifier.verify(signature)) {
+                throw new AuthenticationException("The signature of the token is invalid.");
+            }
+        } catch (GeneralSecurityException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Unable to verify the signature of the token locally.", e);
+            }
+            return null;
+        }
+        long currentTime = System.currentTimeMillis() / 1000;
+        long expireTimestamp = getLong(claims, "exp");
+        if (expireTimestamp == 0) {
+            return null;
+        }
+        if (expireTimestamp <= currentTime || getLong(claims, "nbf") > currentTime) {
+            throw new AuthenticationException("The token is not active.");
+        }
+        // only access tokens of this key manager are accepted, which carry the client they are issued to and their
+        // scopes, unlike e.g. ID tokens
+        String subject = getString(claims, "sub");
+        String clientId = getString(claims, "client_id");
+        if (clientId == null) {
+            clientId = getString(claims, "azp");
+        }
+        String scopes = getString(claims, "scope");
+        if (subject == null || clientId == null || scopes == null || !issuer.equals(getString(claims, "iss"))
+                || !isAudience(claims, clientId)) {
+            return null;
+        }
+        // the introspection response carries tenant qualified usernames, and a subject without a tenant domain
+        // belongs to the super tenant
+        String username = subject.contains(AT) ? subject : subject + AT + SUPER_TENANT_DOMAIN;
+        return new TokenData(username, token, scopes, expireTimestamp);
+    }
+
+    /**
+     * Stops refreshing the key set.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private PublicKey getKey(String keyId) {
+        Map<String, PublicKey> currentKeys = keys;
+        if (keyId != null) {
+            return currentKeys.get(keyId);
+        }
+        return currentKeys.size() == 1 ? currentKeys.values().iterator().next() : null;
+    }
+
+    private void requestRefresh() {
+        long currentTime = System.currentTimeMillis();
+        long lastRequest = lastRefreshRequest.get();
+        if (currentTime - lastRequest >= MIN_REFRESH_INTERVAL
+                && lastRefreshRequest.compareAndSet(lastRequest, currentTime)) {
+            executor.execute(this::refreshKeys);
+        }
+    }
+
+    private void refreshKeys() {
+        try {
+            Response response = jwksClient.getJwks();
+            if (response == null || response.status() != 200) {
+                LOG.warn("Unable to retrieve the JSON Web Key Set of the key manager. Response: '" + response + "'.");
+                return;
+            }
+            JsonObject jwks = (JsonObject) GSON_DECODER.decode(response, JsonObject.class);
+            Map<String, PublicKey> newKeys = new HashMap<>();
+            if (jwks != null && jwks.has("keys") && jwks.get("keys").isJsonArray()) {
+                KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+                for (JsonElement element : jwks.getAsJsonArray("keys")) {
+                    JsonObject jwk = element.getAsJsonObject();
+                    String modulus = getString(jwk, "n");
+                    String exponent = getString(jwk, "e");
+                    if (!"RSA".equals(getString(jwk, "kty")) || modulus == null || exponent == null) {
+                        continue;
+                    }
+                    PublicKey key = keyFactory.generatePublic(new RSAPublicKeySpec(
+                            new BigInteger(1, Base64.getUrlDecoder().decode(modulus)),
+                            new BigInteger(1, Base64.getUrlDecoder().decode(exponent))));
+                    String keyId = getString(jwk, "kid");
+                    newKeys.put(keyId != null ? keyId : "", key);
+                }
+            }
+            keys = newKeys;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Retrieved " + newKeys.size() + " keys from the JSON Web Key Set of the key manager.");
+            }
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            LOG.warn("Error occurred while retrieving the JSON Web Key Set of the key manager.", e);
+        }
+    }
+
+    /**
+     * Checks whether the audience of the token, if any, includes the client the token is issued to.
+     */
+    private static boolean isAudience(JsonObject claims, String clientId) {
+        JsonElement audience = claims.get("aud");
+        if (audience == null || audience.isJsonNull()) {
+            return true;
+        }
+        if (audience.isJsonArray()) {
+            for (JsonElement element : audience.getAsJsonArray()) {
+                if (element.isJsonPrimitive() && clientId.equals(element.getAsString())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return audience.isJsonPrimitive() && clientId.equals(audience.getAsString());
+    }
+
+    private JsonObject decodeJson(String part) {
+        return gson.fromJson(new String(Base64.getUrlDecoder().decode(part), StandardCharsets.UTF_8),
+                JsonObject.class);
+    }
+
+    private static String getString(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+    }
+
+    private static long getLong(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        return element != null && element.isJsonPrimitive() && element.getAsJsonPrimitive().isNumber()
+                ? element.getAsLong() : 0;
+    }
+}
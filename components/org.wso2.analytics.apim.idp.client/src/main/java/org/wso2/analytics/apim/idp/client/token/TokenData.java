@@ -18,7 +18,7 @@
 package org.wso2.analytics.apim.idp.client.token;
 
 /**
- *  Data about an access token.
+ * Data of a single session, i.e. an access token and the user it was issued to.
  */
 public class TokenData {
 
@@ -26,6 +26,7 @@ public class TokenData {
      * Example TokenData object ->
      *
      * TokenData{
+     *  username='admin@carbon.super',
      *  token='ce3b65dd-3ab8-3a9a-944f-18b2cf6b46dc',
      *  scopes='apim:api_view apim:subscribe apim_analytics:admin apim_analytics:analytics_viewer
      *      apim_analytics:api_developer apim_analytics:app_developer apim_analytics:devops_engineer
@@ -35,44 +36,63 @@ public class TokenData {
      *
      * */
 
-    private String token;
-    private String scopes;
-    private long expireTimestamp;
+    private final String username;
+    private final String token;
+    private final String scopes;
+    private final long expireTimestamp;
+    private final long validatedTime;
 
-    public TokenData(String token, String scopes, long expireTimestamp) {
+    /**
+     * @param username        name of the user which the access token belongs to
+     * @param token           access token
+     * @param scopes          space separated scopes of the access token
+     * @param expireTimestamp expiry time of the access token in seconds since the epoch, or 0 if unknown
+     */
+    public TokenData(String username, String token, String scopes, long expireTimestamp) {
+        this.username = username;
         this.token = token;
         this.scopes = scopes;
         this.expireTimestamp = expireTimestamp;
+        this.validatedTime = System.currentTimeMillis();
     }
 
-    public String getToken() {
-        return token;
+    public String getUsername() {
+        return username;
     }
 
-    public void setToken(String token) {
-        this.token = token;
+    public String getToken() {
+        return token;
     }
 
     public String getScopes() {
         return scopes;
     }
 
-    public void setScopes(String scopes) {
-        this.scopes = scopes;
-    }
-
     public long getExpireTimestamp() {
         return expireTimestamp;
     }
 
-    public void setExpireTimestamp(long expireTimestamp) {
-        this.expireTimestamp = expireTimestamp;
+    /**
+     * Returns the time in milliseconds at which the token was issued or last validated with the key manager.
+     */
+    public long getValidatedTime() {
+        return validatedTime;
+    }
+
+    /**
+     * Checks whether the access token is expired at the given time.
+     *
+     * @param currentTime time in milliseconds
+     */
+    public boolean isExpired(long currentTime) {
+        return expireTimestamp > 0 && currentTime >= expireTimestamp * 1000;
     }
 
     @Override
     public String toString() {
         return "TokenData{" +
-                "token='" + token + '\'' +
+                "username='" + username + '\'' +
+                ", token='" + token + '\'' +
                 ", scopes='" + scopes + '\'' +
                 ", expireTimestamp=" + expireTimestamp +
                 '}';
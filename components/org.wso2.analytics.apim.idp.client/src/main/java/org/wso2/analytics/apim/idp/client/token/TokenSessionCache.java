@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.idp.client.token;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Bounded cache of the sessions known to the IdP client, keyed by access token, so that concurrent sessions of the
+ * same user are kept separately. A session is dropped when its access token expires, and the least recently used
+ * sessions are evicted when the cache is full. The latest session of every user is indexed by username, so that the
+ * scopes of a user can be looked up. Revoked access tokens are remembered until they expire, so that a self-contained
+ * token is not accepted again after it is revoked. Access tokens reported as inactive by the key manager are
+ * remembered for a short while, so that they are not introspected again by every request carrying them. The
+ * statistics of the cache are registered as an MXBean.
+ */
+public class TokenSessionCache implements TokenSessionCacheMXBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TokenSessionCache.class);
+    private static final String OBJECT_NAME = "org.wso2.analytics.apim:type=IdPClient,name=TokenSessionCache";
+
+    private final Cache<String, TokenData> sessions;
+    private final Map<String, String> latestTokens = new ConcurrentHashMap<>();
+    private final Cache<String, Long> revokedTokens;
+    private final Cache<String, Boolean> inactiveTokens;
+    private final long maximumSize;
+    private final long validationTimeout;
+    private final LongAdder expiredCount = new LongAdder();
+
+    /**
+     * @param maximumSize          maximum number of cached sessions
+     * @param validationTimeout    time in seconds after which a session has to be validated with the key manager again
+     * @param inactiveTokenTimeout time in seconds for which an access token reported as inactive is rejected without
+     *                             asking the key manager
+     */
+    public TokenSessionCache(long maximumSize, int validationTimeout, int inactiveTokenTimeout) {
+        this.maximumSize = maximumSize;
+        this.validationTimeout = TimeUnit.SECONDS.toMillis(validationTimeout);
+        this.sessions = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .removalListener((RemovalListener<String, TokenData>) notification -> {
+                    TokenData tokenData = notification.getValue();
+                    if (tokenData != null && notification.getCause() != RemovalCause.REPLACED) {
+                        latestTokens.remove(tokenData.getUsername(), notification.getKey());
+                    }
+                })
+                .build();
+        this.revokedTokens = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+        this.inactiveTokens = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(inactiveTokenTimeout, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Adds a session, which replaces the latest session of its user.
+     *
+     * @param tokenData data of the session
+     */
+    public void put(TokenData tokenData) {
+        if (tokenData.getToken() == null || tokenData.getUsername() == null) {
+            return;
+        }
+        sessions.put(tokenData.getToken(), tokenData);
+        latestTokens.put(tokenData.getUsername(), tokenData.getToken());
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Added the session of user : " + tokenData.getUsername() + " to the token session cache.");
+        }
+    }
+
+    /**
+     * Returns the session of the given access token, if it was validated with the key manager recently.
+     *
+     * @param token access token
+     * @return data of the session or null if the session is unknown, expired or has to be validated again
+     */
+    public TokenData getValidatedSession(String token) {
+        TokenData tokenData = getSession(token);
+        if (tokenData == null || System.currentTimeMillis() - tokenData.getValidatedTime() >= validationTimeout) {
+            return null;
+        }
+        return tokenData;
+    }
+
+    /**
+     * Returns the session of the given access token.
+     *
+     * @param token access token
+     * @return data of the session or null if the session is unknown or expired
+     */
+    public TokenData getSession(String token) {
+        if (token == null) {
+            return null;
+        }
+        return removeIfExpired(sessions.getIfPresent(token));
+    }
+
+    /**
+     * Returns the latest session of the given user.
+     *
+     * @param username name of the user
+     * @return data of the session or null if the user has no session which is not expired
+     */
+    public TokenData getLatestSession(String username) {
+        String token = username != null ? latestTokens.get(username) : null;
+        return token != null ? getSession(token) : null;
+    }
+
+    /**
+     * Removes the session of the given access token, e.g. when the user logs out.
+     *
+     * @param token access token
+     */
+    public void invalidate(String token) {
+        if (token != null) {
+            sessions.invalidate(token);
+        }
+    }
+
+    /**
+     * Removes the session of the given access token and rejects the access token until it expires, e.g. when the
+     * user logs out or the key manager reports that the access token is no longer active.
+     *
+     * @param token access token
+     */
+    public void revoke(String token) {
+        if (token == null) {
+            return;
+        }
+        TokenData tokenData = sessions.asMap().remove(token);
+        revokedTokens.put(token, tokenData != null ? tokenData.getExpireTimestamp() : 0L);
+    }
+
+    /**
+     * Checks whether the given access token is revoked.
+     *
+     * @param token access token
+     * @return true if the access token was revoked and is not expired yet
+     */
+    public boolean isRevoked(String token) {
+        Long expireTimestamp = token != null ? revokedTokens.getIfPresent(token) : null;
+        if (expireTimestamp == null) {
+            return false;
+        }
+        if (expireTimestamp > 0 && System.currentTimeMillis() >= expireTimestamp * 1000) {
+            // an expired access token is rejected anyway
+            revokedTokens.invalidate(token);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remembers that the key manager reported the given access token as inactive.
+     *
+     * @param token access token
+     */
+    public void markInactive(String token) {
+        if (token != null) {
+            sessions.invalidate(token);
+            inactiveTokens.put(token, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Checks whether the key manager recently reported the given access token as inactive.
+     *
+     * @param token access token
+     * @return true if the access token was reported as inactive within the inactive token timeout
+     */
+    public boolean isInactive(String token) {
+        return token != null && inactiveTokens.getIfPresent(token) != null;
+    }
+
+    private TokenData removeIfExpired(TokenData tokenData) {
+        if (tokenData != null && tokenData.isExpired(System.currentTimeMillis())) {
+            if (sessions.asMap().remove(tokenData.getToken(), tokenData)) {
+                expiredCount.increment();
+            }
+            return null;
+        }
+        return tokenData;
+    }
+
+    /**
+     * Registers the statistics of this cache in the platform MBean server, replacing the cache of a previously
+     * created client.
+     */
+    public void register() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(this, objectName);
+        } catch (JMException e) {
+            LOG.warn("Error occurred while registering the token session cache MBean.", e);
+        }
+    }
+
+    /**
+     * Removes the statistics of the token session cache from the platform MBean server.
+     */
+    public static void unregister() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            LOG.warn("Error occurred while unregistering the token session cache MBean.", e);
+        }
+    }
+
+    @Override
+    public long getSize() {
+        return sessions.size();
+    }
+
+    @Override
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    @Override
+    public long getHitCount() {
+        return sessions.stats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return sessions.stats().missCount();
+    }
+
+    @Override
+    public double getHitRate() {
+        return sessions.stats().hitRate();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return sessions.stats().evictionCount();
+    }
+
+    @Override
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.analytics.apim.idp.client.token;
+
+/**
+ * Management interface exposing the statistics of the token session cache.
+ */
+public interface TokenSessionCacheMXBean {
+
+    /**
+     * Returns the number of cached sessions, including expired sessions which are not evicted yet.
+     */
+    long getSize();
+
+    /**
+     * Returns the maximum number of cached sessions.
+     */
+    long getMaximumSize();
+
+    /**
+     * Returns the number of lookups which found a session.
+     */
+    long getHitCount();
+
+    /**
+     * Returns the number of lookups which did not find a session.
+     */
+    long getMissCount();
+
+    /**
+     * Returns the ratio of lookups which found a session.
+     */
+    double getHitRate();
+
+    /**
+     * Returns the number of sessions evicted due to the size limit.
+     */
+    long getEvictionCount();
+
+    /**
+     * Returns the number of sessions removed since their access token expired.
+     */
+    long getExpiredCount();
+}
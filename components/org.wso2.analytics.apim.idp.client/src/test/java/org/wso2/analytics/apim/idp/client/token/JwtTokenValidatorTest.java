@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.analytics.apim.idp.client.token;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import feign.Response;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.analytics.idp.client.core.exception.AuthenticationException;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests of {@link JwtTokenValidator} with tokens signed by a key pair published through a stub JWKS endpoint.
+ */
+public class JwtTokenValidatorTest {
+
+    private static final String ISSUER = "https://localhost:9443/oauth2/token";
+    private static final String KEY_ID = "key-1";
+    private static final String CLIENT_ID = "client-1";
+    private static final String SCOPES = "apim_analytics:admin openid";
+
+    private KeyPair keyPair;
+    private KeyPair otherKeyPair;
+    private JwtTokenValidator validator;
+
+    @BeforeClass
+    public void createValidator() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        keyPair = keyPairGenerator.generateKeyPair();
+        otherKeyPair = keyPairGenerator.generateKeyPair();
+        String jwks = createJwks((RSAPublicKey) keyPair.getPublic());
+        validator = new JwtTokenValidator(() -> Response.builder().status(200).headers(Collections.emptyMap())
+                .body(jwks, StandardCharsets.UTF_8).build(), ISSUER, 3600);
+        // the key set is retrieved in the background
+        String token = sign(header(KEY_ID), claims());
+        long deadline = System.currentTimeMillis() + 10000;
+        while (validator.validate(token) == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @AfterClass
+    public void shutdown() {
+        validator.shutdown();
+    }
+
+    @Test
+    public void testValidToken() throws Exception {
+        String token = sign(header(KEY_ID), claims());
+        TokenData tokenData = validator.validate(token);
+        Assert.assertNotNull(tokenData);
+        Assert.assertEquals(tokenData.getUsername(), "admin@carbon.super");
+        Assert.assertEquals(tokenData.getToken(), token);
+        Assert.assertEquals(tokenData.getScopes(), SCOPES);
+        Assert.assertEquals(tokenData.getExpireTimestamp(), claims().get("exp").getAsLong(), 60);
+    }
+
+    @Test
+    public void testTenantQualifiedSubject() throws Exception {
+        JsonObject claims = claims();
+        claims.addProperty("sub", "user@wso2.com");
+        Assert.assertEquals(validator.validate(sign(header(KEY_ID), claims)).getUsername(), "user@wso2.com");
+    }
+
+    @Test(expectedExceptions = AuthenticationException.class)
+    public void testInvalidSignature() throws Exception {
+        validator.validate(sign(header(KEY_ID), claims(), otherKeyPair));
+    }
+
+    @Test(expectedExceptions = AuthenticationException.class)
+    public void testTamperedClaims() throws Exception {
+        String token = sign(header(KEY_ID), claims());
+        JsonObject claims = claims();
+        claims.addProperty("sub", "other");
+        String[] parts = token.split("\\.");
+        validator.validate(parts[0] + "." + encode(claims.toString()) + "." + parts[2]);
+    }
+
+    @Test(expectedExceptions = AuthenticationException.class)
+    public void testExpiredToken() throws Exception {
+        JsonObject claims = claims();
+        claims.addProperty("exp", System.currentTimeMillis() / 1000 - 10);
+        validator.validate(sign(header(KEY_ID), claims));
+    }
+
+    @Test(expectedExceptions = AuthenticationException.class)
+    public void testTokenNotYetValid() throws Exception {
+        JsonObject claims = claims();
+        claims.addProperty("nbf", System.currentTimeMillis() / 1000 + 600);
+        validator.validate(sign(header(KEY_ID), claims));
+    }
+
+    @Test(timeOut = 30000)
+    public void testUnknownKeyIdIsIntrospected() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        CountDownLatch firstRequest = new CountDownLatch(1);
+        String jwks = createJwks((RSAPublicKey) keyPair.getPublic());
+        JwtTokenValidator newValidator = new JwtTokenValidator(() -> {
+            if (requests.incrementAndGet() == 1) {
+                try {
+                    firstRequest.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return Response.builder().status(200).headers(Collections.emptyMap())
+                    .body(jwks, StandardCharsets.UTF_8).build();
+        }, ISSUER, 3600);
+        try {
+            Assert.assertNull(newValidator.validate(sign(header("unknown-key"), claims(), otherKeyPair)));
+            firstRequest.countDown();
+            // an unknown key triggers a refresh of the key set
+            while (requests.get() < 2) {
+                Thread.sleep(10);
+            }
+        } finally {
+            newValidator.shutdown();
+        }
+    }
+
+    @Test
+    public void testForeignTokensAreIntrospected() throws Exception {
+        JsonObject otherIssuer = claims();
+        otherIssuer.addProperty("iss", "https://other:9443/oauth2/token");
+        Assert.assertNull(validator.validate(sign(header(KEY_ID), otherIssuer)));
+        JsonObject noIssuer = claims();
+        noIssuer.remove("iss");
+        Assert.assertNull(validator.validate(sign(header(KEY_ID), noIssuer)));
+        JsonObject noScope = claims();
+        noScope.remove("scope");
+        Assert.assertNull(validator.validate(sign(header(KEY_ID), noScope)));
+        JsonObject noClient = claims();
+        noClient.remove("client_id");
+        Assert.assertNull(validator.validate(sign(header(KEY_ID), noClient)));
+        JsonObject otherAudience = claims();
+        otherAudience.addProperty("aud", "client-2");
+        Assert.assertNull(validator.validate(sign(header(KEY_ID), otherAudience)));
+        JsonObject idTokenHeader = header(KEY_ID);
+        idTokenHeader.addProperty("typ", "id_token+jwt");
+        Assert.assertNull(validator.validate(sign(idTokenHeader, claims())));
+        JsonObject hmacHeader = header(KEY_ID);
+        hmacHeader.addProperty("alg", "HS256");
+        Assert.assertNull(validator.validate(sign(hmacHeader, claims())));
+        JsonObject noExpiry = claims();
+        noExpiry.remove("exp");
+        Assert.assertNull(validator.validate(sign(header(KEY_ID), noExpiry)));
+    }
+
+    @Test
+    public void testAuthorizedPartyAndAudience() throws Exception {
+        JsonObject claims = claims();
+        claims.remove("client_id");
+        claims.addProperty("azp", CLIENT_ID);
+        JsonArray audience = new JsonArray();
+        audience.add("other");
+        audience.add(CLIENT_ID);
+        claims.add("aud", audience);
+        JsonObject header = header(KEY_ID);
+        header.addProperty("typ", "at+jwt");
+        Assert.assertNotNull(validator.validate(sign(header, claims)));
+    }
+
+    @Test
+    public void testOpaqueTokens() throws Exception {
+        Assert.assertNull(validator.validate("ce3b65dd-3ab8-3a9a-944f-18b2cf6b46dc"));
+        Assert.assertNull(validator.validate("a.b.c"));
+        Assert.assertNull(validator.validate("a.b.c.d"));
+    }
+
+    private static JsonObject header(String keyId) {
+        JsonObject header = new JsonObject();
+        header.addProperty("typ", "JWT");
+        header.addProperty("alg", "RS256");
+        header.addProperty("kid", keyId);
+        return header;
+    }
+
+    private static JsonObject claims() {
+        long currentTime = System.currentTimeMillis() / 1000;
+        JsonObject claims = new JsonObject();
+        claims.addProperty("sub", "admin");
+        claims.addProperty("iss", ISSUER);
+        claims.addProperty("aud", CLIENT_ID);
+        claims.addProperty("client_id", CLIENT_ID);
+        claims.addProperty("scope", SCOPES);
+        claims.addProperty("iat", currentTime);
+        claims.addProperty("nbf", currentTime);
+        claims.addProperty("exp", currentTime + 3600);
+        return claims;
+    }
+
+    private String sign(JsonObject header, JsonObject claims) throws GeneralSecurityException {
+        return sign(header, claims, keyPair);
+    }
+
+    private static String sign(JsonObject header, JsonObject claims, KeyPair keyPair)
+            throws GeneralSecurityException {
+        String content = encode(header.toString()) + "." + encode(claims.toString());
+        Signature signer = Signature.getInstance("SHA256withRSA");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(content.getBytes(StandardCharsets.US_ASCII));
+        return content + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(signer.sign());
+    }
+
+    private static String encode(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String createJwks(RSAPublicKey publicKey) {
+        JsonObject jwk = new JsonObject();
+        jwk.addProperty("kty", "RSA");
+        jwk.addProperty("kid", KEY_ID);
+        jwk.addProperty("n", encodeUnsigned(publicKey.getModulus()));
+        jwk.addProperty("e", encodeUnsigned(publicKey.getPublicExponent()));
+        JsonArray keys = new JsonArray();
+        keys.add(jwk);
+        JsonObject jwks = new JsonObject();
+        jwks.add("keys", keys);
+        return jwks.toString();
+    }
+
+    private static String encodeUnsigned(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
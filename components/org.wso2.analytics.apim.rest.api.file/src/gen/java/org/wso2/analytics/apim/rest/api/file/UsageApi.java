@@ -1,6 +1,7 @@
 package org.wso2.analytics.apim.rest.api.file;
 
 import org.osgi.service.component.annotations.Component;
+import org.wso2.analytics.apim.rest.api.file.dto.UsageMetricsDTO;
 import org.wso2.analytics.apim.rest.api.file.factories.UsageApiServiceFactory;
 import org.wso2.carbon.analytics.msf4j.interceptor.common.AuthenticationInterceptor;
 import org.wso2.msf4j.Microservice;
@@ -12,6 +13,7 @@ import org.wso2.msf4j.interceptor.annotation.RequestInterceptor;
 import java.io.InputStream;
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
@@ -31,6 +33,24 @@ import javax.ws.rs.core.Response;
 public class UsageApi implements Microservice  {
    private final UsageApiService delegate = UsageApiServiceFactory.getUsageApi();
 
+    @GET
+    @Path("/metrics/")
+    @Consumes({ "application/json" })
+    @Produces({ "application/json" })
+    @io.swagger.annotations.ApiOperation(value = "Usage Ingestion Metrics ", notes = "Returns the ingestion metrics of the uploaded usage files, such as the backlog of files and the processing rates. ", response = UsageMetricsDTO.class, authorizations = {
+        @io.swagger.annotations.Authorization(value = "OAuth2Security", scopes = {
+            
+        })
+    }, tags={  })
+    @io.swagger.annotations.ApiResponses(value = { 
+        @io.swagger.annotations.ApiResponse(code = 200, message = "OK. Metrics returned successfully. ", response = UsageMetricsDTO.class),
+        
+        @io.swagger.annotations.ApiResponse(code = 400, message = "Bad Request. Invalid request or validation error. ", response = UsageMetricsDTO.class) })
+    public Response usageMetricsGet(@Context Request request)
+    throws NotFoundException {
+        
+        return delegate.usageMetricsGet(request);
+    }
     
     @POST
     @Path("/upload-file/")
@@ -42,8 +62,12 @@ public class UsageApi implements Microservice  {
         })
     }, tags={  })
     @io.swagger.annotations.ApiResponses(value = { 
+        @io.swagger.annotations.ApiResponse(code = 200, message = "OK. File with the same content is already uploaded, hence it is not added again. ", response = void.class),
+        
         @io.swagger.annotations.ApiResponse(code = 201, message = "Created. File uploaded successfully. ", response = void.class),
         
+        @io.swagger.annotations.ApiResponse(code = 202, message = "Accepted. File accepted for publishing in direct mode. ", response = void.class),
+        
         @io.swagger.annotations.ApiResponse(code = 400, message = "Bad Request. Invalid request or validation error. ", response = void.class),
         
         @io.swagger.annotations.ApiResponse(code = 415, message = "Unsupported Media Type. The entity of the request was in a not supported format. ", response = void.class) })
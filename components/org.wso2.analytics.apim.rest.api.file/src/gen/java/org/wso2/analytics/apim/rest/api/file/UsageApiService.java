@@ -8,6 +8,7 @@ import java.io.InputStream;
 import javax.ws.rs.core.Response;
 
 public abstract class UsageApiService {
+    public abstract Response usageMetricsGet(Request request) throws NotFoundException;
     public abstract Response usageUploadFilePost(InputStream analyticsInputStream, FileInfo analyticsDetail
   ,Request request) throws NotFoundException;
 }
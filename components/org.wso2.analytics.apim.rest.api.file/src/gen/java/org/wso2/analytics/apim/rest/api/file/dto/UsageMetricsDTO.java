@@ -0,0 +1,425 @@
+package org.wso2.analytics.apim.rest.api.file.dto;
+
+
+import com.google.gson.annotations.SerializedName;
+import io.swagger.annotations.ApiModelProperty;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * UsageMetricsDTO
+ */
+public class UsageMetricsDTO   {
+  @SerializedName("pendingFileCount")
+  private Long pendingFileCount = null;
+
+  @SerializedName("inProgressFileCount")
+  private Long inProgressFileCount = null;
+
+  @SerializedName("completedFileCount")
+  private Long completedFileCount = null;
+
+  @SerializedName("directPendingFileCount")
+  private Long directPendingFileCount = null;
+
+  @SerializedName("oldestUnprocessedFileAge")
+  private Long oldestUnprocessedFileAge = null;
+
+  @SerializedName("processedBytes")
+  private Long processedBytes = null;
+
+  @SerializedName("processedLines")
+  private Long processedLines = null;
+
+  @SerializedName("bytesPerSecond")
+  private Double bytesPerSecond = null;
+
+  @SerializedName("linesPerSecond")
+  private Double linesPerSecond = null;
+
+  @SerializedName("parseErrors")
+  private Map<String, Long> parseErrors = new HashMap<String, Long>();
+
+  @SerializedName("averageStageLatencies")
+  private Map<String, Double> averageStageLatencies = new HashMap<String, Double>();
+
+  @SerializedName("maxStageLatencies")
+  private Map<String, Double> maxStageLatencies = new HashMap<String, Double>();
+
+  @SerializedName("streamQueueDepths")
+  private Map<String, Integer> streamQueueDepths = new HashMap<String, Integer>();
+
+  @SerializedName("droppedEvents")
+  private Map<String, Long> droppedEvents = new HashMap<String, Long>();
+
+  @SerializedName("duplicateEvents")
+  private Map<String, Long> duplicateEvents = new HashMap<String, Long>();
+
+  public UsageMetricsDTO pendingFileCount(Long pendingFileCount) {
+    this.pendingFileCount = pendingFileCount;
+    return this;
+  }
+
+   /**
+   * Number of uploaded files waiting to be processed.
+   * @return pendingFileCount
+  **/
+  @ApiModelProperty(value = "Number of uploaded files waiting to be processed.")
+  public Long getPendingFileCount() {
+    return pendingFileCount;
+  }
+
+  public void setPendingFileCount(Long pendingFileCount) {
+    this.pendingFileCount = pendingFileCount;
+  }
+
+  public UsageMetricsDTO inProgressFileCount(Long inProgressFileCount) {
+    this.inProgressFileCount = inProgressFileCount;
+    return this;
+  }
+
+   /**
+   * Number of uploaded files being processed.
+   * @return inProgressFileCount
+  **/
+  @ApiModelProperty(value = "Number of uploaded files being processed.")
+  public Long getInProgressFileCount() {
+    return inProgressFileCount;
+  }
+
+  public void setInProgressFileCount(Long inProgressFileCount) {
+    this.inProgressFileCount = inProgressFileCount;
+  }
+
+  public UsageMetricsDTO completedFileCount(Long completedFileCount) {
+    this.completedFileCount = completedFileCount;
+    return this;
+  }
+
+   /**
+   * Number of processed files which are not cleaned up yet.
+   * @return completedFileCount
+  **/
+  @ApiModelProperty(value = "Number of processed files which are not cleaned up yet.")
+  public Long getCompletedFileCount() {
+    return completedFileCount;
+  }
+
+  public void setCompletedFileCount(Long completedFileCount) {
+    this.completedFileCount = completedFileCount;
+  }
+
+  public UsageMetricsDTO directPendingFileCount(Long directPendingFileCount) {
+    this.directPendingFileCount = directPendingFileCount;
+    return this;
+  }
+
+   /**
+   * Number of files uploaded in direct mode which are waiting to be published.
+   * @return directPendingFileCount
+  **/
+  @ApiModelProperty(value = "Number of files uploaded in direct mode which are waiting to be published.")
+  public Long getDirectPendingFileCount() {
+    return directPendingFileCount;
+  }
+
+  public void setDirectPendingFileCount(Long directPendingFileCount) {
+    this.directPendingFileCount = directPendingFileCount;
+  }
+
+  public UsageMetricsDTO oldestUnprocessedFileAge(Long oldestUnprocessedFileAge) {
+    this.oldestUnprocessedFileAge = oldestUnprocessedFileAge;
+    return this;
+  }
+
+   /**
+   * Age of the oldest unprocessed file in milliseconds.
+   * @return oldestUnprocessedFileAge
+  **/
+  @ApiModelProperty(value = "Age of the oldest unprocessed file in milliseconds.")
+  public Long getOldestUnprocessedFileAge() {
+    return oldestUnprocessedFileAge;
+  }
+
+  public void setOldestUnprocessedFileAge(Long oldestUnprocessedFileAge) {
+    this.oldestUnprocessedFileAge = oldestUnprocessedFileAge;
+  }
+
+  public UsageMetricsDTO processedBytes(Long processedBytes) {
+    this.processedBytes = processedBytes;
+    return this;
+  }
+
+   /**
+   * Number of decompressed bytes read.
+   * @return processedBytes
+  **/
+  @ApiModelProperty(value = "Number of decompressed bytes read.")
+  public Long getProcessedBytes() {
+    return processedBytes;
+  }
+
+  public void setProcessedBytes(Long processedBytes) {
+    this.processedBytes = processedBytes;
+  }
+
+  public UsageMetricsDTO processedLines(Long processedLines) {
+    this.processedLines = processedLines;
+    return this;
+  }
+
+   /**
+   * Number of lines read.
+   * @return processedLines
+  **/
+  @ApiModelProperty(value = "Number of lines read.")
+  public Long getProcessedLines() {
+    return processedLines;
+  }
+
+  public void setProcessedLines(Long processedLines) {
+    this.processedLines = processedLines;
+  }
+
+  public UsageMetricsDTO bytesPerSecond(Double bytesPerSecond) {
+    this.bytesPerSecond = bytesPerSecond;
+    return this;
+  }
+
+   /**
+   * Rate of decompressed bytes read since the rate was last sampled.
+   * @return bytesPerSecond
+  **/
+  @ApiModelProperty(value = "Rate of decompressed bytes read since the rate was last sampled.")
+  public Double getBytesPerSecond() {
+    return bytesPerSecond;
+  }
+
+  public void setBytesPerSecond(Double bytesPerSecond) {
+    this.bytesPerSecond = bytesPerSecond;
+  }
+
+  public UsageMetricsDTO linesPerSecond(Double linesPerSecond) {
+    this.linesPerSecond = linesPerSecond;
+    return this;
+  }
+
+   /**
+   * Rate of lines read since the rate was last sampled.
+   * @return linesPerSecond
+  **/
+  @ApiModelProperty(value = "Rate of lines read since the rate was last sampled.")
+  public Double getLinesPerSecond() {
+    return linesPerSecond;
+  }
+
+  public void setLinesPerSecond(Double linesPerSecond) {
+    this.linesPerSecond = linesPerSecond;
+  }
+
+  public UsageMetricsDTO parseErrors(Map<String, Long> parseErrors) {
+    this.parseErrors = parseErrors;
+    return this;
+  }
+
+  public UsageMetricsDTO putParseErrorsItem(String key, Long parseErrorsItem) {
+    this.parseErrors.put(key, parseErrorsItem);
+    return this;
+  }
+
+   /**
+   * Number of lines which could not be published, per stream id.
+   * @return parseErrors
+  **/
+  @ApiModelProperty(value = "Number of lines which could not be published, per stream id.")
+  public Map<String, Long> getParseErrors() {
+    return parseErrors;
+  }
+
+  public void setParseErrors(Map<String, Long> parseErrors) {
+    this.parseErrors = parseErrors;
+  }
+
+  public UsageMetricsDTO averageStageLatencies(Map<String, Double> averageStageLatencies) {
+    this.averageStageLatencies = averageStageLatencies;
+    return this;
+  }
+
+  public UsageMetricsDTO putAverageStageLatenciesItem(String key, Double averageStageLatenciesItem) {
+    this.averageStageLatencies.put(key, averageStageLatenciesItem);
+    return this;
+  }
+
+   /**
+   * Average latency of each processing stage in milliseconds.
+   * @return averageStageLatencies
+  **/
+  @ApiModelProperty(value = "Average latency of each processing stage in milliseconds.")
+  public Map<String, Double> getAverageStageLatencies() {
+    return averageStageLatencies;
+  }
+
+  public void setAverageStageLatencies(Map<String, Double> averageStageLatencies) {
+    this.averageStageLatencies = averageStageLatencies;
+  }
+
+  public UsageMetricsDTO maxStageLatencies(Map<String, Double> maxStageLatencies) {
+    this.maxStageLatencies = maxStageLatencies;
+    return this;
+  }
+
+  public UsageMetricsDTO putMaxStageLatenciesItem(String key, Double maxStageLatenciesItem) {
+    this.maxStageLatencies.put(key, maxStageLatenciesItem);
+    return this;
+  }
+
+   /**
+   * Maximum latency of each processing stage in milliseconds.
+   * @return maxStageLatencies
+  **/
+  @ApiModelProperty(value = "Maximum latency of each processing stage in milliseconds.")
+  public Map<String, Double> getMaxStageLatencies() {
+    return maxStageLatencies;
+  }
+
+  public void setMaxStageLatencies(Map<String, Double> maxStageLatencies) {
+    this.maxStageLatencies = maxStageLatencies;
+  }
+
+  public UsageMetricsDTO streamQueueDepths(Map<String, Integer> streamQueueDepths) {
+    this.streamQueueDepths = streamQueueDepths;
+    return this;
+  }
+
+  public UsageMetricsDTO putStreamQueueDepthsItem(String key, Integer streamQueueDepthsItem) {
+    this.streamQueueDepths.put(key, streamQueueDepthsItem);
+    return this;
+  }
+
+   /**
+   * Number of event batches waiting to be delivered, per stream id.
+   * @return streamQueueDepths
+  **/
+  @ApiModelProperty(value = "Number of event batches waiting to be delivered, per stream id.")
+  public Map<String, Integer> getStreamQueueDepths() {
+    return streamQueueDepths;
+  }
+
+  public void setStreamQueueDepths(Map<String, Integer> streamQueueDepths) {
+    this.streamQueueDepths = streamQueueDepths;
+  }
+
+  public UsageMetricsDTO droppedEvents(Map<String, Long> droppedEvents) {
+    this.droppedEvents = droppedEvents;
+    return this;
+  }
+
+  public UsageMetricsDTO putDroppedEventsItem(String key, Long droppedEventsItem) {
+    this.droppedEvents.put(key, droppedEventsItem);
+    return this;
+  }
+
+   /**
+   * Number of dropped events, per stream id.
+   * @return droppedEvents
+  **/
+  @ApiModelProperty(value = "Number of dropped events, per stream id.")
+  public Map<String, Long> getDroppedEvents() {
+    return droppedEvents;
+  }
+
+  public void setDroppedEvents(Map<String, Long> droppedEvents) {
+    this.droppedEvents = droppedEvents;
+  }
+
+  public UsageMetricsDTO duplicateEvents(Map<String, Long> duplicateEvents) {
+    this.duplicateEvents = duplicateEvents;
+    return this;
+  }
+
+  public UsageMetricsDTO putDuplicateEventsItem(String key, Long duplicateEventsItem) {
+    this.duplicateEvents.put(key, duplicateEventsItem);
+    return this;
+  }
+
+   /**
+   * Number of events dropped as duplicates of recently published events, per stream id.
+   * @return duplicateEvents
+  **/
+  @ApiModelProperty(value = "Number of events dropped as duplicates of recently published events, per stream id.")
+  public Map<String, Long> getDuplicateEvents() {
+    return duplicateEvents;
+  }
+
+  public void setDuplicateEvents(Map<String, Long> duplicateEvents) {
+    this.duplicateEvents = duplicateEvents;
+  }
+
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    UsageMetricsDTO usageMetrics = (UsageMetricsDTO) o;
+    return Objects.equals(this.pendingFileCount, usageMetrics.pendingFileCount) &&
+        Objects.equals(this.inProgressFileCount, usageMetrics.inProgressFileCount) &&
+        Objects.equals(this.completedFileCount, usageMetrics.completedFileCount) &&
+        Objects.equals(this.directPendingFileCount, usageMetrics.directPendingFileCount) &&
+        Objects.equals(this.oldestUnprocessedFileAge, usageMetrics.oldestUnprocessedFileAge) &&
+        Objects.equals(this.processedBytes, usageMetrics.processedBytes) &&
+        Objects.equals(this.processedLines, usageMetrics.processedLines) &&
+        Objects.equals(this.bytesPerSecond, usageMetrics.bytesPerSecond) &&
+        Objects.equals(this.linesPerSecond, usageMetrics.linesPerSecond) &&
+        Objects.equals(this.parseErrors, usageMetrics.parseErrors) &&
+        Objects.equals(this.averageStageLatencies, usageMetrics.averageStageLatencies) &&
+        Objects.equals(this.maxStageLatencies, usageMetrics.maxStageLatencies) &&
+        Objects.equals(this.streamQueueDepths, usageMetrics.streamQueueDepths) &&
+        Objects.equals(this.droppedEvents, usageMetrics.droppedEvents) &&
+        Objects.equals(this.duplicateEvents, usageMetrics.duplicateEvents);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(pendingFileCount, inProgressFileCount, completedFileCount, directPendingFileCount, oldestUnprocessedFileAge, processedBytes, processedLines, bytesPerSecond, linesPerSecond, parseErrors, averageStageLatencies, maxStageLatencies, streamQueueDepths, droppedEvents, duplicateEvents);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("class UsageMetricsDTO {\n");
+    
+    sb.append("    pendingFileCount: ").append(toIndentedString(pendingFileCount)).append("\n");
+    sb.append("    inProgressFileCount: ").append(toIndentedString(inProgressFileCount)).append("\n");
+    sb.append("    completedFileCount: ").append(toIndentedString(completedFileCount)).append("\n");
+    sb.append("    directPendingFileCount: ").append(toIndentedString(directPendingFileCount)).append("\n");
+    sb.append("    oldestUnprocessedFileAge: ").append(toIndentedString(oldestUnprocessedFileAge)).append("\n");
+    sb.append("    processedBytes: ").append(toIndentedString(processedBytes)).append("\n");
+    sb.append("    processedLines: ").append(toIndentedString(processedLines)).append("\n");
+    sb.append("    bytesPerSecond: ").append(toIndentedString(bytesPerSecond)).append("\n");
+    sb.append("    linesPerSecond: ").append(toIndentedString(linesPerSecond)).append("\n");
+    sb.append("    parseErrors: ").append(toIndentedString(parseErrors)).append("\n");
+    sb.append("    averageStageLatencies: ").append(toIndentedString(averageStageLatencies)).append("\n");
+    sb.append("    maxStageLatencies: ").append(toIndentedString(maxStageLatencies)).append("\n");
+    sb.append("    streamQueueDepths: ").append(toIndentedString(streamQueueDepths)).append("\n");
+    sb.append("    droppedEvents: ").append(toIndentedString(droppedEvents)).append("\n");
+    sb.append("    duplicateEvents: ").append(toIndentedString(duplicateEvents)).append("\n");
+    sb.append("}");
+    return sb.toString();
+  }
+
+  /**
+   * Convert the given object to string with each line indented by 4 spaces
+   * (except the first line).
+   */
+  private String toIndentedString(Object o) {
+    if (o == null) {
+      return "null";
+    }
+    return o.toString().replace("\n", "\n    ");
+  }
+}
@@ -0,0 +1,30 @@
+/*
+* Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.analytics.apim.rest.api.file.exception;
+
+/**
+ * Exception thrown when an uploaded usage file is not acceptable.
+ */
+public class UsageFileValidationException extends Exception {
+
+    public UsageFileValidationException(String message) {
+        super(message);
+    }
+
+    public UsageFileValidationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -19,17 +19,23 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.analytics.apim.rest.api.file.NotFoundException;
 import org.wso2.analytics.apim.rest.api.file.UsageApiService;
+import org.wso2.analytics.apim.rest.api.file.dto.UsageMetricsDTO;
+import org.wso2.analytics.apim.rest.api.file.exception.UsageFileValidationException;
 import org.wso2.analytics.apim.rest.api.file.internal.ServiceHolder;
 import org.wso2.analytics.apim.rest.api.file.util.UploadServiceConstants;
+import org.wso2.analytics.apim.rest.api.file.util.UsageFileSpool;
 import org.wso2.carbon.analytics.idp.client.core.api.IdPClient;
 import org.wso2.carbon.analytics.idp.client.core.exception.IdPClientException;
 import org.wso2.carbon.analytics.idp.client.core.models.Role;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileDirectPublisher;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceMetrics;
 import org.wso2.extension.siddhi.io.mgwfile.dao.MGWFileSourceDAO;
 import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileInfoDTO;
 import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
 import org.wso2.msf4j.Request;
 import org.wso2.msf4j.formparam.FileInfo;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.Base64;
@@ -44,6 +50,8 @@ import javax.ws.rs.core.Response;
  */
 public class UsageApiServiceImpl extends UsageApiService {
     private static final Logger log = LoggerFactory.getLogger(UsageApiServiceImpl.class);
+    private static final boolean directMode = UploadServiceConstants.UPLOAD_MODE_DIRECT
+            .equalsIgnoreCase(System.getProperty(UploadServiceConstants.UPLOAD_MODE_PROPERTY));
 
     @Override
     public Response usageUploadFilePost(InputStream analyticsInputStream, FileInfo analyticsDetail,
@@ -52,19 +60,9 @@ public class UsageApiServiceImpl extends UsageApiService {
         String uploadedFileName = httpHeaders.getHeaderString(UploadServiceConstants.FILE_NAME_HEADER);
 
         try {
-            List<String> authorization = httpHeaders.getRequestHeader("Authorization");
-            //If no authorization information present; block access
-            if (authorization == null || authorization.isEmpty()) {
-                String errorMsg = "Received a request to micro gateway REST API without Authorization header";
-                log.error(errorMsg);
-                return Response.status(Response.Status.UNAUTHORIZED).entity(errorMsg).build();
-            }
-            String userName = extractUsernameFromAuthHeader(authorization);
-            boolean isAdmin = isUserAdmin(userName);
-            if (!isAdmin) {
-                String errorMessage = "Authenticated user does not have admin role.\n";
-                log.error(errorMessage);
-                return Response.status(Response.Status.BAD_REQUEST).entity(errorMessage).build();
+            Response accessDenied = checkAdminAccess(httpHeaders);
+            if (accessDenied != null) {
+                return accessDenied;
             }
             if (uploadedFileName == null || uploadedFileName.isEmpty()) {
                 String errorMessage = "FileName Header is missing.\n";
@@ -76,19 +74,53 @@ public class UsageApiServiceImpl extends UsageApiService {
                         .build();
             }
 
-            //Add the uploaded file into the database
+            //Spool the upload locally, so that the database connection is not held during the network transfer
             long timeStamp = Long.parseLong(uploadedFileName.split("\\.")[2]);
             MGWFileInfoDTO dto = new MGWFileInfoDTO(uploadedFileName, timeStamp);
-            MGWFileSourceDAO.persistUploadedFile(dto, analyticsInputStream);
+            try (UsageFileSpool spool = UsageFileSpool.spool(analyticsInputStream)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Spooled the API Usage file [" + uploadedFileName + "] of " + spool.getSize()
+                            + " bytes with checksum " + spool.getChecksum());
+                }
+                dto.setContentHash(spool.getChecksum());
+                //In direct mode, publish the file from the local copy unless the sources cannot keep up
+                if (directMode) {
+                    MGWFileDirectPublisher.Result result = MGWFileDirectPublisher.publish(dto, spool.getPath());
+                    if (result == MGWFileDirectPublisher.Result.ACCEPTED) {
+                        log.info("Accepted the API Usage file [" + uploadedFileName + "] for direct publishing");
+                        return Response.status(Response.Status.ACCEPTED).entity("File accepted for publishing.\n")
+                                .build();
+                    }
+                    if (result == MGWFileDirectPublisher.Result.DUPLICATE) {
+                        return Response.status(Response.Status.OK)
+                                .entity("File with the same content is already uploaded.\n").build();
+                    }
+                }
+                //Add the uploaded file into the database, or the file storage if configured. A retried or renamed
+                //upload of content which is already uploaded is acknowledged without adding it again.
+                if (!MGWFileSourceDAO.persistUploadedFile(dto, spool.getPath())) {
+                    return Response.status(Response.Status.OK)
+                            .entity("File with the same content is already uploaded.\n").build();
+                }
+            }
             log.info("Successfully uploaded the API Usage file [" + uploadedFileName + "]");
             return Response.status(Response.Status.CREATED).entity("File uploaded successfully.\n").build();
 
+        } catch (UsageFileValidationException e) {
+            String msg = "Rejected the API Usage file : " + uploadedFileName + ". " + e.getMessage() + "\n";
+            log.error(msg, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(msg).build();
+        } catch (IOException e) {
+            String msg = "Error occurred while receiving API Usage file : " + uploadedFileName;
+            log.error(msg, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(msg).build();
         } catch (MGWFileSourceException e) {
             String msg = "Error occurred while uploading API Usage file : " + uploadedFileName;
-            if (!e.getCause().getMessage().isEmpty()
-                    && (e.getCause().getMessage().toLowerCase(Locale.ENGLISH).contains("primary key violation")
-                    || e.getCause().getMessage().toLowerCase(Locale.ENGLISH).contains("duplicate entry")
-                    || e.getCause().getMessage().toLowerCase(Locale.ENGLISH)
+            String causeMessage = e.getCause() != null ? e.getCause().getMessage() : null;
+            if (causeMessage != null && !causeMessage.isEmpty()
+                    && (causeMessage.toLowerCase(Locale.ENGLISH).contains("primary key violation")
+                    || causeMessage.toLowerCase(Locale.ENGLISH).contains("duplicate entry")
+                    || causeMessage.toLowerCase(Locale.ENGLISH)
                     .contains("violation of primary key constraint"))) {
                 msg = "Error occurred while uploading API usage file, A duplicate entry found for the file : "
                         + uploadedFileName;
@@ -98,6 +130,55 @@ public class UsageApiServiceImpl extends UsageApiService {
         }
     }
 
+    @Override
+    public Response usageMetricsGet(Request request) throws NotFoundException {
+        Response accessDenied = checkAdminAccess(request.getHeaders());
+        if (accessDenied != null) {
+            return accessDenied;
+        }
+        MGWFileSourceMetrics metrics = MGWFileSourceMetrics.getInstance();
+        UsageMetricsDTO usageMetricsDTO = new UsageMetricsDTO()
+                .pendingFileCount(metrics.getPendingFileCount())
+                .inProgressFileCount(metrics.getInProgressFileCount())
+                .completedFileCount(metrics.getCompletedFileCount())
+                .directPendingFileCount(metrics.getDirectPendingFileCount())
+                .oldestUnprocessedFileAge(metrics.getOldestUnprocessedFileAge())
+                .processedBytes(metrics.getProcessedBytes())
+                .processedLines(metrics.getProcessedLines())
+                .bytesPerSecond(metrics.getBytesPerSecond())
+                .linesPerSecond(metrics.getLinesPerSecond())
+                .parseErrors(metrics.getParseErrors())
+                .averageStageLatencies(metrics.getAverageStageLatencies())
+                .maxStageLatencies(metrics.getMaxStageLatencies())
+                .streamQueueDepths(metrics.getStreamQueueDepths())
+                .droppedEvents(metrics.getDroppedEvents())
+                .duplicateEvents(metrics.getDuplicateEvents());
+        return Response.ok().entity(usageMetricsDTO).build();
+    }
+
+    /**
+     * Checks whether the request is made by a user with admin role.
+     * @param httpHeaders headers of the request
+     * @return error response if access is denied, null otherwise
+     */
+    private Response checkAdminAccess(HttpHeaders httpHeaders) {
+        List<String> authorization = httpHeaders.getRequestHeader("Authorization");
+        //If no authorization information present; block access
+        if (authorization == null || authorization.isEmpty()) {
+            String errorMsg = "Received a request to micro gateway REST API without Authorization header";
+            log.error(errorMsg);
+            return Response.status(Response.Status.UNAUTHORIZED).entity(errorMsg).build();
+        }
+        String userName = extractUsernameFromAuthHeader(authorization);
+        boolean isAdmin = isUserAdmin(userName);
+        if (!isAdmin) {
+            String errorMessage = "Authenticated user does not have admin role.\n";
+            log.error(errorMessage);
+            return Response.status(Response.Status.BAD_REQUEST).entity(errorMessage).build();
+        }
+        return null;
+    }
+
     /**
      * This method will return a boolean on whether the user has admin role or not.
      * @param userName username of the user who invoked the API
@@ -29,4 +29,23 @@ public final class UploadServiceConstants {
 
     public static final String FILE_NAME_HEADER = "FileName";
 
+    public static final String UPLOAD_MODE_PROPERTY = "usage.upload.mode";
+
+    public static final String UPLOAD_MODE_DIRECT = "direct";
+
+    public static final String SPOOL_DIRECTORY_PROPERTY = "usage.upload.spool.directory";
+
+    public static final String MAX_UPLOAD_SIZE_PROPERTY = "usage.upload.max.size";
+
+    public static final String DEFAULT_MAX_UPLOAD_SIZE = "524288000";
+
+    public static final String SPOOL_FILE_PREFIX = "api-usage-upload-";
+
+    public static final String SPOOL_FILE_SUFFIX = ".zip";
+
+    public static final String CHECKSUM_ALGORITHM = "SHA-256";
+
+    private UploadServiceConstants() {
+    }
+
 }
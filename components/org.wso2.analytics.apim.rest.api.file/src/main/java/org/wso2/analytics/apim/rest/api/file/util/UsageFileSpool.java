@@ -0,0 +1,196 @@
+/*
+* Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.analytics.apim.rest.api.file.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.analytics.apim.rest.api.file.exception.UsageFileValidationException;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
+import org.wso2.extension.siddhi.io.mgwfile.util.FileDataRetrieverUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Local copy of an uploaded usage file. The upload is copied to the spool directory before a database connection is
+ * acquired, so that a connection is not held while the content is transferred over the network. The size of the upload
+ * is limited while it is copied and the zip file is validated using its central directory, without inflating it.
+ */
+public class UsageFileSpool implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(UsageFileSpool.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MAX_UPLOAD_SIZE = Long.parseLong(System.getProperty(
+            UploadServiceConstants.MAX_UPLOAD_SIZE_PROPERTY, UploadServiceConstants.DEFAULT_MAX_UPLOAD_SIZE));
+    private static final long MAX_USAGE_DATA_SIZE = Long.parseLong(System.getProperty(
+            MGWFileSourceConstants.MAX_USAGE_DATA_SIZE_PROPERTY, MGWFileSourceConstants.DEFAULT_MAX_USAGE_DATA_SIZE));
+
+    private final Path path;
+    private long size;
+    private String checksum;
+
+    private UsageFileSpool(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Copies the given upload to a new file in the spool directory and validates it.
+     *
+     * @param uploadedInputStream input stream with the uploaded file content
+     * @return the spooled file, which has to be closed to delete it
+     * @throws IOException                  if the upload cannot be read or written to the spool directory
+     * @throws UsageFileValidationException if the upload is not an acceptable usage file
+     */
+    public static UsageFileSpool spool(InputStream uploadedInputStream)
+            throws IOException, UsageFileValidationException {
+        Path spoolDirectory = getSpoolDirectory();
+        Files.createDirectories(spoolDirectory);
+        UsageFileSpool spool = new UsageFileSpool(Files.createTempFile(spoolDirectory,
+                UploadServiceConstants.SPOOL_FILE_PREFIX, UploadServiceConstants.SPOOL_FILE_SUFFIX));
+        try {
+            spool.copy(uploadedInputStream);
+            spool.validate();
+            return spool;
+        } catch (IOException | UsageFileValidationException | RuntimeException e) {
+            spool.close();
+            throw e;
+        }
+    }
+
+    private static Path getSpoolDirectory() {
+        String spoolDirectory = System.getProperty(UploadServiceConstants.SPOOL_DIRECTORY_PROPERTY);
+        if (spoolDirectory == null || spoolDirectory.isEmpty()) {
+            return Paths.get(System.getProperty("java.io.tmpdir"), "api-usage-uploads");
+        }
+        return Paths.get(spoolDirectory);
+    }
+
+    private void copy(InputStream uploadedInputStream) throws IOException, UsageFileValidationException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(UploadServiceConstants.CHECKSUM_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(UploadServiceConstants.CHECKSUM_ALGORITHM + " is not supported.", e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        ReadableByteChannel source = Channels.newChannel(uploadedInputStream);
+        try (FileChannel target = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            while (source.read(buffer) >= 0) {
+                buffer.flip();
+                size += buffer.remaining();
+                if (size > MAX_UPLOAD_SIZE) {
+                    throw new UsageFileValidationException("Uploaded file exceeds the maximum size of "
+                            + MAX_UPLOAD_SIZE + " bytes.");
+                }
+                digest.update(buffer.array(), 0, buffer.limit());
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                buffer.clear();
+            }
+            target.force(false);
+        }
+        checksum = toHex(digest.digest());
+    }
+
+    /**
+     * Validates that every entry of the zip file holds usage data, as plain text or gzip compressed, and that the
+     * total declared size of the entries is within the limit. Since the declared sizes cannot be trusted, the
+     * decompressed content is limited again when the file is published.
+     */
+    private void validate() throws IOException, UsageFileValidationException {
+        try (ZipFile zipFile = new ZipFile(path.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            int usageDataEntryCount = 0;
+            long usageDataSize = 0;
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                if (!FileDataRetrieverUtil.isUsageDataEntry(entry.getName())) {
+                    throw new UsageFileValidationException("Uploaded file contains the entry " + entry.getName()
+                            + ", while only " + MGWFileSourceConstants.API_USAGE_OUTPUT_FILE_NAME
+                            + " and its plain text or gzip compressed segments are accepted.");
+                }
+                usageDataEntryCount++;
+                usageDataSize += Math.max(0, entry.getSize());
+                if (usageDataSize > MAX_USAGE_DATA_SIZE) {
+                    throw new UsageFileValidationException("Usage data of the uploaded file exceeds the maximum "
+                            + "size of " + MAX_USAGE_DATA_SIZE + " bytes.");
+                }
+            }
+            if (usageDataEntryCount == 0) {
+                throw new UsageFileValidationException("Uploaded file does not contain any usage data entries.");
+            }
+        } catch (ZipException e) {
+            throw new UsageFileValidationException("Uploaded file is not a valid zip file.", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Returns the path of the spooled file. The file may be moved away, e.g. into the usage file storage.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 checksum of the spooled content.
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Deletes the spooled file, unless it was moved away.
+     */
+    @Override
+    public void close() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete the spooled usage file : " + path, e);
+        }
+    }
+}
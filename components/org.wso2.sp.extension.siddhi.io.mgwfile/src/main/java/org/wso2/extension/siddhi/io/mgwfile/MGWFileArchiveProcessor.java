@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.extension.siddhi.io.mgwfile.dao.MGWFileSourceDAO;
+import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileInfoDTO;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileClaimLostException;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
+import org.wso2.extension.siddhi.io.mgwfile.util.FileDataRetrieverUtil;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Publishes the events of all the usage data entries of an uploaded archive. Each entry is parsed and published by its
+ * own {@link MGWFileEventPipeline}. An entry may be gzip compressed, which is detected from its content.
+ * <p>
+ * If the progress is persisted, the entries are published one after the other and the progress is persisted as the
+ * index of the current entry along with the offset within it. When a file is picked again after a failure, the
+ * entries which are already published are skipped and the current entry is resumed from the persisted offset.
+ * Otherwise the next entry is read while the previous ones are still being published.
+ */
+public class MGWFileArchiveProcessor {
+
+    private static final Log log = LogFactory.getLog(MGWFileArchiveProcessor.class);
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int ZSTD_MAGIC = 0xfd2fb528;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ExecutorService entryPool = Executors
+            .newCachedThreadPool(new MGWFileDataRetrieverThreadFactory("mgwfile-entry-thread"));
+
+    private final Connection connection;
+    private final MGWFileInfoDTO infoDTO;
+    private final int checkpointInterval;
+    private final int publishBatchSize = Integer.parseInt(MGWFileSourceDS.getPublishBatchSize());
+    private final int parserThreadCount = Integer.parseInt(MGWFileSourceDS.getParserThreadCount());
+    private final int entryThreadCount = Math.max(1, Integer.parseInt(MGWFileSourceDS.getEntryThreadCount()));
+    private final long maxUsageDataSize = Long.parseLong(MGWFileSourceDS.getMaxUsageDataSize());
+    private final AtomicLong usageDataSize = new AtomicLong();
+
+    /**
+     * Creates a processor to publish the events of the given file.
+     *
+     * @param connection         connection used for processing the file, on which the progress is persisted
+     * @param infoDTO            file being processed
+     * @param checkpointInterval number of events published between two persisted offsets, or 0 if the progress is
+     *                           not persisted, in which case the connection may be null
+     */
+    public MGWFileArchiveProcessor(Connection connection, MGWFileInfoDTO infoDTO, int checkpointInterval) {
+        this.connection = connection;
+        this.infoDTO = infoDTO;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Publishes the events of all the usage data entries in the given archive and returns once they are delivered to
+     * the streams. Other entries are ignored.
+     *
+     * @param archiveContent zip archive uploaded by the gateway
+     * @throws IOException            if an error occurred while reading an entry
+     * @throws MGWFileSourceException if the archive does not have any usage data entry or the claim of the file has
+     *                                been lost
+     * @throws InterruptedException   if interrupted while waiting for the entries to be published
+     */
+    public void process(InputStream archiveContent) throws IOException, MGWFileSourceException,
+            InterruptedException {
+        ZipInputStream zipInputStream = new ZipInputStream(archiveContent);
+        Semaphore entrySlots = new Semaphore(entryThreadCount);
+        List<Future<?>> entryTasks = new ArrayList<>();
+        int entryCount = 0;
+        try {
+            ZipEntry zipEntry;
+            while ((zipEntry = zipInputStream.getNextEntry()) != null && !isAnyEntryFailed(entryTasks)) {
+                if (zipEntry.isDirectory()) {
+                    continue;
+                }
+                if (!FileDataRetrieverUtil.isUsageDataEntry(zipEntry.getName())) {
+                    log.warn("Ignoring entry : " + zipEntry.getName() + " of file : " + infoDTO
+                            + " as it is not a usage data entry.");
+                    continue;
+                }
+                int entryIndex = entryCount++;
+                if (checkpointInterval > 0 && entryIndex < infoDTO.getEntryIndex()) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Skipping already published entry : " + zipEntry.getName() + " of file : "
+                                + infoDTO);
+                    }
+                    continue;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Publishing entry : " + zipEntry.getName() + " of file : " + infoDTO);
+                }
+                InputStream entryContent = new SizeLimitedInputStream(decode(new EntryInputStream(zipInputStream)));
+                MGWFileEventPipeline eventPipeline = new MGWFileEventPipeline(connection, infoDTO, entryIndex,
+                        parserThreadCount, checkpointInterval);
+                if (checkpointInterval > 0) {
+                    // the progress is a single position in the archive, hence entries are published in order
+                    eventPipeline.process(entryContent, new MGWFileEventBatcher(publishBatchSize));
+                    checkpoint(entryIndex + 1);
+                    continue;
+                }
+                entrySlots.acquire();
+                entryTasks.add(entryPool.submit(() -> {
+                    try {
+                        eventPipeline.process(entryContent, new MGWFileEventBatcher(publishBatchSize));
+                    } finally {
+                        entrySlots.release();
+                    }
+                    return null;
+                }));
+                // the archive can only be read further once the pipeline stops reading this entry
+                eventPipeline.awaitContentConsumed();
+            }
+            awaitEntries(entryTasks);
+        } finally {
+            // no-op if the entries have been published, otherwise stops them
+            for (Future<?> entryTask : entryTasks) {
+                entryTask.cancel(true);
+            }
+        }
+        if (entryCount == 0) {
+            throw new MGWFileSourceException("File : " + infoDTO + " does not contain any usage data entry.");
+        }
+    }
+
+    private void checkpoint(int nextEntryIndex) throws MGWFileClaimLostException {
+        try {
+            MGWFileSourceDAO.updateOffset(connection, infoDTO, nextEntryIndex, 0);
+        } catch (MGWFileClaimLostException e) {
+            throw e;
+        } catch (MGWFileSourceException e) {
+            log.warn("Error occurred while persisting the progress of file : " + infoDTO
+                    + ". Processing will be continued.", e);
+        }
+    }
+
+    private static boolean isAnyEntryFailed(List<Future<?>> entryTasks) throws InterruptedException {
+        for (Future<?> entryTask : entryTasks) {
+            if (entryTask.isDone()) {
+                try {
+                    entryTask.get();
+                } catch (ExecutionException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void awaitEntries(List<Future<?>> entryTasks) throws IOException, MGWFileSourceException,
+            InterruptedException {
+        IOException failure = null;
+        for (Future<?> entryTask : entryTasks) {
+            try {
+                entryTask.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof InterruptedException) {
+                    throw (InterruptedException) cause;
+                }
+                if (cause instanceof MGWFileSourceException) {
+                    // the other entries are stopped by the caller
+                    throw (MGWFileSourceException) cause;
+                }
+                if (failure == null) {
+                    failure = cause instanceof IOException ? (IOException) cause
+                            : new IOException("Error occurred while publishing an entry of file : " + infoDTO, cause);
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Returns the decompressed content of an entry, which is either plain text or gzip compressed.
+     */
+    private InputStream decode(InputStream entryContent) throws IOException {
+        BufferedInputStream bufferedContent = new BufferedInputStream(entryContent, BUFFER_SIZE);
+        bufferedContent.mark(4);
+        int magic = 0;
+        int length = 0;
+        int read;
+        while (length < 4 && (read = bufferedContent.read()) != -1) {
+            magic |= read << (8 * length++);
+        }
+        bufferedContent.reset();
+        if (length >= 2 && (magic & 0xffff) == GZIP_MAGIC) {
+            return new GZIPInputStream(bufferedContent, BUFFER_SIZE);
+        }
+        if (length == 4 && magic == ZSTD_MAGIC) {
+            throw new IOException("Zstandard compressed entries are not supported. Entries of file : " + infoDTO
+                    + " should be plain text or gzip compressed.");
+        }
+        return bufferedContent;
+    }
+
+    /**
+     * Decompressed content of an entry, which fails once the decompressed content of all the entries of the archive
+     * exceeds the maximum usage data size. The sizes declared in the archive are not relied upon, as they may be
+     * forged and are the compressed sizes of gzip compressed entries.
+     */
+    private class SizeLimitedInputStream extends FilterInputStream {
+
+        SizeLimitedInputStream(InputStream entryContent) {
+            super(entryContent);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1) {
+                count(1);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long length) throws IOException {
+            long skipped = super.skip(length);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(long length) throws IOException {
+            if (usageDataSize.addAndGet(length) > maxUsageDataSize) {
+                throw new IOException("Usage data of file : " + infoDTO + " exceeds the maximum size of "
+                        + maxUsageDataSize + " bytes.");
+            }
+        }
+    }
+
+    /**
+     * Content of the current zip entry, which does not close the archive.
+     */
+    private static class EntryInputStream extends FilterInputStream {
+
+        EntryInputStream(ZipInputStream zipInputStream) {
+            super(zipInputStream);
+        }
+
+        @Override
+        public void close() {
+            // the archive is closed by its owner
+        }
+    }
+}
@@ -18,34 +18,33 @@
 
 package org.wso2.extension.siddhi.io.mgwfile;
 
-import io.siddhi.core.stream.input.source.SourceEventListener;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.extension.siddhi.io.mgwfile.dao.MGWFileSourceDAO;
 import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileInfoDTO;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileClaimLostException;
 import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
-import org.wso2.extension.siddhi.io.mgwfile.util.FileDataRetrieverUtil;
+import org.wso2.extension.siddhi.io.mgwfile.util.MGWFileSourceDBUtil;
 
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.util.Arrays;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
 
 /**
- * This class publishes events to streams, which are read from the uploaded usage file.
+ * This class publishes events to streams, which are read from the uploaded usage file. Publishing is aborted if the
+ * claim of the file is lost, so that the events are not published by this node and by the node which reclaimed it.
  */
 public class MGWFileDataRetriever implements Runnable {
 
     private static final Log log = LogFactory.getLog(MGWFileDataRetriever.class);
+    private static final MGWFileSourceMetrics metrics = MGWFileSourceMetrics.getInstance();
 
+    private final int checkpointInterval = Integer.parseInt(MGWFileSourceDS.getCheckpointInterval());
     private MGWFileInfoDTO infoDTO;
+    private Thread publishingThread;
+    private volatile boolean claimLost = false;
 
     public MGWFileDataRetriever(MGWFileInfoDTO infoDTO) throws MGWFileSourceException {
         this.infoDTO = infoDTO;
@@ -53,100 +52,76 @@ public class MGWFileDataRetriever implements Runnable {
 
     @Override
     public void run() {
-        log.info("Started publishing API usage in file : " + infoDTO.toString());
-        publishEvents();
+        synchronized (this) {
+            if (claimLost) {
+                return;
+            }
+            publishingThread = Thread.currentThread();
+        }
+        try {
+            log.info("Started publishing API usage in file : " + infoDTO.toString());
+            publishEvents();
+        } finally {
+            synchronized (this) {
+                publishingThread = null;
+                // an abort after the file is completed must not interrupt the next task of this thread
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * Stops publishing the file as its claim has been lost. The file is not marked as completed.
+     */
+    public synchronized void abort() {
+        claimLost = true;
+        if (publishingThread != null) {
+            publishingThread.interrupt();
+        }
     }
 
     private void publishEvents() {
 
-        InputStreamReader inputStreamReader = null;
-        BufferedReader bufferedReader = null;
+        Connection connection = null;
         InputStream fileContentStream = null;
-        ZipInputStream zipInputStream = null;
         try {
+            //A single connection is used for reading the content and persisting the progress of the file
+            connection = MGWFileSourceDBUtil.getConnection();
+            connection.setAutoCommit(true);
             //Get Content of the file and start processing
-            fileContentStream = MGWFileSourceDAO.getFileContent(infoDTO);
+            long fetchStartTime = System.nanoTime();
+            fileContentStream = MGWFileSourceDAO.getFileContent(connection, infoDTO);
+            metrics.recordLatency(MGWFileSourceMetrics.Stage.FETCH, fetchStartTime);
             if (fileContentStream == null) {
                 log.warn("No content available in the file : " + infoDTO.toString()
                         + ". Therefore, not publishing the record.");
-                MGWFileSourceDAO.updateCompletion(infoDTO);
+                MGWFileSourceDAO.updateCompletion(connection, infoDTO);
                 return;
             }
-            zipInputStream = new ZipInputStream(fileContentStream);
-            ZipEntry zipEntry = zipInputStream.getNextEntry();
-            String uploadedZipFileName = zipEntry.getName();
-            if (!uploadedZipFileName.isEmpty()) {
-                File name = new File(uploadedZipFileName);
-                uploadedZipFileName = name.getName();
-            }
-
-            if (MGWFileSourceConstants.API_USAGE_OUTPUT_FILE_NAME.equals(uploadedZipFileName)) {
-                InputStream inputStream = zipInputStream;
-                inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
-                bufferedReader = new BufferedReader(inputStreamReader);
-                String readLine;
-                String streamId, timeStamp, metaData, correlationData, payloadData;
-                String[] elements;
-                long lineNumber = 0;
-                while ((readLine = bufferedReader.readLine()) != null) {
-                    lineNumber++;
-                    try {
-                        elements = readLine.split(MGWFileSourceConstants.EVENT_SEPARATOR);
-                        //StreamID
-                        streamId = elements[0].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
-                        //Timestamp
-                        timeStamp = elements[1].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
-                        //MetaData
-                        metaData = elements[2].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
-                        //correlationData
-                        correlationData = elements[3].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
-                        //PayloadData
-                        payloadData = elements[4].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
-                    } catch (RuntimeException e) {
-                        log.error("Event format does not match with the expected format in line number : " + lineNumber
-                                + " on file : " + infoDTO);
-                        // skip this line and continue with the next event in the file
-                        continue;
-                    }
-                    SourceEventListener eventSource = MGWFileSourceRegistrationManager.
-                            getStreamSpecificEventListenerMap().get(streamId);
-                    if (eventSource != null) {
-                        try {
-                            if (log.isDebugEnabled()) {
-                                log.debug("Sending events to the stream id: " + streamId);
-                            }
-                            eventSource.onEvent(new Event(streamId, Long.parseLong(timeStamp),
-                                    (Object[]) FileDataRetrieverUtil.createMetaData(metaData),
-                                    (Object[]) FileDataRetrieverUtil.createMetaData(correlationData),
-                                    FileDataRetrieverUtil.createPayload(streamId, payloadData)), null);
-                        } catch (NumberFormatException e) {
-                            log.error("Error occurred while executing onEvent for event : " + Arrays.toString(elements),
-                                    e);
-                        }
-                    } else {
-                        log.error("Unable to find eventsource for stream id: " + streamId);
-                    }
-                }
-            } else {
-                log.error(
-                        "Uploaded zip file name is: [ " + uploadedZipFileName + "], but the expected file name is: [ " +
-                        MGWFileSourceConstants.API_USAGE_OUTPUT_FILE_NAME + "]");
-                throw new MGWFileSourceException(
-                        "Error occurred since the uploaded zip file name is different from what is expected.");
-
-            }
+            new MGWFileArchiveProcessor(connection, infoDTO, checkpointInterval).process(fileContentStream);
             //Update the database
-            MGWFileSourceDAO.updateCompletion(infoDTO);
+            MGWFileSourceDAO.updateCompletion(connection, infoDTO);
             log.info("Completed publishing API Usage from file : " + infoDTO.toString());
+        } catch (SQLException e) {
+            log.error("Error occurred while getting a database connection to publish API Usage file : "
+                    + infoDTO.toString(), e);
         } catch (IOException e) {
             log.error("Error occurred while reading the API Usage file.", e);
+        } catch (MGWFileClaimLostException e) {
+            log.error("Stopped publishing API Usage from file : " + infoDTO.toString() + ". " + e.getMessage());
         } catch (MGWFileSourceException e) {
             log.error("Error occurred while publishing events to streams", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (claimLost) {
+                log.error("Stopped publishing API Usage from file : " + infoDTO.toString()
+                        + " as its claim has been lost.");
+            } else {
+                log.error("Interrupted while publishing API Usage from file : " + infoDTO.toString(), e);
+            }
         } finally {
-            IOUtils.closeQuietly(inputStreamReader);
-            IOUtils.closeQuietly(bufferedReader);
             IOUtils.closeQuietly(fileContentStream);
-            IOUtils.closeQuietly(zipInputStream);
+            MGWFileSourceDBUtil.closeAllConnections(null, connection, null);
         }
     }
 
@@ -19,13 +19,14 @@
 package org.wso2.extension.siddhi.io.mgwfile;
 
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This is the Thread Factory used to create the threads which reads the files from the DB and map them to streams.
  */
 public class MGWFileDataRetrieverThreadFactory implements ThreadFactory {
 
-    private int counter = 0;
+    private final AtomicInteger counter = new AtomicInteger();
     private String prefix = "";
 
     public MGWFileDataRetrieverThreadFactory(String prefix) {
@@ -33,6 +34,6 @@ public class MGWFileDataRetrieverThreadFactory implements ThreadFactory {
     }
 
     public Thread newThread(Runnable r) {
-        return new Thread(r, prefix + "-" + counter++);
+        return new Thread(r, prefix + "-" + counter.getAndIncrement());
     }
 }
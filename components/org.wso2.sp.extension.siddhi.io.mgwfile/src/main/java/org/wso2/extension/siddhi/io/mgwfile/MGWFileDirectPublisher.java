@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.extension.siddhi.io.mgwfile.dao.MGWFileSourceDAO;
+import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileInfoDTO;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
+import org.wso2.extension.siddhi.io.mgwfile.util.MGWFileStorageUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes uploaded usage files directly to the mgwfile sources of this node, without queueing them in the database.
+ * An accepted file is recorded in the database as processed, so that its content is detected when uploaded again,
+ * and is kept in the direct publishing directory until its events are delivered. If the file cannot be published, it
+ * is queued in the database instead. Files left in the directory when the node stopped are published again once the
+ * sources have been connected for a while. Hence the events of a file may be delivered more than once.
+ */
+public class MGWFileDirectPublisher {
+
+    private static final Log log = LogFactory.getLog(MGWFileDirectPublisher.class);
+    private static final Set<String> acceptedFiles = ConcurrentHashMap.newKeySet();
+    private static Path directory;
+    private static long recoveryDelay;
+    private static Semaphore queueSlots;
+    private static ExecutorService publisherPool;
+    private static ScheduledExecutorService recoveryScheduler;
+    private static ScheduledFuture<?> recovery;
+    private static volatile boolean initialized = false;
+
+    /**
+     * Outcome of publishing an uploaded file directly.
+     */
+    public enum Result {
+        /**
+         * The file is accepted and will be published.
+         */
+        ACCEPTED,
+        /**
+         * The file is not accepted, as a file with the same content was already uploaded.
+         */
+        DUPLICATE,
+        /**
+         * The file is not accepted and should be queued in the database.
+         */
+        REJECTED
+    }
+
+    /**
+     * Initializes the publisher from the configuration of the component. This is called when the component is
+     * activated, and files are not accepted before that.
+     */
+    static synchronized void init() {
+        if (initialized) {
+            return;
+        }
+        directory = Paths.get(MGWFileSourceDS.getDirectPublishingDirectory());
+        recoveryDelay = Long.parseLong(MGWFileSourceDS.getDirectPublishingRecoveryDelay());
+        queueSlots = new Semaphore(Integer.parseInt(MGWFileSourceDS.getDirectPublishingQueueSize()));
+        publisherPool = Executors.newFixedThreadPool(Integer.parseInt(MGWFileSourceDS.getWorkerThreadCount()),
+                new MGWFileDataRetrieverThreadFactory("mgwfile-direct-thread"));
+        recoveryScheduler = Executors
+                .newSingleThreadScheduledExecutor(new MGWFileDataRetrieverThreadFactory("mgwfile-direct-recovery"));
+        initialized = true;
+        // sources may have been connected before the component was activated
+        scheduleRecovery();
+    }
+
+    /**
+     * Accepts the given file for publishing, if there is room in the queue, all the sources are connected and active
+     * and the file is not already being published. Files are not accepted until the component is activated. The
+     * file is moved into the direct publishing directory and recorded in the database before this returns.
+     *
+     * @param dto         Uploaded File Information represented by {@link MGWFileInfoDTO}
+     * @param contentFile local file with the uploaded file content
+     * @return whether the file is accepted
+     */
+    public static Result publish(MGWFileInfoDTO dto, Path contentFile) {
+        if (!initialized) {
+            log.debug("Direct publishing is not initialized yet.");
+            return Result.REJECTED;
+        }
+        if (!MGWFileSourceRegistrationManager.hasEventConsumers()
+                || MGWFileSourceRegistrationManager.isAnyEventConsumerPaused()) {
+            return Result.REJECTED;
+        }
+        if (!queueSlots.tryAcquire()) {
+            log.debug("Direct publishing queue is full.");
+            return Result.REJECTED;
+        }
+        // added before the file is moved, so that it is not picked again by a concurrent recovery
+        if (!acceptedFiles.add(dto.getFileName())) {
+            log.warn("Uploaded file : " + dto + " is not published directly, since a file with the same name is "
+                    + "already being published.");
+            queueSlots.release();
+            return Result.REJECTED;
+        }
+        Path acceptedFile;
+        try {
+            acceptedFile = MGWFileStorageUtil.moveInto(directory, dto.getFileName(), contentFile);
+        } catch (IOException e) {
+            log.warn("Failed to move the uploaded file : " + dto + " into the direct publishing directory.", e);
+            acceptedFiles.remove(dto.getFileName());
+            queueSlots.release();
+            return Result.REJECTED;
+        }
+        try {
+            if (!MGWFileSourceDAO.persistPublishedFile(dto)) {
+                acceptedFiles.remove(dto.getFileName());
+                queueSlots.release();
+                deleteFile(acceptedFile);
+                return Result.DUPLICATE;
+            }
+        } catch (MGWFileSourceException e) {
+            log.warn("Failed to record the uploaded file : " + dto + " as published directly.", e);
+            try {
+                Files.move(acceptedFile, contentFile);
+                acceptedFiles.remove(dto.getFileName());
+                queueSlots.release();
+                return Result.REJECTED;
+            } catch (IOException e1) {
+                // the content is no longer available to be queued, hence it is published without being recorded
+                log.warn("Failed to move the uploaded file : " + dto + " back from the direct publishing "
+                        + "directory.", e1);
+            }
+        }
+        submit(dto, acceptedFile, true);
+        return Result.ACCEPTED;
+    }
+
+    /**
+     * Schedules publishing the files which were accepted, but not published before the node stopped. Recovery is
+     * postponed each time a source connects, so that the files are only published once all the sources of the node
+     * are expected to be connected and no events are lost for streams whose source is not connected yet.
+     */
+    public static synchronized void scheduleRecovery() {
+        if (!initialized) {
+            // scheduled when initialized
+            return;
+        }
+        if (recovery != null) {
+            recovery.cancel(false);
+        }
+        recovery = recoveryScheduler.schedule(MGWFileDirectPublisher::recover, recoveryDelay, TimeUnit.MILLISECONDS);
+    }
+
+    private static void recover() {
+        if (!Files.isDirectory(directory) || !MGWFileSourceRegistrationManager.hasEventConsumers()) {
+            return;
+        }
+        if (MGWFileSourceRegistrationManager.isAnyEventConsumerPaused()) {
+            log.debug("Recovery of the direct publishing directory is postponed as a source is paused.");
+            scheduleRecovery();
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.zip")) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                MGWFileInfoDTO dto;
+                try {
+                    dto = new MGWFileInfoDTO(fileName, Long.parseLong(fileName.split("\\.")[2]));
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    log.warn("Ignoring unexpected file : " + file + " in the direct publishing directory.");
+                    continue;
+                }
+                if (acceptedFiles.add(fileName)) {
+                    log.info("Recovered API Usage file : " + dto + " which was not published completely.");
+                    submit(dto, file, false);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error occurred while recovering the files in the direct publishing directory.", e);
+        }
+    }
+
+    /**
+     * Returns the number of accepted files which are not published yet.
+     */
+    public static int getPendingFileCount() {
+        return acceptedFiles.size();
+    }
+
+    private static void submit(MGWFileInfoDTO dto, Path file, boolean queued) {
+        publisherPool.execute(() -> {
+            try {
+                publishEvents(dto, file);
+            } finally {
+                acceptedFiles.remove(dto.getFileName());
+                if (queued) {
+                    queueSlots.release();
+                }
+            }
+        });
+    }
+
+    private static void publishEvents(MGWFileInfoDTO dto, Path file) {
+        log.info("Started publishing API usage directly from file : " + dto);
+        try (InputStream archiveContent = Files.newInputStream(file)) {
+            new MGWFileArchiveProcessor(null, dto, 0).process(archiveContent);
+            log.info("Completed publishing API Usage directly from file : " + dto);
+        } catch (IOException | MGWFileSourceException e) {
+            log.error("Error occurred while publishing the API Usage file : " + dto + " directly. The file is "
+                    + "queued to be processed from the database.", e);
+            try {
+                MGWFileSourceDAO.requeuePublishedFile(dto, file);
+            } catch (MGWFileSourceException e1) {
+                log.error("Failed to queue the API Usage file : " + dto + ". The file is kept in the direct "
+                        + "publishing directory and will be published again when the node restarts.", e1);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while publishing API Usage from file : " + dto
+                    + ". The file will be published again.", e);
+            return;
+        }
+        deleteFile(file);
+    }
+
+    private static void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete the published usage file : " + file, e);
+        }
+    }
+}
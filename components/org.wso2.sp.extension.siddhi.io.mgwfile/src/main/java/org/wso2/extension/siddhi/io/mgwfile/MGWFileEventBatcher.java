@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Collects the events read from a usage file per stream id and hands them over to the consumer of the stream in
+ * chunks of {@link Event}[], so that the Siddhi junctions are traversed once per chunk instead of once per event.
+ * Events of a stream are delivered in the order they were added. An instance is confined to the thread processing a
+ * file.
+ */
+public class MGWFileEventBatcher {
+
+    private static final Log log = LogFactory.getLog(MGWFileEventBatcher.class);
+
+    private final int batchSize;
+    private final Map<String, StreamBatch> streamBatches = new HashMap<>();
+
+    public MGWFileEventBatcher(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Adds an event to the batch of its stream and hands the batch over to the stream consumer if it is full.
+     *
+     * @param streamId      stream id of the event
+     * @param eventConsumer consumer of the stream
+     * @param event         event to be delivered
+     * @throws InterruptedException if interrupted while waiting for free space in the queue of the stream
+     */
+    public void add(String streamId, MGWFileStreamConsumer eventConsumer, Event event) throws InterruptedException {
+        StreamBatch streamBatch = streamBatches.get(streamId);
+        if (streamBatch == null) {
+            streamBatch = new StreamBatch(streamId);
+            streamBatches.put(streamId, streamBatch);
+        }
+        streamBatch.add(eventConsumer, event);
+    }
+
+    /**
+     * Hands the pending events of all the streams over to the stream consumers.
+     *
+     * @throws InterruptedException if interrupted while waiting for free space in the queue of a stream
+     */
+    public void flush() throws InterruptedException {
+        for (StreamBatch streamBatch : streamBatches.values()) {
+            streamBatch.flush();
+        }
+    }
+
+    /**
+     * Hands the pending events over to the stream consumers and waits until all the events added so far are
+     * delivered to the streams, e.g. before the progress of the file is persisted.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitDelivery() throws InterruptedException {
+        flush();
+        for (StreamBatch streamBatch : streamBatches.values()) {
+            streamBatch.awaitDelivery();
+        }
+    }
+
+    /**
+     * Pending events of a single stream.
+     */
+    private class StreamBatch {
+
+        private final String streamId;
+        private MGWFileStreamConsumer eventConsumer;
+        private Event[] events = new Event[batchSize];
+        private int size = 0;
+        private long lastPosition = -1;
+
+        StreamBatch(String streamId) {
+            this.streamId = streamId;
+        }
+
+        void add(MGWFileStreamConsumer eventConsumer, Event event) throws InterruptedException {
+            if (this.eventConsumer != eventConsumer) {
+                // the stream was re-registered, hence hand the pending events to the consumer they were read for
+                flush();
+                awaitDelivery();
+                this.eventConsumer = eventConsumer;
+                lastPosition = -1;
+            }
+            events[size++] = event;
+            if (size == batchSize) {
+                flush();
+            }
+        }
+
+        void flush() throws InterruptedException {
+            if (size == 0) {
+                return;
+            }
+            Object batch;
+            if (batchSize == 1) {
+                batch = events[0];
+                events[0] = null;
+            } else if (size < batchSize) {
+                Event[] partialBatch = new Event[size];
+                System.arraycopy(events, 0, partialBatch, 0, size);
+                Arrays.fill(events, 0, size, null);
+                batch = partialBatch;
+            } else {
+                // the full array is handed over to Siddhi, hence it cannot be reused
+                batch = events;
+                events = new Event[batchSize];
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Sending " + size + " events to the stream id: " + streamId);
+            }
+            long position = eventConsumer.publish(batch, size);
+            size = 0;
+            if (position >= 0) {
+                lastPosition = position;
+            }
+        }
+
+        void awaitDelivery() throws InterruptedException {
+            if (eventConsumer != null && lastPosition >= 0) {
+                eventConsumer.awaitDelivery(lastPosition);
+            }
+        }
+    }
+}
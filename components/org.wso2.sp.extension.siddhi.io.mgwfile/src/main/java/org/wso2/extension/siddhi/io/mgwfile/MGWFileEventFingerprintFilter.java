@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Time windowed Bloom filter of the fingerprints of the published events, used to drop events which are published
+ * again, e.g. when the same usage data is uploaded under a different file name. The filter has two generations, each
+ * sized for the given number of events. New fingerprints are added to the current generation and both generations
+ * are checked, hence a fingerprint is remembered for at least one and at most two windows. The filter is bounded in
+ * memory, can be used by multiple threads without locking and never misses a replayed event within the window, while
+ * a distinct event is dropped with a false positive probability of about one in a million. All the bits of a
+ * fingerprint are in a single cache line, so that a lookup costs one cache miss per generation.
+ * <p>
+ * The fingerprint covers only the stream, timestamp and attribute values of an event. Distinct events with identical
+ * values within the window cannot be told apart from a replay and are dropped too, unless the events carry a unique
+ * attribute such as a request id.
+ */
+class MGWFileEventFingerprintFilter {
+
+    private static final double FALSE_POSITIVE_PROBABILITY = 1e-6;
+    // the bits of a fingerprint are set within a single cache line, which takes a few more bits for the same accuracy
+    private static final double BLOCK_OVERHEAD = 1.25;
+    private static final int BLOCK_BITS = 512;
+    private static final int BLOCK_WORDS = BLOCK_BITS / 64;
+    private static final int POSITIONS_PER_HASH = 64 / 9;
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+    private static final long NULL_HASH = 0x5BD1E9955BD1E995L;
+
+    private final long window;
+    private final int blockCount;
+    private final int hashCount;
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    /**
+     * @param window   time in milliseconds a generation is filled before it is rotated
+     * @param capacity expected number of distinct events within a window
+     */
+    MGWFileEventFingerprintFilter(long window, long capacity) {
+        this.window = window;
+        double bitsPerEvent = -Math.log(FALSE_POSITIVE_PROBABILITY) / (Math.log(2) * Math.log(2));
+        this.hashCount = (int) Math.round(bitsPerEvent * Math.log(2));
+        double bits = Math.max(1, capacity) * bitsPerEvent * BLOCK_OVERHEAD;
+        this.blockCount = (int) Math.min(Integer.MAX_VALUE / BLOCK_WORDS, Math.ceil(bits / BLOCK_BITS));
+        long now = System.currentTimeMillis();
+        this.current = new Generation(blockCount, now);
+        this.previous = new Generation(0, now);
+    }
+
+    /**
+     * Adds the fingerprint of the given event to the filter.
+     *
+     * @param event event to be published
+     * @return true if the fingerprint was not seen within the window, false if the event is likely a replay
+     */
+    boolean add(Event event) {
+        long fingerprint = hash(event);
+        Generation generation = rotate();
+        Generation older = previous;
+        int firstWord = (int) ((fingerprint >>> 1) % blockCount) * BLOCK_WORDS;
+        boolean added = false;
+        boolean seen = true;
+        long positions = 0;
+        for (int i = 0; i < hashCount; i++) {
+            // every position takes 9 bits, hence a new set of positions is derived after every 7 positions
+            if (i % POSITIONS_PER_HASH == 0) {
+                fingerprint = fmix(fingerprint + SEED);
+                positions = fingerprint;
+            }
+            int word = firstWord + ((int) (positions >>> 6) & (BLOCK_WORDS - 1));
+            long mask = 1L << positions;
+            added |= generation.set(word, mask);
+            if (seen && !older.get(word, mask)) {
+                seen = false;
+            }
+            positions >>>= 9;
+        }
+        return added && !seen;
+    }
+
+    private Generation rotate() {
+        Generation generation = current;
+        long now = System.currentTimeMillis();
+        if (now - generation.startTime < window) {
+            return generation;
+        }
+        synchronized (this) {
+            if (current == generation) {
+                // a generation older than two windows is not kept, e.g. after a period without any events
+                previous = now - generation.startTime < 2 * window ? generation : new Generation(0, now);
+                current = new Generation(blockCount, now);
+            }
+            return current;
+        }
+    }
+
+    private static long hash(Event event) {
+        long hash = hash(SEED, event.getStreamId());
+        hash = mix(hash, event.getTimeStamp());
+        hash = hash(hash, event.getMetaData());
+        hash = hash(hash, event.getCorrelationData());
+        return fmix(hash(hash, event.getPayloadData()));
+    }
+
+    private static long hash(long hash, Object[] values) {
+        if (values == null) {
+            return mix(hash, NULL_HASH);
+        }
+        hash = mix(hash, values.length);
+        for (Object value : values) {
+            if (value == null) {
+                hash = mix(hash, NULL_HASH);
+            } else if (value instanceof String) {
+                hash = hash(hash, (String) value);
+            } else if (value instanceof Double || value instanceof Float) {
+                hash = mix(hash, Double.doubleToLongBits(((Number) value).doubleValue()));
+            } else if (value instanceof Number) {
+                hash = mix(hash, ((Number) value).longValue());
+            } else {
+                hash = hash(hash, value.toString());
+            }
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, String value) {
+        if (value == null) {
+            return mix(hash, NULL_HASH);
+        }
+        int length = value.length();
+        hash = mix(hash, length);
+        long word = 0;
+        for (int i = 0; i < length; i++) {
+            word = (word << 16) | value.charAt(i);
+            if ((i & 3) == 3) {
+                hash = mix(hash, word);
+                word = 0;
+            }
+        }
+        return mix(hash, word);
+    }
+
+    private static long mix(long hash, long value) {
+        return Long.rotateLeft(hash ^ fmix(value), 27) * 5 + 0x52DCE729;
+    }
+
+    /**
+     * Finalization step of MurmurHash3, which spreads every bit of the input over the output.
+     */
+    private static long fmix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB93FE1A85EC5L;
+        return value ^ (value >>> 33);
+    }
+
+    /**
+     * Bit set of a single window, made of blocks of the size of a cache line.
+     */
+    private static class Generation {
+
+        private final AtomicLongArray bits;
+        private final long startTime;
+
+        Generation(int blockCount, long startTime) {
+            this.bits = new AtomicLongArray(blockCount * BLOCK_WORDS);
+            this.startTime = startTime;
+        }
+
+        /**
+         * Sets the given bit of a word.
+         *
+         * @return true if the bit was not set before
+         */
+        boolean set(int word, long mask) {
+            long value;
+            do {
+                value = bits.get(word);
+                if ((value & mask) != 0) {
+                    return false;
+                }
+            } while (!bits.compareAndSet(word, value, value | mask));
+            return true;
+        }
+
+        boolean get(int word, long mask) {
+            return word < bits.length() && (bits.get(word) & mask) != 0;
+        }
+    }
+}
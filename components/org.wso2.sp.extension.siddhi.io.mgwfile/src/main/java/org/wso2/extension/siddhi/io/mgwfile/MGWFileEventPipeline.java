@@ -0,0 +1,554 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.extension.siddhi.io.mgwfile.dao.MGWFileSourceDAO;
+import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileInfoDTO;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileClaimLostException;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
+import org.wso2.extension.siddhi.io.mgwfile.util.MGWFileBinaryEventDecoder;
+import org.wso2.extension.siddhi.io.mgwfile.util.MGWFileEventParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Processes the content of an uploaded usage file in stages connected with bounded queues, so that a single large
+ * file is processed using several cores.
+ * <ul>
+ * <li>inflate : reads the file content from the database, decompresses it and splits it into chunks on line
+ * boundaries, or on block boundaries if the content is in the binary format of {@link MGWFileBinaryEventDecoder}.
+ * Each chunk gets a sequence number.</li>
+ * <li>parse : one or more parsers decode chunks into events concurrently</li>
+ * <li>publish : hands the parsed chunks over to the stream consumers in sequence order, in the thread which calls
+ * {@link #process}. Hence events of every stream are delivered in file order.</li>
+ * </ul>
+ * The number of chunks in flight is bounded. The publish stage waits while the queue of a stream is full, e.g. when
+ * the stream is paused, which in turn blocks the upstream stages.
+ * <p>
+ * Once the configured number of events are published, the offset of the last published chunk is persisted along with
+ * the index of the entry. When the file is picked again after a failure, the content of that entry up to the persisted
+ * offset is skipped. If the claim of the file is found to be lost while persisting the offset, the pipeline is stopped
+ * without publishing the pending events.
+ * <p>
+ * If deduplication is enabled, events whose fingerprint was published within the configured window are dropped in
+ * the publish stage, see {@link MGWFileEventFingerprintFilter}.
+ */
+public class MGWFileEventPipeline {
+
+    private static final Log log = LogFactory.getLog(MGWFileEventPipeline.class);
+    private static final int CONTENT_CHUNK_SIZE = 256 * 1024;
+    private static final int QUEUE_CAPACITY = 16;
+    private static final MGWFileSourceMetrics metrics = MGWFileSourceMetrics.getInstance();
+    private static final ContentChunk END_OF_CONTENT = new ContentChunk(-1, new byte[0], 0, -1, false);
+    private static final EventBlock END_OF_EVENTS = new EventBlock(-1, new ArrayList<>(0), -1);
+    private static final ExecutorService stagePool = Executors
+            .newCachedThreadPool(new MGWFileDataRetrieverThreadFactory("mgwfile-pipeline-thread"));
+    private static MGWFileEventFingerprintFilter sharedFingerprintFilter;
+    private static boolean fingerprintFilterCreated = false;
+
+    private final Connection connection;
+    private final MGWFileInfoDTO infoDTO;
+    private final int entryIndex;
+    private final int parserCount;
+    private final int checkpointInterval;
+    private final MGWFileEventFingerprintFilter fingerprintFilter;
+    private final BlockingQueue<ContentChunk> contentQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BlockingQueue<EventBlock> eventQueue;
+    private final Semaphore chunksInFlight;
+    private final CountDownLatch contentConsumed = new CountDownLatch(1);
+    private volatile Throwable failure;
+
+    /**
+     * Creates a pipeline to publish the events of the given file.
+     *
+     * @param connection         connection used for processing the file, on which the progress is persisted
+     * @param infoDTO            file being processed
+     * @param entryIndex         index of the usage data entry of the file whose content is processed
+     * @param parserCount        number of threads parsing the content
+     * @param checkpointInterval number of events published between two persisted offsets, or 0 if the progress is
+     *                           not persisted, in which case the connection may be null and the content is processed
+     *                           from the beginning
+     */
+    public MGWFileEventPipeline(Connection connection, MGWFileInfoDTO infoDTO, int entryIndex, int parserCount,
+            int checkpointInterval) {
+        this.connection = connection;
+        this.infoDTO = infoDTO;
+        this.entryIndex = entryIndex;
+        this.parserCount = Math.max(1, parserCount);
+        this.checkpointInterval = checkpointInterval;
+        this.fingerprintFilter = getFingerprintFilter();
+        this.chunksInFlight = new Semaphore(2 * QUEUE_CAPACITY + this.parserCount);
+        this.eventQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY + this.parserCount);
+    }
+
+    /**
+     * Returns the filter shared by all the pipelines, which is created from the configuration of the component when
+     * the first pipeline is created, or null if deduplication is disabled.
+     */
+    private static synchronized MGWFileEventFingerprintFilter getFingerprintFilter() {
+        if (!fingerprintFilterCreated) {
+            sharedFingerprintFilter = createFingerprintFilter();
+            fingerprintFilterCreated = true;
+        }
+        return sharedFingerprintFilter;
+    }
+
+    private static MGWFileEventFingerprintFilter createFingerprintFilter() {
+        long window = Long.parseLong(MGWFileSourceDS.getDeduplicationWindow());
+        if (window <= 0) {
+            return null;
+        }
+        log.info("Events published within " + window + " milliseconds are deduplicated.");
+        return new MGWFileEventFingerprintFilter(window, Long.parseLong(MGWFileSourceDS.getDeduplicationCapacity()));
+    }
+
+    /**
+     * Publishes all the events in the given content and returns once they are delivered to the streams.
+     *
+     * @param content      decompressed content of the usage file
+     * @param eventBatcher batcher used to deliver the events
+     * @throws IOException                if an error occurred while reading the content
+     * @throws InterruptedException       if interrupted while waiting for the events
+     * @throws MGWFileClaimLostException if the claim of the file has been lost
+     */
+    public void process(InputStream content, MGWFileEventBatcher eventBatcher)
+            throws IOException, InterruptedException, MGWFileClaimLostException {
+        List<Future<?>> stages = new ArrayList<>(parserCount + 1);
+        stages.add(stagePool.submit(() -> inflate(content)));
+        for (int i = 0; i < parserCount; i++) {
+            stages.add(stagePool.submit(this::parse));
+        }
+        try {
+            publish(eventBatcher);
+        } finally {
+            contentConsumed.countDown();
+            // no-op if the stages have completed, otherwise stops them from waiting on the queues
+            for (Future<?> stage : stages) {
+                stage.cancel(true);
+            }
+        }
+        if (failure != null) {
+            throw new IOException("Error occurred while processing the content of file : " + infoDTO, failure);
+        }
+    }
+
+    /**
+     * Waits until the inflate stage stops reading the content, e.g. to read the next entry of the same archive while
+     * this pipeline is still parsing and publishing.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitContentConsumed() throws InterruptedException {
+        contentConsumed.await();
+    }
+
+    private void inflate(InputStream content) {
+        try {
+            inflateContent(content);
+        } finally {
+            contentConsumed.countDown();
+        }
+    }
+
+    private void inflateContent(InputStream rawContent) {
+        try {
+            PushbackInputStream content = new PushbackInputStream(rawContent, MGWFileBinaryEventDecoder.HEADER_LENGTH);
+            boolean binary = isBinaryContent(content);
+            long offset = skipProcessedContent(content, binary);
+            byte[] buffer = new byte[CONTENT_CHUNK_SIZE];
+            int filled = 0;
+            int read;
+            long sequence = 0;
+            long inflateStartTime = System.nanoTime();
+            while ((read = content.read(buffer, filled, buffer.length - filled)) != -1) {
+                filled += read;
+                if (filled < buffer.length) {
+                    continue;
+                }
+                int lineEnd = binary ? lastBlockEnd(buffer, filled) : lastLineEnd(buffer, filled);
+                if (lineEnd < 0) {
+                    // a single line or block is longer than the buffer
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    continue;
+                }
+                byte[] next = new byte[Math.max(CONTENT_CHUNK_SIZE, filled - lineEnd)];
+                System.arraycopy(buffer, lineEnd, next, 0, filled - lineEnd);
+                offset += lineEnd;
+                recordInflated(inflateStartTime, lineEnd);
+                putContent(new ContentChunk(sequence++, buffer, lineEnd, offset, binary));
+                // the time waiting for a free slot is not part of the inflate latency
+                inflateStartTime = System.nanoTime();
+                filled -= lineEnd;
+                buffer = next;
+            }
+            if (filled > 0) {
+                recordInflated(inflateStartTime, filled);
+                putContent(new ContentChunk(sequence, buffer, filled, offset + filled, binary));
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            // the pipeline is stopped, hence there is no one to read the rest of the content
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            for (int i = 0; i < parserCount; i++) {
+                contentQueue.put(END_OF_CONTENT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Checks whether the content starts with the header of the binary format, without consuming the content.
+     */
+    private boolean isBinaryContent(PushbackInputStream content) throws IOException {
+        byte[] header = new byte[MGWFileBinaryEventDecoder.HEADER_LENGTH];
+        int length = 0;
+        int read;
+        while (length < header.length && (read = content.read(header, length, header.length - length)) != -1) {
+            length += read;
+        }
+        content.unread(header, 0, length);
+        if (!MGWFileBinaryEventDecoder.isBinaryFormat(header, length)) {
+            return false;
+        }
+        if (length < header.length
+                || MGWFileBinaryEventDecoder.getVersion(header) != MGWFileBinaryEventDecoder.VERSION) {
+            throw new IOException("Unsupported binary format version of file : " + infoDTO);
+        }
+        return true;
+    }
+
+    /**
+     * Skips the header of the binary format and the content which was processed before a failure.
+     *
+     * @return offset of the next byte to be read
+     */
+    private long skipProcessedContent(InputStream content, boolean binary) throws IOException {
+        long offset = checkpointInterval > 0 && entryIndex == infoDTO.getEntryIndex() ? infoDTO.getOffset() : 0;
+        if (offset > 0) {
+            log.info("Resuming publishing API Usage from offset : " + offset + " of entry " + entryIndex
+                    + " of file : " + infoDTO);
+        }
+        if (binary) {
+            offset = Math.max(offset, MGWFileBinaryEventDecoder.HEADER_LENGTH);
+        }
+        long remaining = offset;
+        while (remaining > 0) {
+            long skipped = content.skip(remaining);
+            if (skipped <= 0) {
+                if (content.read() == -1) {
+                    throw new IOException("Content of file : " + infoDTO + " ends before the processed offset.");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+        return offset;
+    }
+
+    private static void recordInflated(long inflateStartTime, int length) {
+        metrics.recordLatency(MGWFileSourceMetrics.Stage.INFLATE, inflateStartTime);
+        metrics.addProcessedBytes(length);
+    }
+
+    /**
+     * Returns the index after the last complete block in the buffer or -1 if there is none.
+     */
+    private static int lastBlockEnd(byte[] buffer, int length) {
+        int blockEnd = 0;
+        while (blockEnd < length) {
+            long blockLength = MGWFileBinaryEventDecoder.getBlockLength(buffer, blockEnd, length);
+            if (blockLength < 0 || blockEnd + blockLength > length) {
+                break;
+            }
+            blockEnd += (int) blockLength;
+        }
+        return blockEnd > 0 ? blockEnd : -1;
+    }
+
+    private void putContent(ContentChunk chunk) throws InterruptedException {
+        chunksInFlight.acquire();
+        contentQueue.put(chunk);
+    }
+
+    /**
+     * Returns the index after the last line feed in the buffer or -1 if there is none.
+     */
+    private static int lastLineEnd(byte[] buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private void parse() {
+        try {
+            MGWFileEventParser eventParser = new MGWFileEventParser();
+            ContentChunk chunk;
+            while ((chunk = contentQueue.take()) != END_OF_CONTENT) {
+                eventQueue.put(new EventBlock(chunk.sequence, parseChunk(chunk, eventParser), chunk.endOffset));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        try {
+            eventQueue.put(END_OF_EVENTS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<ParsedEvent> parseChunk(ContentChunk chunk, MGWFileEventParser eventParser) {
+        if (chunk.binary) {
+            return parseBinaryChunk(chunk);
+        }
+        long parseStartTime = System.nanoTime();
+        List<ParsedEvent> events = new ArrayList<>();
+        byte[] bytes = chunk.bytes;
+        long chunkOffset = chunk.endOffset - chunk.length;
+        int lineBegin = 0;
+        long lineNumber = 0;
+        String streamId;
+        while (lineBegin < chunk.length) {
+            int lineEnd = lineBegin;
+            while (lineEnd < chunk.length && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd > lineBegin && bytes[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            String readLine = new String(bytes, lineBegin, lineEnd - lineBegin, StandardCharsets.UTF_8);
+            long lineOffset = chunkOffset + lineBegin;
+            lineBegin = next;
+            lineNumber++;
+            if (!eventParser.tokenize(readLine)) {
+                log.error("Event format does not match with the expected format in the line at offset : "
+                        + lineOffset + " of entry : " + entryIndex + " on file : " + infoDTO);
+                metrics.incrementParseErrors(null);
+                // skip this line and continue with the next event in the file
+                continue;
+            }
+            streamId = eventParser.getStreamId();
+            MGWFileStreamConsumer eventConsumer = MGWFileSourceRegistrationManager.getEventConsumer(streamId);
+            if (eventConsumer == null) {
+                log.error("Unable to find eventsource for stream id: " + streamId);
+                metrics.incrementParseErrors(streamId);
+                continue;
+            }
+            try {
+                events.add(new ParsedEvent(streamId, eventConsumer, eventParser.createEvent(streamId)));
+            } catch (NumberFormatException e) {
+                log.error("Error occurred while executing onEvent for event : " + readLine, e);
+                metrics.incrementParseErrors(streamId);
+            }
+        }
+        metrics.addProcessedLines(lineNumber);
+        metrics.recordLatency(MGWFileSourceMetrics.Stage.PARSE, parseStartTime);
+        return events;
+    }
+
+    private List<ParsedEvent> parseBinaryChunk(ContentChunk chunk) {
+        long parseStartTime = System.nanoTime();
+        List<ParsedEvent> events = new ArrayList<>();
+        long eventCount = 0;
+        int blockBegin = 0;
+        while (blockBegin < chunk.length) {
+            long blockLength;
+            try {
+                blockLength = MGWFileBinaryEventDecoder.getBlockLength(chunk.bytes, blockBegin, chunk.length);
+            } catch (IllegalArgumentException e) {
+                blockLength = -1;
+            }
+            if (blockLength < 0 || blockBegin + blockLength > chunk.length) {
+                log.error("Content of entry : " + entryIndex + " on file : " + infoDTO + " ends with an "
+                        + "incomplete block at offset : " + (chunk.endOffset - chunk.length + blockBegin));
+                metrics.incrementParseErrors(null);
+                break;
+            }
+            int blockEnd = blockBegin + (int) blockLength;
+            List<Event> blockEvents;
+            try {
+                blockEvents = MGWFileBinaryEventDecoder.decodeBlock(chunk.bytes, blockBegin, blockEnd);
+            } catch (IllegalArgumentException e) {
+                log.error("Error occurred while decoding the block at offset : "
+                        + (chunk.endOffset - chunk.length + blockBegin) + " of entry : " + entryIndex + " on file : "
+                        + infoDTO, e);
+                // skip this block and continue with the next block in the file
+                metrics.incrementParseErrors(null);
+                blockBegin = blockEnd;
+                continue;
+            }
+            blockBegin = blockEnd;
+            eventCount += blockEvents.size();
+            if (blockEvents.isEmpty()) {
+                continue;
+            }
+            String streamId = blockEvents.get(0).getStreamId();
+            MGWFileStreamConsumer eventConsumer = MGWFileSourceRegistrationManager.getEventConsumer(streamId);
+            if (eventConsumer == null) {
+                log.error("Unable to find eventsource for stream id: " + streamId);
+                metrics.incrementParseErrors(streamId);
+                continue;
+            }
+            for (Event event : blockEvents) {
+                events.add(new ParsedEvent(streamId, eventConsumer, event));
+            }
+        }
+        // an event of the binary format corresponds to a line of the text format
+        metrics.addProcessedLines(eventCount);
+        metrics.recordLatency(MGWFileSourceMetrics.Stage.PARSE, parseStartTime);
+        return events;
+    }
+
+    private void publish(MGWFileEventBatcher eventBatcher) throws InterruptedException, MGWFileClaimLostException {
+        Map<Long, EventBlock> pendingBlocks = new HashMap<>();
+        long nextSequence = 0;
+        int completedParsers = 0;
+        long eventsSinceCheckpoint = 0;
+        while (completedParsers < parserCount) {
+            EventBlock block = eventQueue.take();
+            if (block == END_OF_EVENTS) {
+                if (failure != null) {
+                    // the missing chunks will never arrive
+                    if (fingerprintFilter != null) {
+                        // the pending events are already in the filter, hence they would be dropped on a retry
+                        eventBatcher.awaitDelivery();
+                    }
+                    return;
+                }
+                completedParsers++;
+                continue;
+            }
+            pendingBlocks.put(block.sequence, block);
+            while ((block = pendingBlocks.remove(nextSequence)) != null) {
+                for (ParsedEvent parsedEvent : block.events) {
+                    if (fingerprintFilter != null && !fingerprintFilter.add(parsedEvent.event)) {
+                        metrics.incrementDuplicateEvents(parsedEvent.streamId);
+                        continue;
+                    }
+                    eventBatcher.add(parsedEvent.streamId, parsedEvent.eventConsumer, parsedEvent.event);
+                }
+                nextSequence++;
+                chunksInFlight.release();
+                eventsSinceCheckpoint += block.events.size();
+                if (checkpointInterval > 0 && eventsSinceCheckpoint >= checkpointInterval) {
+                    checkpoint(eventBatcher, block.endOffset);
+                    eventsSinceCheckpoint = 0;
+                }
+            }
+        }
+        eventBatcher.awaitDelivery();
+    }
+
+    private void checkpoint(MGWFileEventBatcher eventBatcher, long offset)
+            throws InterruptedException, MGWFileClaimLostException {
+        // the events before the offset must be delivered before the offset is persisted
+        eventBatcher.awaitDelivery();
+        try {
+            MGWFileSourceDAO.updateOffset(connection, infoDTO, entryIndex, offset);
+        } catch (MGWFileClaimLostException e) {
+            // another node has reclaimed the file and publishes it from the last persisted offset
+            throw e;
+        } catch (MGWFileSourceException e) {
+            log.warn("Error occurred while persisting the offset of file : " + infoDTO
+                    + ". Processing will be continued.", e);
+        }
+    }
+
+    /**
+     * Chunk of the file content, which ends on a line or block boundary.
+     */
+    private static class ContentChunk {
+
+        private final long sequence;
+        private final byte[] bytes;
+        private final int length;
+        private final long endOffset;
+        private final boolean binary;
+
+        ContentChunk(long sequence, byte[] bytes, int length, long endOffset, boolean binary) {
+            this.sequence = sequence;
+            this.bytes = bytes;
+            this.length = length;
+            this.endOffset = endOffset;
+            this.binary = binary;
+        }
+    }
+
+    /**
+     * Events parsed from a single chunk.
+     */
+    private static class EventBlock {
+
+        private final long sequence;
+        private final List<ParsedEvent> events;
+        private final long endOffset;
+
+        EventBlock(long sequence, List<ParsedEvent> events, long endOffset) {
+            this.sequence = sequence;
+            this.events = events;
+            this.endOffset = endOffset;
+        }
+    }
+
+    /**
+     * Event parsed from a line along with the consumer of its stream.
+     */
+    private static class ParsedEvent {
+
+        private final String streamId;
+        private final MGWFileStreamConsumer eventConsumer;
+        private final Event event;
+
+        ParsedEvent(String streamId, MGWFileStreamConsumer eventConsumer, Event event) {
+            this.streamId = streamId;
+            this.eventConsumer = eventConsumer;
+            this.event = event;
+        }
+    }
+}
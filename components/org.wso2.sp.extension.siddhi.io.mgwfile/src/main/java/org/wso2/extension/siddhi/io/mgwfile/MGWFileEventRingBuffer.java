@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded ring buffer with many producers and a single consumer. Producers claim a position with a CAS on the tail
+ * and never take a lock. Every slot carries the position it is ready for, so that the consumer only reads a slot once
+ * its producer has published the element.
+ *
+ * @param <E> type of the elements
+ */
+final class MGWFileEventRingBuffer<E> {
+
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head = 0;
+
+    /**
+     * @param capacity minimum capacity, which is rounded up to a power of two
+     */
+    MGWFileEventRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        slots = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Adds an element without waiting. May be called by many threads.
+     *
+     * @return position of the element, or -1 if the buffer is full
+     */
+    long offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long available = sequences.get(index) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = element;
+                    // a volatile write, hence the consumer sees the element once it sees the sequence
+                    sequences.set(index, position + 1);
+                    return position;
+                }
+            } else if (available < 0) {
+                return -1;
+            }
+            // otherwise another producer claimed the position, hence retry with the new tail
+        }
+    }
+
+    /**
+     * Removes the next element. Must be called by a single thread.
+     *
+     * @return the next element or null if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        long position = head;
+        int index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        E element = (E) slots[index];
+        slots[index] = null;
+        sequences.set(index, position + slots.length);
+        head = position + 1;
+        return element;
+    }
+
+    /**
+     * Returns the position of the next element to be removed. Every element at a lower position has been removed.
+     */
+    long getHead() {
+        return head;
+    }
+
+    boolean isEmpty() {
+        long position = head;
+        return sequences.get((int) (position & mask)) != position + 1;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
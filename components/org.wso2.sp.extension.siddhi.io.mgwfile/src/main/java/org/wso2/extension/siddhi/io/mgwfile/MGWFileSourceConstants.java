@@ -26,8 +26,13 @@ public class MGWFileSourceConstants {
 
     public static final String API_USAGE_OUTPUT_FILE_NAME = "api-usage-data.dat";
 
+    // Entries of an uploaded archive holding usage data, e.g. api-usage-data.dat or api-usage-data-1.dat.gz
+    public static final String USAGE_DATA_ENTRY_REGEX = "^api-usage-data[\\w.-]*\\.dat(\\.gz)?$";
+
     public static final String UPLOADED_USAGE_PUBLISH_FREQUENCY_PROPERTY = "usage.publishing.frequency";
 
+    public static final String UPLOADED_USAGE_PUBLISH_MIN_FREQUENCY_PROPERTY = "usage.publishing.min.frequency";
+
     public static final String UPLOADED_USAGE_CLEANUP_FREQUENCY_PROPERTY = "usage.cleanup.frequency";
 
     public static final String FILE_RETENTION_DAYS_PROPERTY = "file.retention.days";
@@ -38,39 +43,186 @@ public class MGWFileSourceConstants {
 
     public static final String DEFAULT_UPLOADED_USAGE_PUBLISH_FREQUENCY = "300000";
 
+    public static final String DEFAULT_UPLOADED_USAGE_PUBLISH_MIN_FREQUENCY = "1000";
+
+    public static final String PUBLISH_BATCH_SIZE_PROPERTY = "usage.publishing.batch.size";
+
+    public static final String DEFAULT_PUBLISH_BATCH_SIZE = "100";
+
+    public static final String PARSER_THREAD_COUNT_PROPERTY = "usage.publishing.parser.thread.count";
+
+    public static final String DEFAULT_PARSER_THREAD_COUNT = "1";
+
+    public static final String ENTRY_THREAD_COUNT_PROPERTY = "usage.publishing.entry.thread.count";
+
+    public static final String DEFAULT_ENTRY_THREAD_COUNT = "2";
+
+    public static final String DEDUPLICATION_WINDOW_PROPERTY = "usage.publishing.deduplication.window";
+
+    public static final String DEFAULT_DEDUPLICATION_WINDOW = "0";
+
+    public static final String DEDUPLICATION_CAPACITY_PROPERTY = "usage.publishing.deduplication.capacity";
+
+    public static final String DEFAULT_DEDUPLICATION_CAPACITY = "1000000";
+
+    public static final String CHECKPOINT_INTERVAL_PROPERTY = "usage.publishing.checkpoint.interval";
+
+    public static final String DEFAULT_CHECKPOINT_INTERVAL = "10000";
+
+    public static final String MAX_ATTEMPTS_PROPERTY = "usage.publishing.max.attempts";
+
+    public static final String DEFAULT_MAX_ATTEMPTS = "3";
+
+    public static final String LEASE_TIMEOUT_PROPERTY = "usage.publishing.lease.timeout";
+
+    public static final String DEFAULT_LEASE_TIMEOUT = "600000";
+
+    public static final String MAX_USAGE_DATA_SIZE_PROPERTY = "usage.upload.max.data.size";
+
+    public static final String DEFAULT_MAX_USAGE_DATA_SIZE = "5242880000";
+
+    public static final String FILE_STORAGE_DIRECTORY_PROPERTY = "usage.file.storage.directory";
+
+    public static final String DIRECT_PUBLISHING_DIRECTORY_PROPERTY = "usage.publishing.direct.directory";
+
+    public static final String DIRECT_PUBLISHING_QUEUE_SIZE_PROPERTY = "usage.publishing.direct.queue.size";
+
+    public static final String DEFAULT_DIRECT_PUBLISHING_QUEUE_SIZE = "10";
+
+    public static final String DIRECT_PUBLISHING_RECOVERY_DELAY_PROPERTY = "usage.publishing.direct.recovery.delay";
+
+    public static final String DEFAULT_DIRECT_PUBLISHING_RECOVERY_DELAY = "30000";
+
+    public static final String NODE_ID_PROPERTY = "usage.publishing.node.id";
+
+    public static final String STREAM_ID_OPTION = "wso2.stream.id";
+
+    public static final String STREAM_QUEUE_SIZE_OPTION = "queue.size";
+
+    public static final String DEFAULT_STREAM_QUEUE_SIZE = "64";
+
+    public static final String STREAM_OVERFLOW_POLICY_OPTION = "overflow.policy";
+
+    public static final String DEFAULT_STREAM_OVERFLOW_POLICY = "block";
+
     public static final String DEFAULT_UPLOADED_USAGE_CLEANUP_FREQUENCY = "1800000";
 
+    public static final String CLEANUP_BATCH_SIZE_PROPERTY = "usage.cleanup.batch.size";
+
+    public static final String DEFAULT_CLEANUP_BATCH_SIZE = "1000";
+
+    public static final String CLEANUP_BATCH_PAUSE_PROPERTY = "usage.cleanup.batch.pause";
+
+    public static final String DEFAULT_CLEANUP_BATCH_PAUSE = "100";
+
+    public static final String CLEANUP_PARTITION_DROP_PROPERTY = "usage.cleanup.partition.drop";
+
+    public static final String DEFAULT_CLEANUP_PARTITION_DROP = "false";
+
     public static final String INSERT_UPLOADED_FILE_INFO_QUERY = "INSERT INTO AM_USAGE_UPLOADED_FILES "
-            + "(FILE_NAME,FILE_TIMESTAMP,FILE_CONTENT) VALUES(?,?,?)";
+            + "(FILE_NAME,FILE_TIMESTAMP,CONTENT_HASH,FILE_CONTENT) VALUES(?,?,?,?)";
+
+    public static final String INSERT_UPLOADED_FILE_METADATA_QUERY = "INSERT INTO AM_USAGE_UPLOADED_FILES "
+            + "(FILE_NAME,FILE_TIMESTAMP,CONTENT_HASH) VALUES(?,?,?)";
+
+    // Files published directly are recorded as processed, so that their content is detected when uploaded again
+    public static final String INSERT_PUBLISHED_FILE_METADATA_QUERY = "INSERT INTO AM_USAGE_UPLOADED_FILES "
+            + "(FILE_NAME,FILE_TIMESTAMP,CONTENT_HASH,FILE_PROCESSED) VALUES(?,?,?,2)";
+
+    public static final String REQUEUE_PUBLISHED_FILE_QUERY = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET FILE_PROCESSED=0, FILE_CONTENT=?, FILE_ENTRY=0, FILE_OFFSET=0, ATTEMPT_COUNT=0 "
+            + "WHERE FILE_NAME=? AND FILE_PROCESSED=2";
+
+    public static final String REQUEUE_PUBLISHED_FILE_METADATA_QUERY = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET FILE_PROCESSED=0, FILE_ENTRY=0, FILE_OFFSET=0, ATTEMPT_COUNT=0 "
+            + "WHERE FILE_NAME=? AND FILE_PROCESSED=2";
+
+    public static final String GET_FILE_BY_CONTENT_HASH_QUERY = "SELECT FILE_NAME FROM AM_USAGE_UPLOADED_FILES "
+            + "WHERE CONTENT_HASH=?";
 
-    public static final String GET_NEXT_FILES_TO_PROCESS_QUERY_DEFAULT =
-            "SELECT FILE_NAME,FILE_TIMESTAMP FROM AM_USAGE_UPLOADED_FILES "
-                    + "WHERE FILE_PROCESSED=0 ORDER BY FILE_TIMESTAMP LIMIT ? FOR UPDATE;";
+    // Claims the next files in a single statement. Rows locked by a concurrent claim are skipped where supported,
+    // otherwise the FILE_PROCESSED=0 condition is re-evaluated once the concurrent claim is committed. The default
+    // query limits the rows with the standard FETCH FIRST clause.
+    public static final String CLAIM_NEXT_FILES_QUERY_DEFAULT = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET FILE_PROCESSED=1, CLAIM_ID=?, LEASE_EXPIRY=?, ATTEMPT_COUNT=ATTEMPT_COUNT+1 "
+            + "WHERE FILE_PROCESSED=0 AND FILE_NAME IN "
+            + "(SELECT FILE_NAME FROM AM_USAGE_UPLOADED_FILES WHERE FILE_PROCESSED=0 ORDER BY FILE_TIMESTAMP "
+            + "FETCH FIRST ? ROWS ONLY)";
 
-    public static final String GET_NEXT_FILES_TO_PROCESS_QUERY_ORACLE = "SELECT FILE_NAME,FILE_TIMESTAMP "
-            + "FROM AM_USAGE_UPLOADED_FILES WHERE rownum<=? AND "
-            + "FILE_PROCESSED=0 ORDER BY FILE_TIMESTAMP FOR UPDATE";
+    public static final String CLAIM_NEXT_FILES_QUERY_MYSQL = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET FILE_PROCESSED=1, CLAIM_ID=?, LEASE_EXPIRY=?, ATTEMPT_COUNT=ATTEMPT_COUNT+1 "
+            + "WHERE FILE_PROCESSED=0 ORDER BY FILE_TIMESTAMP LIMIT ?";
 
-    public static final String GET_NEXT_FILES_TO_PROCESS_QUERY_MSSQL = "SELECT TOP (?) FILE_NAME,"
-            + "FILE_TIMESTAMP FROM AM_USAGE_UPLOADED_FILES WITH (UPDLOCK) "
-            + "WHERE FILE_PROCESSED=0 ORDER BY FILE_TIMESTAMP";
+    public static final String CLAIM_NEXT_FILES_QUERY_H2 = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET FILE_PROCESSED=1, CLAIM_ID=?, LEASE_EXPIRY=?, ATTEMPT_COUNT=ATTEMPT_COUNT+1 "
+            + "WHERE FILE_PROCESSED=0 AND FILE_NAME IN "
+            + "(SELECT FILE_NAME FROM AM_USAGE_UPLOADED_FILES WHERE FILE_PROCESSED=0 ORDER BY FILE_TIMESTAMP "
+            + "LIMIT ?)";
 
-    public static final String GET_NEXT_FILES_TO_PROCESS_QUERY_DB2 =
-            "SELECT FILE_NAME,FILE_TIMESTAMP FROM AM_USAGE_UPLOADED_FILES WHERE FILE_PROCESSED IN " +
-                    "(SELECT FILE_PROCESSED FROM AM_USAGE_UPLOADED_FILES WHERE FILE_PROCESSED=0 " +
-                    "ORDER BY FILE_TIMESTAMP LIMIT ?) FOR UPDATE";
+    public static final String CLAIM_NEXT_FILES_QUERY_POSTGRESQL = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET FILE_PROCESSED=1, CLAIM_ID=?, LEASE_EXPIRY=?, ATTEMPT_COUNT=ATTEMPT_COUNT+1 "
+            + "WHERE FILE_NAME IN (SELECT FILE_NAME FROM AM_USAGE_UPLOADED_FILES WHERE FILE_PROCESSED=0 "
+            + "ORDER BY FILE_TIMESTAMP LIMIT ? FOR UPDATE SKIP LOCKED)";
 
-    public static final String UPDATE_FILE_PROCESSING_STARTED_STATUS = "UPDATE AM_USAGE_UPLOADED_FILES "
-            + "SET FILE_PROCESSED=1 WHERE FILE_PROCESSED=0 AND FILE_NAME = ?";
+    public static final String CLAIM_NEXT_FILES_QUERY_ORACLE = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET FILE_PROCESSED=1, CLAIM_ID=?, LEASE_EXPIRY=?, ATTEMPT_COUNT=ATTEMPT_COUNT+1 "
+            + "WHERE FILE_PROCESSED=0 AND FILE_NAME IN "
+            + "(SELECT FILE_NAME FROM (SELECT FILE_NAME FROM AM_USAGE_UPLOADED_FILES WHERE FILE_PROCESSED=0 "
+            + "ORDER BY FILE_TIMESTAMP) WHERE rownum<=?)";
 
-    public static final String DELETE_OLD_UPLOAD_COMPLETED_FILES = "DELETE FROM AM_USAGE_UPLOADED_FILES "
-            + "WHERE FILE_PROCESSED=2 AND FILE_TIMESTAMP < ?";
+    public static final String CLAIM_NEXT_FILES_QUERY_MSSQL = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET FILE_PROCESSED=1, CLAIM_ID=?, LEASE_EXPIRY=?, ATTEMPT_COUNT=ATTEMPT_COUNT+1 "
+            + "WHERE FILE_PROCESSED=0 AND FILE_NAME IN "
+            + "(SELECT TOP (?) FILE_NAME FROM AM_USAGE_UPLOADED_FILES WITH (UPDLOCK, READPAST, ROWLOCK) "
+            + "WHERE FILE_PROCESSED=0 ORDER BY FILE_TIMESTAMP)";
+
+    public static final String CLAIM_NEXT_FILES_QUERY_INFORMIX = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET FILE_PROCESSED=1, CLAIM_ID=?, LEASE_EXPIRY=?, ATTEMPT_COUNT=ATTEMPT_COUNT+1 "
+            + "WHERE FILE_PROCESSED=0 AND FILE_NAME IN "
+            + "(SELECT FIRST ? FILE_NAME FROM AM_USAGE_UPLOADED_FILES WHERE FILE_PROCESSED=0 "
+            + "ORDER BY FILE_TIMESTAMP)";
+
+    public static final String GET_CLAIMED_FILES_QUERY = "SELECT FILE_NAME,FILE_TIMESTAMP,FILE_ENTRY,FILE_OFFSET "
+            + "FROM AM_USAGE_UPLOADED_FILES WHERE FILE_PROCESSED=1 AND CLAIM_ID=? ORDER BY FILE_TIMESTAMP";
+
+    // Files whose processing has failed too many times are parked in the failed state (3) instead of being reclaimed
+    public static final String PARK_FAILED_FILES_QUERY = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET FILE_PROCESSED=3, CLAIM_ID=NULL WHERE FILE_PROCESSED=1 AND LEASE_EXPIRY < ? "
+            + "AND ATTEMPT_COUNT >= ?";
+
+    public static final String RECLAIM_EXPIRED_FILES_QUERY = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET FILE_PROCESSED=0, CLAIM_ID=NULL WHERE FILE_PROCESSED=1 AND LEASE_EXPIRY < ?";
+
+    public static final String RENEW_FILE_LEASE_QUERY = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET LEASE_EXPIRY=? WHERE FILE_PROCESSED=1 AND FILE_NAME=? AND CLAIM_ID=?";
+
+    public static final String UPDATE_FILE_OFFSET_QUERY = "UPDATE AM_USAGE_UPLOADED_FILES "
+            + "SET FILE_ENTRY=?, FILE_OFFSET=? WHERE FILE_PROCESSED=1 AND FILE_NAME=? AND CLAIM_ID=?";
+
+    public static final String GET_OLD_UPLOAD_COMPLETED_FILES = "SELECT FILE_NAME FROM AM_USAGE_UPLOADED_FILES "
+            + "WHERE FILE_PROCESSED=2 AND FILE_TIMESTAMP < ? ORDER BY FILE_TIMESTAMP";
+
+    public static final String DELETE_UPLOAD_COMPLETED_FILE = "DELETE FROM AM_USAGE_UPLOADED_FILES "
+            + "WHERE FILE_NAME=? AND FILE_PROCESSED=2";
+
+    public static final String GET_PARTITIONS_QUERY_MYSQL = "SELECT PARTITION_NAME, PARTITION_DESCRIPTION "
+            + "FROM INFORMATION_SCHEMA.PARTITIONS WHERE TABLE_SCHEMA=DATABASE() "
+            + "AND TABLE_NAME='AM_USAGE_UPLOADED_FILES' AND PARTITION_NAME IS NOT NULL";
+
+    public static final String GET_PARTITION_FILES_QUERY_MYSQL = "SELECT FILE_NAME, FILE_PROCESSED "
+            + "FROM AM_USAGE_UPLOADED_FILES PARTITION (`%s`)";
+
+    public static final String DROP_PARTITION_QUERY_MYSQL = "ALTER TABLE AM_USAGE_UPLOADED_FILES "
+            + "DROP PARTITION `%s`";
 
     public static final String GET_UPLOADED_FILE_CONTENT_QUERY = "SELECT FILE_CONTENT "
             + "FROM AM_USAGE_UPLOADED_FILES WHERE FILE_NAME=?";
 
+    public static final String GET_FILE_STATISTICS_QUERY = "SELECT FILE_PROCESSED, COUNT(*) AS FILE_COUNT, "
+            + "MIN(FILE_TIMESTAMP) AS OLDEST_FILE_TIMESTAMP FROM AM_USAGE_UPLOADED_FILES GROUP BY FILE_PROCESSED";
+
     public static final String UPDATE_COMPETITION_QUERY = "UPDATE AM_USAGE_UPLOADED_FILES "
-            + "SET FILE_PROCESSED=2 WHERE FILE_NAME=?";
+            + "SET FILE_PROCESSED=2 WHERE FILE_NAME=? AND CLAIM_ID=?";
 
     public static final String DEFAULT_WORKER_THREAD_COUNT = "3";
 
@@ -78,7 +230,13 @@ public class MGWFileSourceConstants {
 
     public static final String DATASOURCE_PROPERTY = "usage.datasource.name";
 
-    public static final String TABLE_EXISTENCE_SQL = "SELECT 1 FROM AM_USAGE_UPLOADED_FILES";
+    public static final String TABLE_EXISTENCE_SQL = "SELECT 1 FROM AM_USAGE_UPLOADED_FILES WHERE 1=0";
+
+    // Columns added after the first version of the table, which are added by the upgrade scripts
+    public static final String TABLE_COLUMNS_EXISTENCE_SQL = "SELECT FILE_ENTRY,FILE_OFFSET,LEASE_EXPIRY,CLAIM_ID,"
+            + "ATTEMPT_COUNT,CONTENT_HASH FROM AM_USAGE_UPLOADED_FILES WHERE 1=0";
+
+    public static final String UPGRADE_SCRIPTS_DIRECTORY = "wso2/worker/dbscripts/apim-analytics/upgrade";
 
     // Separators used for persisting events
     public static final String EVENT_SEPARATOR = "-ES-";
@@ -33,6 +33,10 @@ import org.wso2.carbon.datasource.core.exception.DataSourceException;
 import org.wso2.extension.siddhi.io.mgwfile.task.MGWFileCleanUpTask;
 import org.wso2.extension.siddhi.io.mgwfile.util.MGWFileSourceDBUtil;
 
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.Timer;
 import java.util.TimerTask;
 
@@ -48,9 +52,27 @@ public class MGWFileSourceDS {
 
     private static final Log log = LogFactory.getLog(MGWFileSourceDS.class);
     private static String fileReaderFrequency;
+    private static String minFileReaderFrequency;
     private static String fileRetentionDays;
     private static String fileCleanupFrequency;
+    private static String cleanupBatchSize;
+    private static String cleanupBatchPause;
+    private static String cleanupPartitionDrop;
     private static String workerThreadCount;
+    private static String publishBatchSize;
+    private static String parserThreadCount;
+    private static String entryThreadCount;
+    private static String checkpointInterval;
+    private static String deduplicationWindow;
+    private static String deduplicationCapacity;
+    private static String leaseTimeout;
+    private static String maxAttempts;
+    private static String maxUsageDataSize;
+    private static String fileStorageDirectory;
+    private static String nodeId;
+    private static String directPublishingDirectory;
+    private static String directPublishingQueueSize;
+    private static String directPublishingRecoveryDelay;
     private HikariDataSource dsObject;
 
     /**
@@ -66,7 +88,10 @@ public class MGWFileSourceDS {
             log.debug("MGWFileSource Component is started");
         }
         initializeSystemProperties();
+        MGWFileSourceMetrics.register();
+        MGWFileDirectPublisher.init();
         if (dsObject != null) {
+            verifyUsageTable();
             TimerTask fileCleanupTask = new MGWFileCleanUpTask();
             Timer cleanupTimer = new Timer();
             cleanupTimer.schedule(fileCleanupTask, 1000, Long.parseLong(fileCleanupFrequency));
@@ -88,6 +113,19 @@ public class MGWFileSourceDS {
         if (log.isDebugEnabled()) {
             log.debug("MGWFileSource Component is stopped");
         }
+        MGWFileSourceMetrics.unregister();
+    }
+
+    /**
+     * Verifies that the usage table, if it exists, has the columns used by this version, so that an unupgraded table
+     * is reported at startup rather than on the first poll.
+     */
+    private void verifyUsageTable() {
+        try (Connection connection = MGWFileSourceDBUtil.getConnection()) {
+            MGWFileSourceDBUtil.isUsageTableExist(connection);
+        } catch (SQLException e) {
+            log.error("Uploaded usage files will not be processed. " + e.getMessage(), e);
+        }
     }
 
     private void initializeSystemProperties() {
@@ -98,6 +136,13 @@ public class MGWFileSourceDS {
             log.debug("Default usage publishing frequency will be used");
             fileReaderFrequency = MGWFileSourceConstants.DEFAULT_UPLOADED_USAGE_PUBLISH_FREQUENCY;
         }
+        //initialize minFileReaderFrequency
+        minFileReaderFrequency = System
+                .getProperty(MGWFileSourceConstants.UPLOADED_USAGE_PUBLISH_MIN_FREQUENCY_PROPERTY);
+        if (StringUtils.isEmpty(minFileReaderFrequency)) {
+            log.debug("Default minimum usage publishing frequency will be used");
+            minFileReaderFrequency = MGWFileSourceConstants.DEFAULT_UPLOADED_USAGE_PUBLISH_MIN_FREQUENCY;
+        }
         //initilize fileCleanupFrequency
         fileCleanupFrequency = System
                 .getProperty(MGWFileSourceConstants.UPLOADED_USAGE_CLEANUP_FREQUENCY_PROPERTY);
@@ -105,6 +150,23 @@ public class MGWFileSourceDS {
             log.debug("Default cleanup frequency will be used");
             fileCleanupFrequency = MGWFileSourceConstants.DEFAULT_UPLOADED_USAGE_CLEANUP_FREQUENCY;
         }
+        //initialize cleanupBatchSize
+        cleanupBatchSize = System.getProperty(MGWFileSourceConstants.CLEANUP_BATCH_SIZE_PROPERTY);
+        if (StringUtils.isEmpty(cleanupBatchSize)) {
+            log.debug("Default cleanup batch size will be used");
+            cleanupBatchSize = MGWFileSourceConstants.DEFAULT_CLEANUP_BATCH_SIZE;
+        }
+        //initialize cleanupBatchPause
+        cleanupBatchPause = System.getProperty(MGWFileSourceConstants.CLEANUP_BATCH_PAUSE_PROPERTY);
+        if (StringUtils.isEmpty(cleanupBatchPause)) {
+            log.debug("Default pause between cleanup batches will be used");
+            cleanupBatchPause = MGWFileSourceConstants.DEFAULT_CLEANUP_BATCH_PAUSE;
+        }
+        //initialize cleanupPartitionDrop
+        cleanupPartitionDrop = System.getProperty(MGWFileSourceConstants.CLEANUP_PARTITION_DROP_PROPERTY);
+        if (StringUtils.isEmpty(cleanupPartitionDrop)) {
+            cleanupPartitionDrop = MGWFileSourceConstants.DEFAULT_CLEANUP_PARTITION_DROP;
+        }
         //initialize fileRetentionDays
         fileRetentionDays = System.getProperty(MGWFileSourceConstants.FILE_RETENTION_DAYS_PROPERTY);
         if (StringUtils.isEmpty(fileRetentionDays)) {
@@ -119,20 +181,189 @@ public class MGWFileSourceDS {
             log.debug("Default worker thread count will be used");
             workerThreadCount = MGWFileSourceConstants.DEFAULT_WORKER_THREAD_COUNT;
         }
+
+        //initialize publishBatchSize
+        publishBatchSize = System.getProperty(MGWFileSourceConstants.PUBLISH_BATCH_SIZE_PROPERTY);
+        if (StringUtils.isEmpty(publishBatchSize)) {
+            log.debug("Default publishing batch size will be used");
+            publishBatchSize = MGWFileSourceConstants.DEFAULT_PUBLISH_BATCH_SIZE;
+        }
+
+        //initialize parserThreadCount
+        parserThreadCount = System.getProperty(MGWFileSourceConstants.PARSER_THREAD_COUNT_PROPERTY);
+        if (StringUtils.isEmpty(parserThreadCount)) {
+            log.debug("Default parser thread count will be used");
+            parserThreadCount = MGWFileSourceConstants.DEFAULT_PARSER_THREAD_COUNT;
+        }
+
+        //initialize entryThreadCount
+        entryThreadCount = System.getProperty(MGWFileSourceConstants.ENTRY_THREAD_COUNT_PROPERTY);
+        if (StringUtils.isEmpty(entryThreadCount)) {
+            log.debug("Default entry thread count will be used");
+            entryThreadCount = MGWFileSourceConstants.DEFAULT_ENTRY_THREAD_COUNT;
+        }
+
+        //initialize deduplicationWindow
+        deduplicationWindow = System.getProperty(MGWFileSourceConstants.DEDUPLICATION_WINDOW_PROPERTY);
+        if (StringUtils.isEmpty(deduplicationWindow)) {
+            log.debug("Events will not be deduplicated");
+            deduplicationWindow = MGWFileSourceConstants.DEFAULT_DEDUPLICATION_WINDOW;
+        }
+
+        //initialize deduplicationCapacity
+        deduplicationCapacity = System.getProperty(MGWFileSourceConstants.DEDUPLICATION_CAPACITY_PROPERTY);
+        if (StringUtils.isEmpty(deduplicationCapacity)) {
+            log.debug("Default deduplication capacity will be used");
+            deduplicationCapacity = MGWFileSourceConstants.DEFAULT_DEDUPLICATION_CAPACITY;
+        }
+
+        //initialize checkpointInterval
+        checkpointInterval = System.getProperty(MGWFileSourceConstants.CHECKPOINT_INTERVAL_PROPERTY);
+        if (StringUtils.isEmpty(checkpointInterval)) {
+            log.debug("Default checkpoint interval will be used");
+            checkpointInterval = MGWFileSourceConstants.DEFAULT_CHECKPOINT_INTERVAL;
+        }
+
+        //initialize leaseTimeout
+        leaseTimeout = System.getProperty(MGWFileSourceConstants.LEASE_TIMEOUT_PROPERTY);
+        if (StringUtils.isEmpty(leaseTimeout)) {
+            log.debug("Default lease timeout will be used");
+            leaseTimeout = MGWFileSourceConstants.DEFAULT_LEASE_TIMEOUT;
+        }
+
+        //initialize maxAttempts
+        maxAttempts = System.getProperty(MGWFileSourceConstants.MAX_ATTEMPTS_PROPERTY);
+        if (StringUtils.isEmpty(maxAttempts)) {
+            log.debug("Default max attempts will be used");
+            maxAttempts = MGWFileSourceConstants.DEFAULT_MAX_ATTEMPTS;
+        }
+
+        //initialize nodeId
+        nodeId = System.getProperty(MGWFileSourceConstants.NODE_ID_PROPERTY);
+        if (StringUtils.isEmpty(nodeId)) {
+            log.debug("Default node id will be used");
+            nodeId = ManagementFactory.getRuntimeMXBean().getName();
+        }
+
+        //initialize directPublishingDirectory
+        directPublishingDirectory = System.getProperty(MGWFileSourceConstants.DIRECT_PUBLISHING_DIRECTORY_PROPERTY);
+        if (StringUtils.isEmpty(directPublishingDirectory)) {
+            log.debug("Default direct publishing directory will be used");
+            directPublishingDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "api-usage-direct")
+                    .toString();
+        }
+        //initialize directPublishingQueueSize
+        directPublishingQueueSize = System.getProperty(MGWFileSourceConstants.DIRECT_PUBLISHING_QUEUE_SIZE_PROPERTY);
+        if (StringUtils.isEmpty(directPublishingQueueSize)) {
+            log.debug("Default direct publishing queue size will be used");
+            directPublishingQueueSize = MGWFileSourceConstants.DEFAULT_DIRECT_PUBLISHING_QUEUE_SIZE;
+        }
+        //initialize directPublishingRecoveryDelay
+        directPublishingRecoveryDelay = System
+                .getProperty(MGWFileSourceConstants.DIRECT_PUBLISHING_RECOVERY_DELAY_PROPERTY);
+        if (StringUtils.isEmpty(directPublishingRecoveryDelay)) {
+            log.debug("Default direct publishing recovery delay will be used");
+            directPublishingRecoveryDelay = MGWFileSourceConstants.DEFAULT_DIRECT_PUBLISHING_RECOVERY_DELAY;
+        }
+
+        //initialize maxUsageDataSize
+        maxUsageDataSize = System.getProperty(MGWFileSourceConstants.MAX_USAGE_DATA_SIZE_PROPERTY);
+        if (StringUtils.isEmpty(maxUsageDataSize)) {
+            log.debug("Default maximum usage data size will be used");
+            maxUsageDataSize = MGWFileSourceConstants.DEFAULT_MAX_USAGE_DATA_SIZE;
+        }
+
+        //initialize fileStorageDirectory, the content of the files is kept in the database if not set
+        fileStorageDirectory = System.getProperty(MGWFileSourceConstants.FILE_STORAGE_DIRECTORY_PROPERTY);
+        if (StringUtils.isNotEmpty(fileStorageDirectory)) {
+            log.info("Content of the uploaded usage files will be stored in : " + fileStorageDirectory);
+        }
     }
 
     public static String getFileReaderFrequency() {
         return fileReaderFrequency;
     }
 
+    public static String getMinFileReaderFrequency() {
+        return minFileReaderFrequency;
+    }
+
     public static String getFileRetentionDays() {
         return fileRetentionDays;
     }
 
+    public static String getCleanupBatchSize() {
+        return cleanupBatchSize;
+    }
+
+    public static String getCleanupBatchPause() {
+        return cleanupBatchPause;
+    }
+
+    public static String getCleanupPartitionDrop() {
+        return cleanupPartitionDrop;
+    }
+
     public static String getWorkerThreadCount() {
         return workerThreadCount;
     }
 
+    public static String getPublishBatchSize() {
+        return publishBatchSize;
+    }
+
+    public static String getParserThreadCount() {
+        return parserThreadCount;
+    }
+
+    public static String getEntryThreadCount() {
+        return entryThreadCount;
+    }
+
+    public static String getDeduplicationWindow() {
+        return deduplicationWindow;
+    }
+
+    public static String getDeduplicationCapacity() {
+        return deduplicationCapacity;
+    }
+
+    public static String getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public static String getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    public static String getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public static String getMaxUsageDataSize() {
+        return maxUsageDataSize;
+    }
+
+    public static String getFileStorageDirectory() {
+        return fileStorageDirectory;
+    }
+
+    public static String getNodeId() {
+        return nodeId;
+    }
+
+    public static String getDirectPublishingDirectory() {
+        return directPublishingDirectory;
+    }
+
+    public static String getDirectPublishingQueueSize() {
+        return directPublishingQueueSize;
+    }
+
+    public static String getDirectPublishingRecoveryDelay() {
+        return directPublishingRecoveryDelay;
+    }
+
     @Reference(
             name = "org.wso2.carbon.datasource.DataSourceService",
             service = DataSourceService.class,
@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.extension.siddhi.io.mgwfile.dao.MGWFileSourceDAO;
+import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileStatisticsDTO;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Ingestion metrics of the mgwfile sources in this JVM. Counters are updated without locking by the threads
+ * processing files. The file counts are read from the database on demand and cached for a few seconds, so that
+ * frequent scraping does not load the database. The metrics are registered as an MXBean and can also be read
+ * through {@link #getInstance()}. Rates are computed by {@link #updateRates()} on a fixed tick, so that they do not
+ * depend on how often they are read.
+ */
+public class MGWFileSourceMetrics implements MGWFileSourceMetricsMXBean {
+
+    /**
+     * Interval in milliseconds at which {@link #updateRates()} is expected to be called.
+     */
+    public static final long RATE_UPDATE_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+    private static final Log log = LogFactory.getLog(MGWFileSourceMetrics.class);
+    private static final MGWFileSourceMetrics instance = new MGWFileSourceMetrics();
+    private static final String OBJECT_NAME = "org.wso2.analytics.apim:type=MGWFileSource,name=Metrics";
+    private static final String UNKNOWN_STREAM_ID = "<unknown>";
+    private static final long STATISTICS_CACHE_TIME = TimeUnit.SECONDS.toMillis(5);
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final RateMeter processedBytes = new RateMeter();
+    private final RateMeter processedLines = new RateMeter();
+    private final Map<String, LongAdder> parseErrors = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> duplicateEvents = new ConcurrentHashMap<>();
+    private final Map<Stage, StageTimer> stageTimers = new EnumMap<>(Stage.class);
+    private MGWFileStatisticsDTO fileStatistics = new MGWFileStatisticsDTO(0, 0, 0, 0, -1);
+    private long fileStatisticsTime = 0;
+
+    /**
+     * Processing stages of an uploaded file, whose latencies are recorded.
+     */
+    public enum Stage {
+        /**
+         * Opening the content of a file from the database or the file storage, per file.
+         */
+        FETCH("fetch"),
+        /**
+         * Reading and decompressing a chunk of content, per chunk.
+         */
+        INFLATE("inflate"),
+        /**
+         * Parsing a chunk of content into events, per chunk.
+         */
+        PARSE("parse"),
+        /**
+         * Delivering a batch of events to a stream, per batch.
+         */
+        DELIVER("onEvent");
+
+        private final String displayName;
+
+        Stage(String displayName) {
+            this.displayName = displayName;
+        }
+    }
+
+    private MGWFileSourceMetrics() {
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, new StageTimer());
+        }
+    }
+
+    public static MGWFileSourceMetrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server.
+     */
+    static void register() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(instance, objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Error occurred while registering the mgwfile source metrics MBean.", e);
+        }
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server.
+     */
+    static void unregister() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Error occurred while unregistering the mgwfile source metrics MBean.", e);
+        }
+    }
+
+    /**
+     * Computes the rates since the previous update. Called every {@link #RATE_UPDATE_INTERVAL} by the reader task.
+     */
+    public void updateRates() {
+        processedBytes.update();
+        processedLines.update();
+    }
+
+    void addProcessedBytes(long bytes) {
+        processedBytes.add(bytes);
+    }
+
+    void addProcessedLines(long lines) {
+        processedLines.add(lines);
+    }
+
+    /**
+     * Counts a line which could not be published.
+     *
+     * @param streamId stream id of the line, or null if the line could not be tokenized
+     */
+    void incrementParseErrors(String streamId) {
+        parseErrors.computeIfAbsent(streamId == null ? UNKNOWN_STREAM_ID : streamId, key -> new LongAdder())
+                .increment();
+    }
+
+    /**
+     * Counts an event which was dropped, since an identical event was published within the deduplication window.
+     *
+     * @param streamId stream id of the event
+     */
+    void incrementDuplicateEvents(String streamId) {
+        duplicateEvents.computeIfAbsent(streamId, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Records the latency of a stage.
+     *
+     * @param stage     processing stage
+     * @param startTime value of {@link System#nanoTime()} when the stage started
+     */
+    void recordLatency(Stage stage, long startTime) {
+        stageTimers.get(stage).record(System.nanoTime() - startTime);
+    }
+
+    @Override
+    public long getPendingFileCount() {
+        return getFileStatistics().getPendingFileCount();
+    }
+
+    @Override
+    public long getInProgressFileCount() {
+        return getFileStatistics().getInProgressFileCount();
+    }
+
+    @Override
+    public long getCompletedFileCount() {
+        return getFileStatistics().getCompletedFileCount();
+    }
+
+    @Override
+    public long getFailedFileCount() {
+        return getFileStatistics().getFailedFileCount();
+    }
+
+    @Override
+    public long getDirectPendingFileCount() {
+        return MGWFileDirectPublisher.getPendingFileCount();
+    }
+
+    @Override
+    public long getOldestUnprocessedFileAge() {
+        long oldestTimeStamp = getFileStatistics().getOldestUnprocessedFileTimeStamp();
+        return oldestTimeStamp < 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldestTimeStamp);
+    }
+
+    @Override
+    public long getProcessedBytes() {
+        return processedBytes.getTotal();
+    }
+
+    @Override
+    public long getProcessedLines() {
+        return processedLines.getTotal();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return processedBytes.getRate();
+    }
+
+    @Override
+    public double getLinesPerSecond() {
+        return processedLines.getRate();
+    }
+
+    @Override
+    public Map<String, Long> getParseErrors() {
+        Map<String, Long> errors = new TreeMap<>();
+        parseErrors.forEach((streamId, count) -> errors.put(streamId, count.sum()));
+        return errors;
+    }
+
+    @Override
+    public Map<String, Double> getAverageStageLatencies() {
+        Map<String, Double> latencies = new LinkedHashMap<>();
+        stageTimers.forEach((stage, timer) -> latencies.put(stage.displayName, timer.getAverage()));
+        return latencies;
+    }
+
+    @Override
+    public Map<String, Double> getMaxStageLatencies() {
+        Map<String, Double> latencies = new LinkedHashMap<>();
+        stageTimers.forEach((stage, timer) -> latencies.put(stage.displayName, timer.getMax()));
+        return latencies;
+    }
+
+    @Override
+    public Map<String, Integer> getStreamQueueDepths() {
+        Map<String, Integer> queueDepths = new TreeMap<>();
+        for (MGWFileStreamConsumer eventConsumer : MGWFileSourceRegistrationManager.getEventConsumers()) {
+            queueDepths.put(eventConsumer.getStreamId(), eventConsumer.getQueueDepth());
+        }
+        return queueDepths;
+    }
+
+    @Override
+    public Map<String, Long> getDroppedEvents() {
+        Map<String, Long> droppedEvents = new TreeMap<>();
+        for (MGWFileStreamConsumer eventConsumer : MGWFileSourceRegistrationManager.getEventConsumers()) {
+            droppedEvents.put(eventConsumer.getStreamId(), eventConsumer.getDroppedEventCount());
+        }
+        return droppedEvents;
+    }
+
+    @Override
+    public Map<String, Long> getDuplicateEvents() {
+        Map<String, Long> duplicates = new TreeMap<>();
+        duplicateEvents.forEach((streamId, count) -> duplicates.put(streamId, count.sum()));
+        return duplicates;
+    }
+
+    private synchronized MGWFileStatisticsDTO getFileStatistics() {
+        long currentTime = System.currentTimeMillis();
+        if (currentTime - fileStatisticsTime >= STATISTICS_CACHE_TIME) {
+            // the previous statistics are kept if they cannot be refreshed
+            fileStatisticsTime = currentTime;
+            try {
+                fileStatistics = MGWFileSourceDAO.getFileStatistics();
+            } catch (MGWFileSourceException | RuntimeException e) {
+                log.warn("Error occurred while refreshing the statistics of the uploaded usage files.", e);
+            }
+        }
+        return fileStatistics;
+    }
+
+    /**
+     * Counter which also tracks its rate between two updates.
+     */
+    private static class RateMeter {
+
+        private final LongAdder total = new LongAdder();
+        // updated only by the thread calling update
+        private long lastUpdateTime = System.nanoTime();
+        private long lastUpdateTotal = 0;
+        private volatile double rate = 0;
+
+        void add(long value) {
+            total.add(value);
+        }
+
+        long getTotal() {
+            return total.sum();
+        }
+
+        /**
+         * Computes the rate per second since the previous update.
+         */
+        void update() {
+            long currentTime = System.nanoTime();
+            long elapsedTime = currentTime - lastUpdateTime;
+            if (elapsedTime > 0) {
+                long currentTotal = total.sum();
+                rate = (currentTotal - lastUpdateTotal) * (double) TimeUnit.SECONDS.toNanos(1) / elapsedTime;
+                lastUpdateTime = currentTime;
+                lastUpdateTotal = currentTotal;
+            }
+        }
+
+        /**
+         * Returns the rate per second computed by the last update.
+         */
+        double getRate() {
+            return rate;
+        }
+    }
+
+    /**
+     * Latency statistics of a single stage.
+     */
+    private static class StageTimer {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalTime = new LongAdder();
+        private final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
+
+        void record(long time) {
+            count.increment();
+            totalTime.add(time);
+            maxTime.accumulate(time);
+        }
+
+        double getAverage() {
+            long currentCount = count.sum();
+            return currentCount == 0 ? 0 : totalTime.sum() / NANOS_PER_MILLI / currentCount;
+        }
+
+        double getMax() {
+            return maxTime.get() / NANOS_PER_MILLI;
+        }
+    }
+}
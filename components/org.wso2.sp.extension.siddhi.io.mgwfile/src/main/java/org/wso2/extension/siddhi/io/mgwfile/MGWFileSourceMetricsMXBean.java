@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import java.util.Map;
+
+/**
+ * Management interface exposing the ingestion metrics of the mgwfile sources.
+ */
+public interface MGWFileSourceMetricsMXBean {
+
+    /**
+     * Returns the number of uploaded files waiting to be processed.
+     */
+    long getPendingFileCount();
+
+    /**
+     * Returns the number of uploaded files being processed by any node.
+     */
+    long getInProgressFileCount();
+
+    /**
+     * Returns the number of processed files which are not cleaned up yet.
+     */
+    long getCompletedFileCount();
+
+    /**
+     * Returns the number of files which are marked as failed, since they could not be processed in the maximum number
+     * of attempts.
+     */
+    long getFailedFileCount();
+
+    /**
+     * Returns the number of files uploaded in direct mode, which are waiting to be published by this node.
+     */
+    long getDirectPendingFileCount();
+
+    /**
+     * Returns the age of the oldest unprocessed file in milliseconds, or 0 if all the files are processed.
+     */
+    long getOldestUnprocessedFileAge();
+
+    /**
+     * Returns the number of decompressed bytes read by this node.
+     */
+    long getProcessedBytes();
+
+    /**
+     * Returns the number of lines read by this node.
+     */
+    long getProcessedLines();
+
+    /**
+     * Returns the rate of decompressed bytes read per second, computed over the last second.
+     */
+    double getBytesPerSecond();
+
+    /**
+     * Returns the rate of lines read per second, computed over the last second.
+     */
+    double getLinesPerSecond();
+
+    /**
+     * Returns the number of lines which could not be published, per stream id.
+     */
+    Map<String, Long> getParseErrors();
+
+    /**
+     * Returns the average latency of each processing stage in milliseconds.
+     */
+    Map<String, Double> getAverageStageLatencies();
+
+    /**
+     * Returns the maximum latency of each processing stage in milliseconds.
+     */
+    Map<String, Double> getMaxStageLatencies();
+
+    /**
+     * Returns the number of event batches waiting to be delivered, per stream id.
+     */
+    Map<String, Integer> getStreamQueueDepths();
+
+    /**
+     * Returns the number of dropped events, per stream id.
+     */
+    Map<String, Long> getDroppedEvents();
+
+    /**
+     * Returns the number of events dropped as duplicates of events published within the deduplication window, per
+     * stream id.
+     */
+    Map<String, Long> getDuplicateEvents();
+}
@@ -20,26 +20,107 @@ package org.wso2.extension.siddhi.io.mgwfile;
 
 import io.siddhi.core.stream.input.source.SourceEventListener;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Class which manages the Databridge receiver connections.
+ * Class which manages the Databridge receiver connections. Every registered stream gets its own
+ * {@link MGWFileStreamConsumer}, which delivers the events of the stream in a dedicated thread.
  */
 public class MGWFileSourceRegistrationManager {
 
-    private static Map<String, SourceEventListener> streamSpecificEventListenerMap = new ConcurrentHashMap<>();
+    private static Map<String, MGWFileStreamConsumer> streamSpecificEventConsumerMap = new ConcurrentHashMap<>();
+    private static final Set<String> pausedStreams = ConcurrentHashMap.newKeySet();
+    private static final Object pauseLock = new Object();
+    private static final MGWFileDataRetrieverThreadFactory consumerThreadFactory =
+            new MGWFileDataRetrieverThreadFactory("mgwfile-stream-consumer");
 
-    static Map<String, SourceEventListener> getStreamSpecificEventListenerMap() {
-        return streamSpecificEventListenerMap;
+    static MGWFileStreamConsumer getEventConsumer(String streamId) {
+        return streamSpecificEventConsumerMap.get(streamId);
     }
 
-    public static void registerEventConsumer(String streamId, SourceEventListener sourceEventListener) {
-        streamSpecificEventListenerMap.put(streamId, sourceEventListener);
+    /**
+     * Returns the consumers of all the registered streams, e.g. to inspect their queue depths.
+     */
+    public static Collection<MGWFileStreamConsumer> getEventConsumers() {
+        return Collections.unmodifiableCollection(streamSpecificEventConsumerMap.values());
+    }
+
+    /**
+     * Registers a stream and starts the thread which delivers its events.
+     *
+     * @param streamId            id of the stream
+     * @param sourceEventListener listener of the stream
+     * @param queueSize           maximum number of event batches waiting to be delivered to the stream
+     * @param overflowPolicy      action taken when the queue of the stream is full
+     */
+    public static void registerEventConsumer(String streamId, SourceEventListener sourceEventListener,
+            int queueSize, MGWFileStreamConsumer.OverflowPolicy overflowPolicy) {
+        MGWFileStreamConsumer eventConsumer = new MGWFileStreamConsumer(streamId, sourceEventListener, queueSize,
+                overflowPolicy);
+        MGWFileStreamConsumer previous = streamSpecificEventConsumerMap.put(streamId, eventConsumer);
+        if (previous != null) {
+            previous.stop();
+        }
+        consumerThreadFactory.newThread(eventConsumer).start();
     }
 
     public static void unregisterEventConsumer(String streamId) {
-            streamSpecificEventListenerMap.remove(streamId);
+        MGWFileStreamConsumer eventConsumer = streamSpecificEventConsumerMap.remove(streamId);
+        if (eventConsumer != null) {
+            eventConsumer.stop();
+        }
+        resumeEventConsumer(streamId);
+    }
+
+    /**
+     * Holds the delivery of events to the given stream until it is resumed.
+     *
+     * @param streamId id of the stream
+     */
+    public static void pauseEventConsumer(String streamId) {
+        pausedStreams.add(streamId);
+    }
+
+    /**
+     * Resumes the delivery of events to the given stream.
+     *
+     * @param streamId id of the stream
+     */
+    public static void resumeEventConsumer(String streamId) {
+        synchronized (pauseLock) {
+            if (pausedStreams.remove(streamId)) {
+                pauseLock.notifyAll();
+            }
+        }
+    }
+
+    public static boolean hasEventConsumers() {
+        return !streamSpecificEventConsumerMap.isEmpty();
+    }
+
+    public static boolean isAnyEventConsumerPaused() {
+        return !pausedStreams.isEmpty();
+    }
+
+    /**
+     * Blocks the consumer of the given stream while the stream is paused.
+     *
+     * @param streamId id of the stream
+     * @throws InterruptedException if interrupted while waiting
+     */
+    static void waitIfPaused(String streamId) throws InterruptedException {
+        if (pausedStreams.isEmpty()) {
+            return;
+        }
+        synchronized (pauseLock) {
+            while (pausedStreams.contains(streamId)) {
+                pauseLock.wait();
+            }
+        }
     }
 
 }
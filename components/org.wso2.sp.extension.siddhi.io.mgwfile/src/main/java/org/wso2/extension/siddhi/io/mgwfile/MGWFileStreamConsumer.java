@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import io.siddhi.core.stream.input.source.SourceEventListener;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers the events of a single stream from a bounded ring buffer in a dedicated thread, so that a slow stream does
+ * not hold back the other streams read from the same file. The threads processing files only enqueue events and do
+ * not take a lock while doing so. Events are delivered in the order they were enqueued. When the buffer is full, the
+ * overflow policy decides whether the producer waits for free space or the events are dropped.
+ */
+public class MGWFileStreamConsumer implements Runnable {
+
+    private static final Log log = LogFactory.getLog(MGWFileStreamConsumer.class);
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int SPIN_COUNT = 64;
+    private static final MGWFileSourceMetrics metrics = MGWFileSourceMetrics.getInstance();
+
+    private final String streamId;
+    private final SourceEventListener eventSource;
+    private final OverflowPolicy overflowPolicy;
+    private final MGWFileEventRingBuffer<Object> ringBuffer;
+    private final AtomicLong droppedEventCount = new AtomicLong();
+    private volatile Thread consumerThread;
+    private volatile boolean consumerWaiting = false;
+    private volatile boolean running = true;
+    private volatile long deliveredPosition = 0;
+
+    /**
+     * Action taken when an event is published to a stream whose buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The producer waits until the stream consumes enough events.
+         */
+        BLOCK,
+        /**
+         * The events are dropped.
+         */
+        DROP
+    }
+
+    MGWFileStreamConsumer(String streamId, SourceEventListener eventSource, int queueSize,
+            OverflowPolicy overflowPolicy) {
+        this.streamId = streamId;
+        this.eventSource = eventSource;
+        this.overflowPolicy = overflowPolicy;
+        this.ringBuffer = new MGWFileEventRingBuffer<>(queueSize);
+    }
+
+    /**
+     * Enqueues events to be delivered to the stream.
+     *
+     * @param events     an {@link org.wso2.carbon.databridge.commons.Event} or an array of them
+     * @param eventCount number of events
+     * @return position of the events, to be used with {@link #awaitDelivery(long)}, or -1 if the events were dropped
+     * @throws InterruptedException if interrupted while waiting for free space
+     */
+    long publish(Object events, int eventCount) throws InterruptedException {
+        long position = ringBuffer.offer(events);
+        int attempts = 0;
+        while (position < 0 && overflowPolicy == OverflowPolicy.BLOCK && running) {
+            backOff(attempts++);
+            position = ringBuffer.offer(events);
+        }
+        if (position < 0) {
+            if (droppedEventCount.getAndAdd(eventCount) == 0) {
+                log.warn("Dropping events of stream id: " + streamId + " since the stream "
+                        + (running ? "queue is full." : "is unregistered."));
+            } else if (log.isDebugEnabled()) {
+                log.debug("Dropped " + eventCount + " events of stream id: " + streamId);
+            }
+            return -1;
+        }
+        if (consumerWaiting) {
+            LockSupport.unpark(consumerThread);
+        }
+        return position;
+    }
+
+    /**
+     * Waits until the events at the given position and the events before them are delivered to the stream, or the
+     * stream is unregistered.
+     *
+     * @param position position returned by {@link #publish(Object, int)}
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void awaitDelivery(long position) throws InterruptedException {
+        int attempts = 0;
+        while (deliveredPosition <= position && running) {
+            backOff(attempts++);
+        }
+    }
+
+    private static void backOff(int attempts) throws InterruptedException {
+        if (attempts < SPIN_COUNT) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(Math.min(MAX_BACKOFF_NANOS, 1000L << Math.min(10, attempts - SPIN_COUNT)));
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    @Override
+    public void run() {
+        consumerThread = Thread.currentThread();
+        try {
+            while (running) {
+                Object events = ringBuffer.poll();
+                if (events == null) {
+                    waitForEvents();
+                    continue;
+                }
+                MGWFileSourceRegistrationManager.waitIfPaused(streamId);
+                if (!running) {
+                    break;
+                }
+                long deliveryStartTime = System.nanoTime();
+                try {
+                    eventSource.onEvent(events, null);
+                } catch (RuntimeException e) {
+                    log.error("Error occurred while delivering events to the stream id: " + streamId, e);
+                }
+                metrics.recordLatency(MGWFileSourceMetrics.Stage.DELIVER, deliveryStartTime);
+                deliveredPosition = ringBuffer.getHead();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int pending = ringBuffer.size();
+        if (pending > 0) {
+            log.warn("Discarded " + pending + " pending event batches of stream id: " + streamId
+                    + " since the stream is unregistered.");
+        }
+    }
+
+    private void waitForEvents() {
+        consumerWaiting = true;
+        // a producer which enqueues after this check sees the flag and unparks this thread
+        if (ringBuffer.isEmpty() && running) {
+            LockSupport.parkNanos(this, MAX_WAIT_NANOS);
+        }
+        consumerWaiting = false;
+    }
+
+    /**
+     * Stops the consumer thread. The events which are not delivered yet are discarded.
+     */
+    void stop() {
+        running = false;
+        Thread thread = consumerThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public String getStreamId() {
+        return streamId;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Returns the number of event batches waiting to be delivered.
+     */
+    public int getQueueDepth() {
+        return ringBuffer.size();
+    }
+
+    /**
+     * Returns the maximum number of event batches which can wait to be delivered.
+     */
+    public int getQueueCapacity() {
+        return ringBuffer.capacity();
+    }
+
+    /**
+     * Returns the number of events dropped since the stream was registered.
+     */
+    public long getDroppedEventCount() {
+        return droppedEventCount.get();
+    }
+}
@@ -18,25 +18,34 @@
 
 package org.wso2.extension.siddhi.io.mgwfile.dao;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceDS;
 import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileInfoDTO;
+import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileStatisticsDTO;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileClaimLostException;
 import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
 import org.wso2.extension.siddhi.io.mgwfile.util.MGWFileSourceDBUtil;
+import org.wso2.extension.siddhi.io.mgwfile.util.MGWFileStorageUtil;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Blob;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * This class contains methods DB access for FileEventAdapter.
@@ -50,10 +59,26 @@ public class MGWFileSourceDAO {
      *
      * @param dto                 Uploaded File Information represented by {@link MGWFileInfoDTO}
      * @param uploadedInputStream Input stream with the uploaded file content
+     * @return true if the file is added, false if a file with the same content hash was already uploaded
      * @throws MGWFileSourceException if there is an error while getting a connection or executing the query
      */
-    public static void persistUploadedFile(MGWFileInfoDTO dto, InputStream uploadedInputStream)
+    public static boolean persistUploadedFile(MGWFileInfoDTO dto, InputStream uploadedInputStream)
             throws MGWFileSourceException {
+        return persistUploadedFile(dto, uploadedInputStream, -1);
+    }
+
+    /**
+     * Adds a record into the database with uploaded file's information. When the length of the content is known, the
+     * driver can stream the content to the database instead of buffering it to find the length.
+     *
+     * @param dto                 Uploaded File Information represented by {@link MGWFileInfoDTO}
+     * @param uploadedInputStream Input stream with the uploaded file content
+     * @param contentLength       length of the content in bytes, or -1 if unknown
+     * @return true if the file is added, false if a file with the same content hash was already uploaded
+     * @throws MGWFileSourceException if there is an error while getting a connection or executing the query
+     */
+    public static boolean persistUploadedFile(MGWFileInfoDTO dto, InputStream uploadedInputStream,
+            long contentLength) throws MGWFileSourceException {
         Connection connection = null;
         boolean autoCommitStatus = false;
         PreparedStatement statement = null;
@@ -61,15 +86,32 @@ public class MGWFileSourceDAO {
             connection = MGWFileSourceDBUtil.getConnection();
             autoCommitStatus = connection.getAutoCommit();
             connection.setAutoCommit(false);
+            if (isDuplicateContent(connection, dto)) {
+                connection.rollback();
+                return false;
+            }
             statement = connection.prepareStatement(MGWFileSourceConstants.INSERT_UPLOADED_FILE_INFO_QUERY);
             statement.setString(1, dto.getFileName());
             statement.setTimestamp(2, new Timestamp(dto.getTimeStamp()));
-            statement.setBinaryStream(3, uploadedInputStream);
-            statement.executeUpdate();
+            statement.setString(3, dto.getContentHash());
+            if (contentLength >= 0) {
+                statement.setBinaryStream(4, uploadedInputStream, contentLength);
+            } else {
+                statement.setBinaryStream(4, uploadedInputStream);
+            }
+            try {
+                statement.executeUpdate();
+            } catch (SQLException e) {
+                if (isDuplicateContentViolation(connection, dto, e)) {
+                    return false;
+                }
+                throw e;
+            }
             connection.commit();
             if (log.isDebugEnabled()) {
                 log.debug("Persisted Uploaded File info : " + dto.toString());
             }
+            return true;
         } catch (SQLException e) {
             try {
                 if (connection != null) {
@@ -92,66 +134,333 @@ public class MGWFileSourceDAO {
     }
 
     /**
-     * Returns the next set of files to bre processed by the worker threads.
+     * Adds a record into the database with the information of an uploaded file whose content is in the given local
+     * file. If the storage directory is configured, the file is moved into the storage directory and only the
+     * metadata is kept in the database. Otherwise the content is inserted into the database.
+     *
+     * @param dto         Uploaded File Information represented by {@link MGWFileInfoDTO}
+     * @param contentFile local file with the uploaded file content
+     * @return true if the file is added, false if a file with the same content hash was already uploaded
+     * @throws MGWFileSourceException if there is an error while storing the content or executing the query
+     */
+    public static boolean persistUploadedFile(MGWFileInfoDTO dto, Path contentFile) throws MGWFileSourceException {
+        if (!MGWFileStorageUtil.isFileStorageEnabled()) {
+            try (InputStream contentInputStream = Files.newInputStream(contentFile)) {
+                return persistUploadedFile(dto, contentInputStream, Files.size(contentFile));
+            } catch (IOException e) {
+                throw new MGWFileSourceException("Error occurred while reading the uploaded file: " + contentFile, e);
+            }
+        }
+        Connection connection = null;
+        boolean autoCommitStatus = false;
+        boolean stored = false;
+        PreparedStatement statement = null;
+        try {
+            connection = MGWFileSourceDBUtil.getConnection();
+            autoCommitStatus = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            if (isDuplicateContent(connection, dto)) {
+                connection.rollback();
+                return false;
+            }
+            statement = connection.prepareStatement(MGWFileSourceConstants.INSERT_UPLOADED_FILE_METADATA_QUERY);
+            statement.setString(1, dto.getFileName());
+            statement.setTimestamp(2, new Timestamp(dto.getTimeStamp()));
+            statement.setString(3, dto.getContentHash());
+            try {
+                statement.executeUpdate();
+            } catch (SQLException e) {
+                if (isDuplicateContentViolation(connection, dto, e)) {
+                    return false;
+                }
+                throw e;
+            }
+            // the row is not visible until the commit, hence the file is never picked before it is stored
+            MGWFileStorageUtil.store(dto.getFileName(), contentFile);
+            stored = true;
+            connection.commit();
+            if (log.isDebugEnabled()) {
+                log.debug("Persisted Uploaded File info : " + dto.toString());
+            }
+            return true;
+        } catch (SQLException | IOException e) {
+            try {
+                if (connection != null) {
+                    connection.rollback();
+                }
+            } catch (SQLException e1) {
+                log.error("Error occurred while rolling back inserting uploaded information into db transaction,", e1);
+            }
+            if (stored) {
+                MGWFileStorageUtil.delete(dto.getFileName());
+            }
+            throw new MGWFileSourceException("Error occurred while persisting the uploaded file", e);
+        } finally {
+            try {
+                if (connection != null) {
+                    connection.setAutoCommit(autoCommitStatus);
+                }
+            } catch (SQLException e) {
+                log.warn("Failed to reset auto commit state of database connection to the previous state.", e);
+            }
+            MGWFileSourceDBUtil.closeAllConnections(statement, connection, null);
+        }
+    }
+
+    /**
+     * Records a file which is published directly instead of being queued, so that its content is detected when it is
+     * uploaded again. The file is recorded as processed and without content.
+     *
+     * @param dto Uploaded File Information represented by {@link MGWFileInfoDTO}
+     * @return true if the file is recorded, false if a file with the same content hash was already uploaded
+     * @throws MGWFileSourceException if there is an error while getting a connection or executing the query
+     */
+    public static boolean persistPublishedFile(MGWFileInfoDTO dto) throws MGWFileSourceException {
+        Connection connection = null;
+        boolean autoCommitStatus = false;
+        PreparedStatement statement = null;
+        try {
+            connection = MGWFileSourceDBUtil.getConnection();
+            autoCommitStatus = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            if (isDuplicateContent(connection, dto)) {
+                connection.rollback();
+                return false;
+            }
+            statement = connection.prepareStatement(MGWFileSourceConstants.INSERT_PUBLISHED_FILE_METADATA_QUERY);
+            statement.setString(1, dto.getFileName());
+            statement.setTimestamp(2, new Timestamp(dto.getTimeStamp()));
+            statement.setString(3, dto.getContentHash());
+            try {
+                statement.executeUpdate();
+            } catch (SQLException e) {
+                if (isDuplicateContentViolation(connection, dto, e)) {
+                    return false;
+                }
+                throw e;
+            }
+            connection.commit();
+            if (log.isDebugEnabled()) {
+                log.debug("Persisted directly published File info : " + dto.toString());
+            }
+            return true;
+        } catch (SQLException e) {
+            try {
+                if (connection != null) {
+                    connection.rollback();
+                }
+            } catch (SQLException e1) {
+                log.error("Error occurred while rolling back inserting published file information into db "
+                        + "transaction,", e1);
+            }
+            throw new MGWFileSourceException("Error occurred while inserting published file information into "
+                    + "database", e);
+        } finally {
+            try {
+                if (connection != null) {
+                    connection.setAutoCommit(autoCommitStatus);
+                }
+            } catch (SQLException e) {
+                log.warn("Failed to reset auto commit state of database connection to the previous state.", e);
+            }
+            MGWFileSourceDBUtil.closeAllConnections(statement, connection, null);
+        }
+    }
+
+    /**
+     * Queues a file which was accepted for direct publishing, but could not be published, so that it is processed
+     * from the database like any other uploaded file. The content is added to the record of the file, or moved into
+     * the storage directory if configured. If the file is not recorded, e.g. as it was accepted before the node was
+     * restarted, it is added as a new file.
+     *
+     * @param dto         Uploaded File Information represented by {@link MGWFileInfoDTO}
+     * @param contentFile local file with the uploaded file content
+     * @throws MGWFileSourceException if there is an error while storing the content or executing the query
+     */
+    public static void requeuePublishedFile(MGWFileInfoDTO dto, Path contentFile) throws MGWFileSourceException {
+        boolean fileStorageEnabled = MGWFileStorageUtil.isFileStorageEnabled();
+        Connection connection = null;
+        boolean autoCommitStatus = false;
+        boolean stored = false;
+        int updatedRows;
+        PreparedStatement statement = null;
+        InputStream contentInputStream = null;
+        try {
+            connection = MGWFileSourceDBUtil.getConnection();
+            autoCommitStatus = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            if (fileStorageEnabled) {
+                statement = connection.prepareStatement(
+                        MGWFileSourceConstants.REQUEUE_PUBLISHED_FILE_METADATA_QUERY);
+                statement.setString(1, dto.getFileName());
+            } else {
+                statement = connection.prepareStatement(MGWFileSourceConstants.REQUEUE_PUBLISHED_FILE_QUERY);
+                contentInputStream = Files.newInputStream(contentFile);
+                statement.setBinaryStream(1, contentInputStream, Files.size(contentFile));
+                statement.setString(2, dto.getFileName());
+            }
+            updatedRows = statement.executeUpdate();
+            if (updatedRows > 0 && fileStorageEnabled) {
+                // the row is not pending until the commit, hence the file is never picked before it is stored
+                MGWFileStorageUtil.store(dto.getFileName(), contentFile);
+                stored = true;
+            }
+            connection.commit();
+        } catch (SQLException | IOException e) {
+            try {
+                if (connection != null) {
+                    connection.rollback();
+                }
+            } catch (SQLException e1) {
+                log.error("Error occurred while rolling back queueing published file into db transaction,", e1);
+            }
+            if (stored) {
+                MGWFileStorageUtil.delete(dto.getFileName());
+            }
+            throw new MGWFileSourceException("Error occurred while queueing the published file : " + dto, e);
+        } finally {
+            IOUtils.closeQuietly(contentInputStream);
+            try {
+                if (connection != null) {
+                    connection.setAutoCommit(autoCommitStatus);
+                }
+            } catch (SQLException e) {
+                log.warn("Failed to reset auto commit state of database connection to the previous state.", e);
+            }
+            MGWFileSourceDBUtil.closeAllConnections(statement, connection, null);
+        }
+        if (updatedRows == 0 && !persistUploadedFile(dto, contentFile)) {
+            log.warn("Published file : " + dto + " is not queued as its content is already uploaded.");
+        }
+    }
+
+    /**
+     * Checks whether a file with the same content as the given file was uploaded before, e.g. when an upload is
+     * retried after the response was lost or the same file is uploaded again under a different name.
+     *
+     * @param connection connection of the transaction adding the file
+     * @param dto        file being uploaded
+     * @return true if a file with the same content hash exists
+     * @throws SQLException if there is an error while executing the query
+     */
+    private static boolean isDuplicateContent(Connection connection, MGWFileInfoDTO dto) throws SQLException {
+        if (dto.getContentHash() == null) {
+            return false;
+        }
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            statement = connection.prepareStatement(MGWFileSourceConstants.GET_FILE_BY_CONTENT_HASH_QUERY);
+            statement.setString(1, dto.getContentHash());
+            resultSet = statement.executeQuery();
+            if (resultSet.next()) {
+                log.warn("Skipped the uploaded file : " + dto.getFileName() + ", since its content was already "
+                        + "uploaded as the file : " + resultSet.getString("FILE_NAME"));
+                return true;
+            }
+            return false;
+        } finally {
+            MGWFileSourceDBUtil.closeAllConnections(statement, null, resultSet);
+        }
+    }
+
+    /**
+     * Checks whether the insert of the given file failed as a file with the same content was uploaded concurrently and
+     * committed after {@link #isDuplicateContent} was checked, in which case the unique index on the content hash is
+     * violated. The transaction is rolled back before checking, as it cannot be used further on some databases.
      *
-     * @param limit number of records to be retrieved
+     * @param connection connection of the transaction adding the file
+     * @param dto        file being uploaded
+     * @param e          error thrown by the insert
+     * @return true if the error is due to a file with the same content hash
+     * @throws SQLException if there is an error while rolling back or executing the query
+     */
+    private static boolean isDuplicateContentViolation(Connection connection, MGWFileInfoDTO dto, SQLException e)
+            throws SQLException {
+        // SQL state class 23 is an integrity constraint violation
+        if (dto.getContentHash() == null || e.getSQLState() == null || !e.getSQLState().startsWith("23")) {
+            return false;
+        }
+        connection.rollback();
+        boolean duplicate = isDuplicateContent(connection, dto);
+        connection.rollback();
+        return duplicate;
+    }
+
+    /**
+     * Claims the next set of files to be processed by the worker threads of this node. Files which are being
+     * processed, but whose lease has expired, are reclaimed first. Such files which have already been claimed the
+     * maximum number of times are marked as failed instead. The files are claimed with a single UPDATE under a
+     * new claim id, so that nodes claiming concurrently get disjoint sets of files without holding row locks beyond
+     * the statement.
+     *
+     * @param limit        maximum number of files to be claimed
+     * @param leaseTimeout time in milliseconds the returned files are leased for
+     * @param maxAttempts  number of times a file is claimed before it is marked as failed
      * @return list of {@link MGWFileInfoDTO}
      * @throws MGWFileSourceException if there is an error while getting a connection or executing the query
      */
-    public static List<MGWFileInfoDTO> getNextFilesToProcess(int limit) throws MGWFileSourceException {
+    public static List<MGWFileInfoDTO> getNextFilesToProcess(int limit, long leaseTimeout, int maxAttempts)
+            throws MGWFileSourceException {
         Connection connection = null;
+        PreparedStatement parkStatement = null;
+        PreparedStatement reclaimStatement = null;
+        PreparedStatement claimStatement = null;
         PreparedStatement selectStatement = null;
-        PreparedStatement updateStatement = null;
         ResultSet resultSet = null;
-        boolean autoCommitStatus = false;
+        boolean autoCommitStatus = true;
         List<MGWFileInfoDTO> usageFileList = new ArrayList<>();
+        String claimId = MGWFileSourceDS.getNodeId() + ":" + UUID.randomUUID();
         try {
             connection = MGWFileSourceDBUtil.getConnection();
-            if (!isUsageTableExist(connection)) {
+            if (!MGWFileSourceDBUtil.isUsageTableExist(connection)) {
                 log.debug("Table 'AM_USAGE_UPLOADED_FILES' not found in '" + MGWFileSourceDBUtil.getDatasourceName()
                         + "'. Skip publishing usage data assuming Micro GW is not configured.");
                 return Collections.emptyList();
             }
+            // each statement is committed on its own, so that the claimed rows are not locked while being selected
             autoCommitStatus = connection.getAutoCommit();
-            connection.setAutoCommit(false);
-            if ((connection.getMetaData().getDriverName()).contains("Oracle")) {
-                selectStatement = connection
-                        .prepareStatement(MGWFileSourceConstants.GET_NEXT_FILES_TO_PROCESS_QUERY_ORACLE);
-            } else if (connection.getMetaData().getDatabaseProductName().contains("Microsoft")) {
-                selectStatement = connection
-                        .prepareStatement(MGWFileSourceConstants.GET_NEXT_FILES_TO_PROCESS_QUERY_MSSQL);
-            } else if (connection.getMetaData().getDatabaseProductName().contains("DB2")) {
-                selectStatement = connection
-                        .prepareStatement(MGWFileSourceConstants.GET_NEXT_FILES_TO_PROCESS_QUERY_DB2);
-            } else {
-                selectStatement = connection
-                        .prepareStatement(MGWFileSourceConstants.GET_NEXT_FILES_TO_PROCESS_QUERY_DEFAULT);
+            connection.setAutoCommit(true);
+            long currentTime = System.currentTimeMillis();
+            parkStatement = connection.prepareStatement(MGWFileSourceConstants.PARK_FAILED_FILES_QUERY);
+            parkStatement.setTimestamp(1, new Timestamp(currentTime));
+            parkStatement.setInt(2, maxAttempts);
+            int failedFiles = parkStatement.executeUpdate();
+            if (failedFiles > 0) {
+                log.error("Marked " + failedFiles + " uploaded usage files as failed (FILE_PROCESSED=3), since they "
+                        + "could not be processed in " + maxAttempts + " attempts. Set FILE_PROCESSED and "
+                        + "ATTEMPT_COUNT of a file to 0 to retry it.");
             }
-            selectStatement.setInt(1, limit);
+            reclaimStatement = connection.prepareStatement(MGWFileSourceConstants.RECLAIM_EXPIRED_FILES_QUERY);
+            reclaimStatement.setTimestamp(1, new Timestamp(currentTime));
+            int reclaimedFiles = reclaimStatement.executeUpdate();
+            if (reclaimedFiles > 0) {
+                log.warn("Reclaimed " + reclaimedFiles + " uploaded usage files whose processing lease has expired.");
+            }
+            claimStatement = connection
+                    .prepareStatement(MGWFileSourceDBUtil.getDialect(connection).getClaimNextFilesQuery());
+            claimStatement.setString(1, claimId);
+            claimStatement.setTimestamp(2, new Timestamp(currentTime + leaseTimeout));
+            claimStatement.setInt(3, limit);
+            if (claimStatement.executeUpdate() == 0) {
+                return Collections.emptyList();
+            }
+            selectStatement = connection.prepareStatement(MGWFileSourceConstants.GET_CLAIMED_FILES_QUERY);
+            selectStatement.setString(1, claimId);
             resultSet = selectStatement.executeQuery();
             while (resultSet.next()) {
                 String fileName = resultSet.getString("FILE_NAME");
                 long timeStamp = resultSet.getTimestamp("FILE_TIMESTAMP").getTime();
-                updateStatement = connection
-                        .prepareStatement(MGWFileSourceConstants.UPDATE_FILE_PROCESSING_STARTED_STATUS);
-                updateStatement.setString(1, fileName);
-                updateStatement.executeUpdate();
+                int entryIndex = resultSet.getInt("FILE_ENTRY");
+                long offset = resultSet.getLong("FILE_OFFSET");
                 //File content (Blob) is not stored in memory. Will retrieve one by one when processing.
-                MGWFileInfoDTO dto = new MGWFileInfoDTO(fileName, timeStamp);
+                MGWFileInfoDTO dto = new MGWFileInfoDTO(fileName, timeStamp, entryIndex, offset, claimId);
                 usageFileList.add(dto);
                 if (log.isDebugEnabled()) {
                     log.debug("Added File to list : " + dto.toString());
                 }
             }
-            connection.commit();
         } catch (SQLException e) {
-            try {
-                if (connection != null) {
-                    connection.rollback();
-                }
-            } catch (SQLException e1) {
-                log.error("Error occurred while rolling back getting the next files to process transaction.", e1);
-            }
             throw new MGWFileSourceException("Error occurred while getting the next files to process.", e);
         } finally {
             try {
@@ -161,102 +470,264 @@ public class MGWFileSourceDAO {
             } catch (SQLException e) {
                 log.warn("Failed to reset auto commit state of database connection to the previous state.", e);
             }
-            MGWFileSourceDBUtil.closeStatement(updateStatement);
+            MGWFileSourceDBUtil.closeStatement(parkStatement);
+            MGWFileSourceDBUtil.closeStatement(reclaimStatement);
+            MGWFileSourceDBUtil.closeStatement(claimStatement);
             MGWFileSourceDBUtil.closeAllConnections(selectStatement, connection, resultSet);
         }
         return usageFileList;
     }
 
     /**
-     * Updates the completion of processing a uploaded usage file.
+     * Persists the entry of the archive and the offset of its decompressed content up to which the events of a file
+     * are published, so that processing can be resumed from there.
+     *
+     * @param connection connection in auto commit mode, used for processing the file
+     * @param dto        File being processed represented by {@link MGWFileInfoDTO}
+     * @param entryIndex index of the usage data entry being processed
+     * @param offset     offset of the content of the entry in bytes
+     * @throws MGWFileClaimLostException if the file is no longer claimed by the given claim
+     * @throws MGWFileSourceException    if there is an error while executing the query
+     */
+    public static void updateOffset(Connection connection, MGWFileInfoDTO dto, int entryIndex, long offset)
+            throws MGWFileSourceException {
+        PreparedStatement statement = null;
+        try {
+            statement = connection.prepareStatement(MGWFileSourceConstants.UPDATE_FILE_OFFSET_QUERY);
+            statement.setInt(1, entryIndex);
+            statement.setLong(2, offset);
+            statement.setString(3, dto.getFileName());
+            statement.setString(4, dto.getClaimId());
+            int updatedRows = statement.executeUpdate();
+            if (updatedRows == 0) {
+                throw new MGWFileClaimLostException("Offset of file : " + dto + " is not updated as its claim has "
+                        + "been lost.");
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Updated offset to " + offset + " of entry " + entryIndex + " for file : " + dto.toString());
+            }
+        } catch (SQLException e) {
+            throw new MGWFileSourceException("Error occurred while updating the offset of file : " + dto, e);
+        } finally {
+            MGWFileSourceDBUtil.closeStatement(statement);
+        }
+    }
+
+    /**
+     * Extends the processing lease of the given files.
      *
-     * @param dto Processed file represented by {@link MGWFileInfoDTO}
+     * @param dtos        Files being processed represented by {@link MGWFileInfoDTO}
+     * @param leaseExpiry time in milliseconds until which the files are leased
+     * @return files whose claim has been lost, e.g. because the lease expired and another node reclaimed the file
      * @throws MGWFileSourceException if there is an error while getting a connection or executing the query
      */
-    public static void updateCompletion(MGWFileInfoDTO dto) throws MGWFileSourceException {
+    public static List<MGWFileInfoDTO> renewLeases(List<MGWFileInfoDTO> dtos, long leaseExpiry)
+            throws MGWFileSourceException {
+        if (dtos.isEmpty()) {
+            return Collections.emptyList();
+        }
         Connection connection = null;
         PreparedStatement statement = null;
+        List<MGWFileInfoDTO> lostFiles = new ArrayList<>();
         try {
             connection = MGWFileSourceDBUtil.getConnection();
             connection.setAutoCommit(false);
+            statement = connection.prepareStatement(MGWFileSourceConstants.RENEW_FILE_LEASE_QUERY);
+            for (MGWFileInfoDTO dto : dtos) {
+                statement.setTimestamp(1, new Timestamp(leaseExpiry));
+                statement.setString(2, dto.getFileName());
+                statement.setString(3, dto.getClaimId());
+                statement.addBatch();
+            }
+            int[] updatedRows = statement.executeBatch();
+            connection.commit();
+            // drivers which do not report the updated rows return SUCCESS_NO_INFO instead
+            for (int i = 0; i < updatedRows.length && i < dtos.size(); i++) {
+                if (updatedRows[i] == 0) {
+                    lostFiles.add(dtos.get(i));
+                }
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Renewed the lease of " + (dtos.size() - lostFiles.size()) + " files being processed.");
+            }
+        } catch (SQLException e) {
+            throw new MGWFileSourceException("Error occurred while renewing the lease of the files being processed.",
+                    e);
+        } finally {
+            MGWFileSourceDBUtil.closeAllConnections(statement, connection, null);
+        }
+        return lostFiles;
+    }
+
+    /**
+     * Updates the completion of processing a uploaded usage file.
+     *
+     * @param connection connection in auto commit mode, used for processing the file
+     * @param dto        Processed file represented by {@link MGWFileInfoDTO}
+     * @throws MGWFileClaimLostException if the file is no longer claimed by the given claim
+     * @throws MGWFileSourceException    if there is an error while executing the query
+     */
+    public static void updateCompletion(Connection connection, MGWFileInfoDTO dto) throws MGWFileSourceException {
+        PreparedStatement statement = null;
+        try {
             statement = connection.prepareStatement(MGWFileSourceConstants.UPDATE_COMPETITION_QUERY);
             statement.setString(1, dto.getFileName());
-            statement.executeUpdate();
-            connection.commit();
+            statement.setString(2, dto.getClaimId());
+            int updatedRows = statement.executeUpdate();
+            if (updatedRows == 0) {
+                throw new MGWFileClaimLostException("Completion of file : " + dto + " is not updated as its claim "
+                        + "has been lost.");
+            }
             if (log.isDebugEnabled()) {
                 log.debug("Updated completion for file : " + dto.toString());
             }
         } catch (SQLException e) {
             throw new MGWFileSourceException("Error occurred while updating the completion state.", e);
         } finally {
-            MGWFileSourceDBUtil.closeAllConnections(statement, connection, null);
+            MGWFileSourceDBUtil.closeStatement(statement);
         }
     }
 
     /**
-     * Get the content of the file based on the file information.
+     * Get the number of uploaded files in each processing state.
      *
-     * @param dto Processed file represented by {@link MGWFileInfoDTO}
-     * @return InputStream with the content of the file of null if there is no content
-     * @throws MGWFileSourceException
+     * @return statistics of the uploaded files
+     * @throws MGWFileSourceException if there is an error while executing the query
      */
-    public static InputStream getFileContent(MGWFileInfoDTO dto) throws MGWFileSourceException {
+    public static MGWFileStatisticsDTO getFileStatistics() throws MGWFileSourceException {
         Connection connection = null;
         PreparedStatement statement = null;
         ResultSet resultSet = null;
-        InputStream fileContentInputStream = null;
+        long[] fileCounts = new long[4];
+        long oldestUnprocessedFileTimeStamp = -1;
         try {
             connection = MGWFileSourceDBUtil.getConnection();
-            connection.setAutoCommit(false);
+            if (!MGWFileSourceDBUtil.isUsageTableExist(connection)) {
+                return new MGWFileStatisticsDTO(0, 0, 0, 0, -1);
+            }
+            statement = connection.prepareStatement(MGWFileSourceConstants.GET_FILE_STATISTICS_QUERY);
+            resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                int state = resultSet.getInt("FILE_PROCESSED");
+                if (state < 0 || state >= fileCounts.length) {
+                    continue;
+                }
+                fileCounts[state] = resultSet.getLong("FILE_COUNT");
+                Timestamp oldestTimeStamp = resultSet.getTimestamp("OLDEST_FILE_TIMESTAMP");
+                if (state < 2 && oldestTimeStamp != null && (oldestUnprocessedFileTimeStamp < 0
+                        || oldestTimeStamp.getTime() < oldestUnprocessedFileTimeStamp)) {
+                    oldestUnprocessedFileTimeStamp = oldestTimeStamp.getTime();
+                }
+            }
+        } catch (SQLException e) {
+            throw new MGWFileSourceException("Error occurred while getting the statistics of the uploaded files.", e);
+        } finally {
+            MGWFileSourceDBUtil.closeAllConnections(statement, connection, resultSet);
+        }
+        return new MGWFileStatisticsDTO(fileCounts[0], fileCounts[1], fileCounts[2], fileCounts[3],
+                oldestUnprocessedFileTimeStamp);
+    }
+
+    /**
+     * Get the content of the file based on the file information. Content kept in the database is streamed from the
+     * result set, which is closed when the returned stream is closed.
+     *
+     * @param connection connection in auto commit mode, used for processing the file
+     * @param dto        Processed file represented by {@link MGWFileInfoDTO}
+     * @return InputStream with the content of the file of null if there is no content
+     * @throws MGWFileSourceException if there is an error while reading the content
+     */
+    public static InputStream getFileContent(Connection connection, MGWFileInfoDTO dto)
+            throws MGWFileSourceException {
+        if (MGWFileStorageUtil.isFileStorageEnabled()) {
+            try {
+                InputStream storedContent = MGWFileStorageUtil.open(dto.getFileName());
+                if (storedContent != null) {
+                    return storedContent;
+                }
+            } catch (IOException e) {
+                throw new MGWFileSourceException("Error occurred while reading the stored file: " + dto.toString(), e);
+            }
+            // files uploaded before the storage directory was configured are still in the database
+        }
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        InputStream fileContentInputStream = null;
+        try {
             statement = connection.prepareStatement(MGWFileSourceConstants.GET_UPLOADED_FILE_CONTENT_QUERY);
             statement.setString(1, dto.getFileName());
             resultSet = statement.executeQuery();
-            while (resultSet.next()) {
+            if (resultSet.next()) {
                 //Postgres bytea data doesn't support getBlob operation
-                if (connection.getMetaData().getDriverName().contains("PostgreSQL")) {
+                if (MGWFileSourceDBUtil.getDialect(connection).isBinaryContent()) {
                     fileContentInputStream = resultSet.getBinaryStream(MGWFileSourceConstants.API_USAGE_FILE_CONTENT);
                 } else {
                     Blob content = resultSet.getBlob(MGWFileSourceConstants.API_USAGE_FILE_CONTENT);
-                    fileContentInputStream = content.getBinaryStream();
-                }
-                if (log.isDebugEnabled()) {
-                    log.debug("Added File to list : " + dto.toString());
+                    if (content != null) {
+                        fileContentInputStream = content.getBinaryStream();
+                    }
                 }
             }
+            if (fileContentInputStream == null) {
+                return null;
+            }
             if (log.isDebugEnabled()) {
                 log.debug("Retrieved content of file : " + dto.toString());
             }
+            fileContentInputStream = new ResultSetInputStream(fileContentInputStream, statement, resultSet);
         } catch (SQLException e) {
             throw new MGWFileSourceException(
                     "Error occurred while retrieving the content of the file: " + dto.toString(), e);
         } finally {
-            MGWFileSourceDBUtil.closeAllConnections(statement, connection, resultSet);
+            if (fileContentInputStream == null) {
+                MGWFileSourceDBUtil.closeAllConnections(statement, null, resultSet);
+            }
         }
         return fileContentInputStream;
     }
 
     /**
-     * Delete obsolete usage records in the dbG.
+     * Delete a bounded batch of obsolete usage records in the db. Each batch is deleted in its own short transaction,
+     * so that uploads and polls are not blocked for the whole cleanup.
      *
      * @param lastKeptDate up to which files should be retained
-     * @throws MGWFileSourceException
+     * @param batchSize    maximum number of records to be deleted
+     * @return number of deleted records, which is less than the batch size if there are no more records to delete
+     * @throws MGWFileSourceException if there is an error while getting a connection or executing the query
      */
-    public static void deleteProcessedOldFiles(Date lastKeptDate) throws MGWFileSourceException {
+    public static int deleteProcessedOldFiles(Date lastKeptDate, int batchSize) throws MGWFileSourceException {
         Connection connection = null;
+        PreparedStatement selectStatement = null;
         PreparedStatement delStatement = null;
+        ResultSet resultSet = null;
         boolean autoCommitStatus = false;
+        List<String> fileNames = new ArrayList<>();
         try {
             connection = MGWFileSourceDBUtil.getConnection();
-            if (!isUsageTableExist(connection)) {
+            if (!MGWFileSourceDBUtil.isUsageTableExist(connection)) {
                 log.debug("Table 'AM_USAGE_UPLOADED_FILES' not found in '" + MGWFileSourceDBUtil.getDatasourceName()
                         + "'. Skip publishing usage data assuming Micro GW is not configured.");
-                return;
+                return 0;
             }
             autoCommitStatus = connection.getAutoCommit();
             connection.setAutoCommit(false);
-            delStatement = connection.prepareStatement(MGWFileSourceConstants.DELETE_OLD_UPLOAD_COMPLETED_FILES);
-            delStatement.setTimestamp(1, new Timestamp(lastKeptDate.getTime()));
-            delStatement.executeUpdate();
+            selectStatement = connection.prepareStatement(MGWFileSourceConstants.GET_OLD_UPLOAD_COMPLETED_FILES);
+            selectStatement.setTimestamp(1, new Timestamp(lastKeptDate.getTime()));
+            selectStatement.setMaxRows(batchSize);
+            resultSet = selectStatement.executeQuery();
+            while (resultSet.next()) {
+                fileNames.add(resultSet.getString("FILE_NAME"));
+            }
+            if (fileNames.isEmpty()) {
+                connection.commit();
+                return 0;
+            }
+            delStatement = connection.prepareStatement(MGWFileSourceConstants.DELETE_UPLOAD_COMPLETED_FILE);
+            for (String fileName : fileNames) {
+                delStatement.setString(1, fileName);
+                delStatement.addBatch();
+            }
+            delStatement.executeBatch();
             connection.commit();
         } catch (SQLException e) {
             try {
@@ -275,28 +746,118 @@ public class MGWFileSourceDAO {
             } catch (SQLException e) {
                 log.warn("Failed to reset auto commit state of database connection to the previous state.", e);
             }
+            MGWFileSourceDBUtil.closeAllConnections(selectStatement, null, resultSet);
             MGWFileSourceDBUtil.closeAllConnections(delStatement, connection, null);
         }
+        // the rows are deleted first, so that a row never refers to a deleted file
+        if (MGWFileStorageUtil.isFileStorageEnabled()) {
+            for (String fileName : fileNames) {
+                MGWFileStorageUtil.delete(fileName);
+            }
+        }
+        return fileNames.size();
     }
 
     /**
-     * Check whether given table is exist
+     * Drops the time partitions of the usage table which only contain processed files older than the given date.
+     * Partitions are only supported on MySQL, where the table is partitioned by range of
+     * UNIX_TIMESTAMP(FILE_TIMESTAMP). Nothing is dropped on other databases or if the table is not partitioned.
      *
-     * @param conn Connection
-     * @return existence
-     * @throws SQLException throw if an error occurred
+     * @param lastKeptDate up to which files should be retained
+     * @return number of dropped partitions
+     * @throws MGWFileSourceException if there is an error while getting a connection or executing the query
      */
-    private static boolean isUsageTableExist(Connection conn) throws SQLException {
-        Statement stmt = conn.createStatement();
+    public static int dropProcessedOldPartitions(Date lastKeptDate) throws MGWFileSourceException {
+        Connection connection = null;
+        PreparedStatement partitionStatement = null;
+        ResultSet partitionResultSet = null;
+        int droppedPartitions = 0;
         try {
-            stmt.execute(MGWFileSourceConstants.TABLE_EXISTENCE_SQL);
-            return true;
+            connection = MGWFileSourceDBUtil.getConnection();
+            if (!MGWFileSourceDBUtil.isUsageTableExist(connection)
+                    || !MGWFileSourceDBUtil.getDialect(connection).isPartitionDropSupported()) {
+                log.debug("Usage table partitions are not dropped as the database does not support partitions.");
+                return 0;
+            }
+            List<String> expiredPartitions = new ArrayList<>();
+            partitionStatement = connection.prepareStatement(MGWFileSourceConstants.GET_PARTITIONS_QUERY_MYSQL);
+            partitionResultSet = partitionStatement.executeQuery();
+            while (partitionResultSet.next()) {
+                String upperBound = partitionResultSet.getString("PARTITION_DESCRIPTION");
+                // the upper bound is exclusive and in seconds, or MAXVALUE for the last partition
+                if (upperBound != null && upperBound.matches("\\d+")
+                        && Long.parseLong(upperBound) * 1000 <= lastKeptDate.getTime()) {
+                    expiredPartitions.add(partitionResultSet.getString("PARTITION_NAME"));
+                }
+            }
+            for (String partition : expiredPartitions) {
+                if (dropPartitionIfProcessed(connection, partition)) {
+                    droppedPartitions++;
+                }
+            }
         } catch (SQLException e) {
-            //  logging is not required here.
-            return false;
+            throw new MGWFileSourceException("Error occurred while dropping old usage table partitions.", e);
+        } finally {
+            MGWFileSourceDBUtil.closeAllConnections(partitionStatement, connection, partitionResultSet);
+        }
+        return droppedPartitions;
+    }
+
+    private static boolean dropPartitionIfProcessed(Connection connection, String partition) throws SQLException {
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        List<String> fileNames = new ArrayList<>();
+        try {
+            statement = connection.prepareStatement(
+                    String.format(MGWFileSourceConstants.GET_PARTITION_FILES_QUERY_MYSQL, partition));
+            resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                if (resultSet.getInt("FILE_PROCESSED") != 2) {
+                    log.warn("Usage table partition " + partition + " is not dropped as it has files which are not "
+                            + "processed yet.");
+                    return false;
+                }
+                fileNames.add(resultSet.getString("FILE_NAME"));
+            }
         } finally {
-            if (stmt != null) {
-                stmt.close();
+            MGWFileSourceDBUtil.closeAllConnections(statement, null, resultSet);
+        }
+        try {
+            statement = connection.prepareStatement(
+                    String.format(MGWFileSourceConstants.DROP_PARTITION_QUERY_MYSQL, partition));
+            statement.executeUpdate();
+        } finally {
+            MGWFileSourceDBUtil.closeStatement(statement);
+        }
+        log.info("Dropped usage table partition " + partition + " with " + fileNames.size() + " processed files.");
+        if (MGWFileStorageUtil.isFileStorageEnabled()) {
+            for (String fileName : fileNames) {
+                MGWFileStorageUtil.delete(fileName);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@link InputStream} of a content column, which closes the result set and the statement it is read from.
+     */
+    private static class ResultSetInputStream extends FilterInputStream {
+
+        private final PreparedStatement statement;
+        private final ResultSet resultSet;
+
+        ResultSetInputStream(InputStream content, PreparedStatement statement, ResultSet resultSet) {
+            super(content);
+            this.statement = statement;
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                MGWFileSourceDBUtil.closeAllConnections(statement, null, resultSet);
             }
         }
     }
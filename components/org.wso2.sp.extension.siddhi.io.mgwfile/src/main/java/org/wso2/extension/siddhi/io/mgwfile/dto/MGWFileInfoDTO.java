@@ -24,6 +24,10 @@ package org.wso2.extension.siddhi.io.mgwfile.dto;
 public class MGWFileInfoDTO {
     private String fileName;
     private long timeStamp;
+    private int entryIndex;
+    private long offset;
+    private String claimId;
+    private String contentHash;
 
     /**
      * Constructor.
@@ -32,8 +36,47 @@ public class MGWFileInfoDTO {
      * @param timeStamp Timestamp of the file creation
      */
     public MGWFileInfoDTO(String fileName, long timeStamp) {
+        this(fileName, timeStamp, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param fileName  name of the file
+     * @param timeStamp Timestamp of the file creation
+     * @param offset    Offset of the content up to which the file is already processed
+     */
+    public MGWFileInfoDTO(String fileName, long timeStamp, long offset) {
+        this(fileName, timeStamp, offset, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param fileName  name of the file
+     * @param timeStamp Timestamp of the file creation
+     * @param offset    Offset of the content up to which the file is already processed
+     * @param claimId   Id of the claim under which the file is being processed
+     */
+    public MGWFileInfoDTO(String fileName, long timeStamp, long offset, String claimId) {
+        this(fileName, timeStamp, 0, offset, claimId);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param fileName   name of the file
+     * @param timeStamp  Timestamp of the file creation
+     * @param entryIndex Index of the usage data entry of the archive which is being processed
+     * @param offset     Offset of the content of that entry up to which it is already processed
+     * @param claimId    Id of the claim under which the file is being processed
+     */
+    public MGWFileInfoDTO(String fileName, long timeStamp, int entryIndex, long offset, String claimId) {
         this.fileName = fileName;
         this.timeStamp = timeStamp;
+        this.entryIndex = entryIndex;
+        this.offset = offset;
+        this.claimId = claimId;
     }
 
     /**
@@ -53,9 +96,50 @@ public class MGWFileInfoDTO {
         return timeStamp;
     }
 
+    /**
+     * Get the index of the usage data entry of the archive which is being processed. Entries before it are already
+     * processed.
+     * @return int index of the entry among the usage data entries of the archive
+     */
+    public int getEntryIndex() {
+        return entryIndex;
+    }
+
+    /**
+     * Get the offset of the decompressed content of the current entry up to which it is already processed.
+     * @return long offset in bytes
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Get the id of the claim under which the file is being processed by this node.
+     * @return String claim id or null if the file is not claimed
+     */
+    public String getClaimId() {
+        return claimId;
+    }
+
+    /**
+     * Get the hash of the uploaded content, which is used to detect content uploaded more than once.
+     * @return String hex encoded hash or null if not known
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Set the hash of the uploaded content.
+     * @param contentHash hex encoded hash of the content
+     */
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
 
     @Override
     public String toString() {
-        return "[ FileName : " + fileName + ", TimeStamp : " + timeStamp + "]";
+        return "[ FileName : " + fileName + ", TimeStamp : " + timeStamp + ", Entry : " + entryIndex + ", Offset : "
+                + offset + ", ClaimId : " + claimId + "]";
     }
 }
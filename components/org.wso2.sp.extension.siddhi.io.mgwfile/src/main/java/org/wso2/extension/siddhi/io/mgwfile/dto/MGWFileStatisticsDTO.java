@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.dto;
+
+/**
+ * This class represents the number of uploaded files in each processing state.
+ */
+public class MGWFileStatisticsDTO {
+    private long pendingFileCount;
+    private long inProgressFileCount;
+    private long completedFileCount;
+    private long failedFileCount;
+    private long oldestUnprocessedFileTimeStamp;
+
+    /**
+     * Constructor.
+     *
+     * @param pendingFileCount               number of files waiting to be processed
+     * @param inProgressFileCount            number of files being processed
+     * @param completedFileCount             number of processed files which are not cleaned up yet
+     * @param failedFileCount                number of files which could not be processed in the maximum number of
+     *                                       attempts
+     * @param oldestUnprocessedFileTimeStamp Timestamp of the oldest file which is not processed yet, or -1 if all
+     *                                       the files are processed
+     */
+    public MGWFileStatisticsDTO(long pendingFileCount, long inProgressFileCount, long completedFileCount,
+            long failedFileCount, long oldestUnprocessedFileTimeStamp) {
+        this.pendingFileCount = pendingFileCount;
+        this.inProgressFileCount = inProgressFileCount;
+        this.completedFileCount = completedFileCount;
+        this.failedFileCount = failedFileCount;
+        this.oldestUnprocessedFileTimeStamp = oldestUnprocessedFileTimeStamp;
+    }
+
+    public long getPendingFileCount() {
+        return pendingFileCount;
+    }
+
+    public long getInProgressFileCount() {
+        return inProgressFileCount;
+    }
+
+    public long getCompletedFileCount() {
+        return completedFileCount;
+    }
+
+    public long getFailedFileCount() {
+        return failedFileCount;
+    }
+
+    public long getOldestUnprocessedFileTimeStamp() {
+        return oldestUnprocessedFileTimeStamp;
+    }
+
+    @Override
+    public String toString() {
+        return "Pending: " + pendingFileCount + ", InProgress: " + inProgressFileCount + ", Completed: "
+                + completedFileCount + ", Failed: " + failedFileCount + ", OldestUnprocessedTimeStamp: "
+                + oldestUnprocessedFileTimeStamp;
+    }
+}
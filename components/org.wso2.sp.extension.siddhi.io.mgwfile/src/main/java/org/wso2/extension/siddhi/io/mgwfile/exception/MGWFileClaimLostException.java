@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.exception;
+
+/**
+ * Thrown when the claim of a file being processed is found to be lost, e.g. because its lease expired and the file was
+ * reclaimed by another node. The events of the file must not be published any further by this node.
+ */
+public class MGWFileClaimLostException extends MGWFileSourceException {
+
+    public MGWFileClaimLostException(String s) {
+        super(s);
+    }
+}
@@ -31,37 +31,71 @@ import io.siddhi.core.util.config.ConfigReader;
 import io.siddhi.core.util.snapshot.state.State;
 import io.siddhi.core.util.snapshot.state.StateFactory;
 import io.siddhi.core.util.transport.OptionHolder;
+import io.siddhi.query.api.exception.SiddhiAppValidationException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.databridge.commons.StreamDefinition;
-import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceDS;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileDirectPublisher;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
 import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceRegistrationManager;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileStreamConsumer;
 import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
 import org.wso2.extension.siddhi.io.mgwfile.task.MGWFileReaderTask;
 import org.wso2.extension.siddhi.io.mgwfile.util.FileDataRetrieverUtil;
 import org.wso2.extension.siddhi.map.wso2event.source.WSO2SourceMapper;
 
-import java.util.Timer;
+import java.util.Locale;
 
 /**
  * Micro Gateway File Source.
  */
 
 @Extension(name = "mgwfile", namespace = "source", description = "Event source to receive WSO2 Microgateway analytics"
-        + " data",
+        + " data. Usage data entries are read either in the delimiter based text format or, if they start with the "
+        + "'MGWB' header, in the binary columnar format.",
         parameters = {
         @Parameter(
                 name = "usage.publishing.frequency",
-                description = "Time interval to run the data retrieval timer task in milliseconds.",
+                description = "Maximum time interval between two polls for uploaded files in milliseconds. While "
+                        + "there are no files to process, the polling interval backs off exponentially from "
+                        + "'usage.publishing.min.frequency' up to this value.",
                 type = { DataType.STRING },
                 optional = true,
                 defaultValue = "300000"),
+        @Parameter(
+                name = "usage.publishing.min.frequency",
+                description = "Minimum time interval between two polls for uploaded files in milliseconds. While "
+                        + "there is a backlog of files, the next file is fetched as soon as a thread becomes idle.",
+                type = { DataType.STRING },
+                optional = true,
+                defaultValue = "1000"),
         @Parameter(name = "usage.cleanup.frequency",
                 description = "Time interval to run the data cleanup timer task in milliseconds.",
                 type = {
                 DataType.STRING },
                 optional = true,
                 defaultValue = "1800000"),
+        @Parameter(name = "usage.cleanup.batch.size",
+                description = "Maximum number of processed files deleted in a single transaction by the data cleanup "
+                        + "timer task.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "1000"),
+        @Parameter(name = "usage.cleanup.batch.pause",
+                description = "Time in milliseconds the data cleanup timer task waits between two batches.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "100"),
+        @Parameter(name = "usage.cleanup.partition.drop",
+                description = "Whether the data cleanup timer task drops the time partitions of the usage table "
+                        + "which only contain processed files older than the retention period. Only supported on "
+                        + "MySQL, with the table partitioned by range of UNIX_TIMESTAMP(FILE_TIMESTAMP).",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "false"),
         @Parameter(name = "file.retention.days",
                 description = "Number of days to keep already read microgateway analytics zip files before removal.",
                 type = {
@@ -69,18 +103,147 @@ import java.util.Timer;
                 optional = true,
                 defaultValue = "5"),
         @Parameter(name = "usage.publishing.thread.count",
-                description = "Number of threads to use for data retrieval when the timer task runs. A single thread "
-                        + "will process data from a single file.",
+                description = "Number of threads to use for data retrieval, shared by all the mgwfile sources. A "
+                        + "single thread will publish data from a single file.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "3"),
+        @Parameter(name = "usage.publishing.batch.size",
+                description = "Maximum number of events of a stream delivered to Siddhi at once. Events of a stream "
+                        + "are still delivered in the order they appear in the file. Set to 1 to deliver events one "
+                        + "by one.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "100"),
+        @Parameter(name = "usage.publishing.parser.thread.count",
+                description = "Number of threads parsing a single file. When greater than 1, the file is split into "
+                        + "chunks on line boundaries which are parsed concurrently and published in file order.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "1"),
+        @Parameter(name = "usage.publishing.entry.thread.count",
+                description = "Maximum number of usage data entries of a single archive published concurrently. "
+                        + "Entries are read one after the other, while earlier entries are still being parsed and "
+                        + "published. Events of different entries may be interleaved. Only applies to files "
+                        + "published directly, since files processed from the database are published one entry "
+                        + "after the other so that the progress within each entry can be persisted.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "2"),
+        @Parameter(name = "usage.publishing.deduplication.window",
+                description = "Time window in milliseconds within which a published event is remembered, so that "
+                        + "an identical event, e.g. from the same usage data uploaded under a different file name, "
+                        + "is dropped. Events are remembered in a Bloom filter, hence a distinct event is dropped "
+                        + "with a probability of about one in a million. An event is identified only by its stream, "
+                        + "timestamp and attribute values, hence distinct events with identical values within the "
+                        + "window, e.g. two identical requests served in the same millisecond, are dropped as well. "
+                        + "Enable deduplication only if the published events carry a unique attribute such as a "
+                        + "request id. Deduplication is disabled if 0.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "0"),
+        @Parameter(name = "usage.publishing.deduplication.capacity",
+                description = "Expected number of events published within a deduplication window. The filter "
+                        + "takes about 9 megabytes of memory per million events.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "1000000"),
+        @Parameter(name = "usage.publishing.checkpoint.interval",
+                description = "Number of events published from a file before its progress is persisted. If the node "
+                        + "stops while processing a file, the file is resumed from the last persisted position.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "10000"),
+        @Parameter(name = "usage.publishing.lease.timeout",
+                description = "Time in milliseconds after which a file that is being processed is considered "
+                        + "abandoned and is picked again, unless the processing node renews it.",
                 type = {
                 DataType.STRING },
                 optional = true,
-                defaultValue = "3"), },
+                defaultValue = "600000"),
+        @Parameter(name = "usage.publishing.max.attempts",
+                description = "Maximum number of times a file is picked for processing. A file which is still not "
+                        + "processed when its last lease expires is marked as failed (FILE_PROCESSED=3) and is no "
+                        + "longer picked. It can be retried by setting FILE_PROCESSED and ATTEMPT_COUNT back to 0.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "3"),
+        @Parameter(name = "usage.file.storage.directory",
+                description = "Local or shared directory to keep the content of the uploaded files in. When set, "
+                        + "only the metadata of the files is kept in the database. All the nodes processing the files "
+                        + "should have access to the same directory.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "null"),
+        @Parameter(name = "usage.publishing.node.id",
+                description = "Id of this node, recorded against the files claimed by the node. Each node "
+                        + "processing files from the same database should have a distinct id.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "<pid>@<hostname>"),
+        @Parameter(name = "usage.publishing.direct.directory",
+                description = "Directory to keep the files uploaded in direct mode until their events are "
+                        + "published. Files left in the directory when the node stops are published again once the "
+                        + "sources are connected, hence their events may be published more than once. Files which "
+                        + "cannot be published are queued in the database.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "<java.io.tmpdir>/api-usage-direct"),
+        @Parameter(name = "usage.publishing.direct.queue.size",
+                description = "Maximum number of files uploaded in direct mode waiting to be published. Once "
+                        + "reached, uploaded files are queued in the database instead.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "10"),
+        @Parameter(name = "usage.publishing.direct.recovery.delay",
+                description = "Time in milliseconds after the last source connects, after which the files left in "
+                        + "the direct publishing directory are published again. Files are not recovered before all "
+                        + "the sources are expected to be connected, so that no events are dropped for streams "
+                        + "whose source is not connected yet.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "30000"),
+        @Parameter(name = "queue.size",
+                description = "Source option giving the maximum number of event batches waiting to be delivered "
+                        + "to this stream. Events of every stream are delivered by a dedicated thread, hence a slow "
+                        + "stream does not hold back the other streams.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "64"),
+        @Parameter(name = "overflow.policy",
+                description = "Source option deciding what happens when the queue of this stream is full. 'block' "
+                        + "waits until the stream consumes enough events, which in turn holds back the other streams "
+                        + "of the same file. 'drop' drops the events.",
+                type = {
+                DataType.STRING },
+                optional = true,
+                defaultValue = "block"), },
         examples = {
                 @Example(
                         syntax = "@source(type = 'mgwfile', wso2.stream.id = 'org.wso2.apimgt.statistics.request:3.0.0'"
                                 + ", @map(type = 'wso2event'))",
-                        description = "All the parameters for microgateway analytics should be passed in as system "
-                                + "properties."
+                        description = "All the parameters for microgateway analytics except 'queue.size' and "
+                                + "'overflow.policy' should be passed in as system properties."
+                ),
+                @Example(
+                        syntax = "@source(type = 'mgwfile', wso2.stream.id = 'org.wso2.apimgt.statistics.fault:3.0.0'"
+                                + ", queue.size = '256', overflow.policy = 'drop', @map(type = 'wso2event'))",
+                        description = "Events of the fault stream are dropped when more than 256 event batches are "
+                                + "waiting to be delivered."
                 )
         }
 )
@@ -90,7 +253,8 @@ public class MGWFileSource extends Source {
     private SourceEventListener sourceEventListener;
     private OptionHolder optionHolder;
     private String streamId;
-    private MGWFileReaderTask fileReaderTask;
+    private int queueSize;
+    private MGWFileStreamConsumer.OverflowPolicy overflowPolicy;
 
     @Override
     protected ServiceDeploymentInfo exposeServiceDeploymentInfo() {
@@ -113,7 +277,29 @@ public class MGWFileSource extends Source {
                              SiddhiAppContext siddhiAppContext) {
         this.sourceEventListener = sourceEventListener;
         this.optionHolder = optionHolder;
-        streamId = optionHolder.validateAndGetStaticValue("wso2.stream.id", null);
+        streamId = optionHolder.validateAndGetStaticValue(MGWFileSourceConstants.STREAM_ID_OPTION, null);
+        String queueSizeValue = optionHolder.validateAndGetStaticValue(
+                MGWFileSourceConstants.STREAM_QUEUE_SIZE_OPTION, MGWFileSourceConstants.DEFAULT_STREAM_QUEUE_SIZE);
+        String overflowPolicyValue = optionHolder.validateAndGetStaticValue(
+                MGWFileSourceConstants.STREAM_OVERFLOW_POLICY_OPTION,
+                MGWFileSourceConstants.DEFAULT_STREAM_OVERFLOW_POLICY);
+        try {
+            queueSize = Integer.parseInt(queueSizeValue.trim());
+        } catch (NumberFormatException e) {
+            throw new SiddhiAppValidationException("Invalid '" + MGWFileSourceConstants.STREAM_QUEUE_SIZE_OPTION
+                    + "' : " + queueSizeValue + " for stream " + streamId, e);
+        }
+        if (queueSize <= 0) {
+            throw new SiddhiAppValidationException("'" + MGWFileSourceConstants.STREAM_QUEUE_SIZE_OPTION
+                    + "' should be positive for stream " + streamId);
+        }
+        try {
+            overflowPolicy = MGWFileStreamConsumer.OverflowPolicy.valueOf(
+                    overflowPolicyValue.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new SiddhiAppValidationException("Invalid '" + MGWFileSourceConstants.STREAM_OVERFLOW_POLICY_OPTION
+                    + "' : " + overflowPolicyValue + " for stream " + streamId + ". Should be 'block' or 'drop'.", e);
+        }
         return null;
     }
 
@@ -140,18 +326,18 @@ public class MGWFileSource extends Source {
         StreamDefinition streamDefinition = ((WSO2SourceMapper) getMapper()).getWSO2StreamDefinition();
         try {
             FileDataRetrieverUtil.addStreamDefinition(streamDefinition, streamId);
-            MGWFileSourceRegistrationManager.registerEventConsumer(streamId, sourceEventListener);
+            MGWFileSourceRegistrationManager.registerEventConsumer(streamId, sourceEventListener, queueSize,
+                    overflowPolicy);
             readFileFromDatabase();
+            MGWFileDirectPublisher.scheduleRecovery();
         } catch (MGWFileSourceException e) {
             log.error("Error during parsing stream definition for stream " + streamId
-                    + " TimerTask will not be scheduled", e);
+                    + ". Uploaded usage files will not be read for this stream.", e);
         }
     }
 
     private void readFileFromDatabase() {
-        fileReaderTask = new MGWFileReaderTask();
-        Timer readTimer = new Timer();
-        readTimer.schedule(fileReaderTask, 0, Long.parseLong(MGWFileSourceDS.getFileReaderFrequency()));
+        MGWFileReaderTask.getInstance().start();
     }
 
     /**
@@ -175,9 +361,7 @@ public class MGWFileSource extends Source {
      */
     @Override
     public void pause() {
-        if (fileReaderTask != null) {
-            fileReaderTask.setPaused(true);
-        }
+        MGWFileSourceRegistrationManager.pauseEventConsumer(streamId);
     }
 
     /**
@@ -185,9 +369,8 @@ public class MGWFileSource extends Source {
      */
     @Override
     public void resume() {
-        if (fileReaderTask != null) {
-            fileReaderTask.setPaused(false);
-        }
+        MGWFileSourceRegistrationManager.resumeEventConsumer(streamId);
+        MGWFileReaderTask.getInstance().start();
     }
 }
 
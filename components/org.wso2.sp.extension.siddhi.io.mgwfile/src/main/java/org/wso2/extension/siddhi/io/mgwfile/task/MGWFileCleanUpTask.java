@@ -31,7 +31,8 @@ import java.util.Date;
 import java.util.TimerTask;
 
 /**
- * Task for cleaning uploaded old usage files in db.
+ * Task for cleaning uploaded old usage files in db. Files are deleted in bounded batches with a pause in between, so
+ * that the table is not locked for the whole cleanup.
  */
 public class MGWFileCleanUpTask extends TimerTask {
 
@@ -62,10 +63,30 @@ public class MGWFileCleanUpTask extends TimerTask {
             log.debug("Uploaded API Usage data in the db will be cleaned up to : " +
                     dateFormat.format(lastKeptDate));
         }
+        int batchSize = Integer.parseInt(MGWFileSourceDS.getCleanupBatchSize());
+        long batchPause = Long.parseLong(MGWFileSourceDS.getCleanupBatchPause());
         try {
-            MGWFileSourceDAO.deleteProcessedOldFiles(lastKeptDate);
+            if (Boolean.parseBoolean(MGWFileSourceDS.getCleanupPartitionDrop())) {
+                MGWFileSourceDAO.dropProcessedOldPartitions(lastKeptDate);
+            }
+            long deletedFiles = 0;
+            int deletedBatch;
+            do {
+                deletedBatch = MGWFileSourceDAO.deleteProcessedOldFiles(lastKeptDate, batchSize);
+                deletedFiles += deletedBatch;
+                if (deletedBatch == batchSize && batchPause > 0) {
+                    // give the uploads and polls waiting on the table a chance to proceed
+                    Thread.sleep(batchPause);
+                }
+            } while (deletedBatch == batchSize);
+            if (log.isDebugEnabled()) {
+                log.debug("Cleaned up " + deletedFiles + " uploaded API Usage files.");
+            }
         } catch (MGWFileSourceException e) {
             log.error("Error occurred while cleaning the uploaded usage data.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while cleaning the uploaded usage data.");
         }
     }
 
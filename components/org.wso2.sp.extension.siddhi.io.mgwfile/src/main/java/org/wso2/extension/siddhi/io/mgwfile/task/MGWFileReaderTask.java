@@ -23,52 +23,190 @@ import org.apache.commons.logging.LogFactory;
 import org.wso2.extension.siddhi.io.mgwfile.MGWFileDataRetriever;
 import org.wso2.extension.siddhi.io.mgwfile.MGWFileDataRetrieverThreadFactory;
 import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceDS;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceMetrics;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceRegistrationManager;
 import org.wso2.extension.siddhi.io.mgwfile.dao.MGWFileSourceDAO;
 import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileInfoDTO;
 import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.TimerTask;
-import java.util.concurrent.Executor;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Task for scheduling the usage publishing threads.
+ * Task for scheduling the usage publishing threads. A single instance polls the database for all the mgwfile sources
+ * in the JVM and fetches only as many files as there are idle publishing threads. While there is a backlog, the
+ * database is polled again as soon as a file is completed. When there are no files to process, the polling interval
+ * backs off exponentially up to the configured publishing frequency.
  */
-public class MGWFileReaderTask extends TimerTask {
+public class MGWFileReaderTask implements Runnable {
 
     private static final Log log = LogFactory.getLog(
             MGWFileReaderTask.class);
-    private static int workerThreadCount = Integer.parseInt(MGWFileSourceDS.getWorkerThreadCount());
-    private static Executor usagePublisherPool = Executors
+    private static final MGWFileReaderTask instance = new MGWFileReaderTask();
+    private final int workerThreadCount = Integer.parseInt(MGWFileSourceDS.getWorkerThreadCount());
+    private final long minPollingInterval = Long.parseLong(MGWFileSourceDS.getMinFileReaderFrequency());
+    private final long maxPollingInterval = Long.parseLong(MGWFileSourceDS.getFileReaderFrequency());
+    private final long leaseTimeout = Long.parseLong(MGWFileSourceDS.getLeaseTimeout());
+    private final int maxAttempts = Integer.parseInt(MGWFileSourceDS.getMaxAttempts());
+    private final ExecutorService usagePublisherPool = Executors
             .newFixedThreadPool(workerThreadCount, new MGWFileDataRetrieverThreadFactory("mgwfile-thread"));
-    private boolean isPaused = false;
+    private final ScheduledExecutorService pollingScheduler = Executors
+            .newSingleThreadScheduledExecutor(new MGWFileDataRetrieverThreadFactory("mgwfile-poller"));
+    private final Map<MGWFileInfoDTO, MGWFileDataRetriever> filesInProgress = new ConcurrentHashMap<>();
+    // whether the next poll is due once a file is completed, guarded by this
+    private boolean backlogExists = false;
+    private long pollingInterval;
+    private ScheduledFuture<?> nextPoll;
 
-    public MGWFileReaderTask() {
+    private MGWFileReaderTask() {
         log.debug("Initializing Uploaded Usage Publisher Executor Task");
+        pollingInterval = minPollingInterval;
+        // renew well before the lease expires, so that a file being processed is not reclaimed
+        long leaseRenewalInterval = Math.max(1, leaseTimeout / 3);
+        pollingScheduler.scheduleWithFixedDelay(this::renewLeases, leaseRenewalInterval, leaseRenewalInterval,
+                TimeUnit.MILLISECONDS);
+        pollingScheduler.scheduleAtFixedRate(MGWFileSourceMetrics.getInstance()::updateRates,
+                MGWFileSourceMetrics.RATE_UPDATE_INTERVAL, MGWFileSourceMetrics.RATE_UPDATE_INTERVAL,
+                TimeUnit.MILLISECONDS);
     }
 
-    public void setPaused(boolean paused) {
-        isPaused = paused;
+    public static MGWFileReaderTask getInstance() {
+        return instance;
+    }
+
+    /**
+     * Polls the database immediately, e.g. when a source is connected or resumed.
+     */
+    public void start() {
+        schedulePoll(0);
+    }
+
+    /**
+     * Schedules the next poll unless a poll is already scheduled to run earlier.
+     */
+    private synchronized void schedulePoll(long delay) {
+        if (nextPoll != null && !nextPoll.isDone()) {
+            if (nextPoll.getDelay(TimeUnit.MILLISECONDS) <= delay) {
+                return;
+            }
+            nextPoll.cancel(false);
+        }
+        nextPoll = pollingScheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void run() {
+        synchronized (this) {
+            nextPoll = null;
+        }
+        long delay;
+        try {
+            delay = poll();
+        } catch (MGWFileSourceException | RuntimeException e) {
+            log.error("Error occurred while publishing micro-gateway API Usage data.", e);
+            delay = backOff();
+        }
+        if (delay >= 0) {
+            schedulePoll(delay);
+        }
+    }
+
+    /**
+     * Fetches files for the idle publishing threads.
+     *
+     * @return delay until the next poll in milliseconds, or -1 if the next poll is triggered by a file completion
+     * or by a source connecting
+     */
+    private long poll() throws MGWFileSourceException {
+        if (!MGWFileSourceRegistrationManager.hasEventConsumers()) {
+            log.debug("No micro-gateway file sources are connected. Stopped polling for uploaded usage files.");
+            return -1;
+        }
+        if (MGWFileSourceRegistrationManager.isAnyEventConsumerPaused()) {
+            log.info("Paused publishing micro-gateway API Usage data ");
+            return maxPollingInterval;
+        }
+        int idleWorkers = workerThreadCount - filesInProgress.size();
+        if (idleWorkers <= 0) {
+            return awaitFileCompletion();
+        }
+        List<MGWFileInfoDTO> uploadedFileList = MGWFileSourceDAO.getNextFilesToProcess(idleWorkers,
+                leaseTimeout, maxAttempts);
+        if (uploadedFileList.isEmpty()) {
+            return backOff();
+        }
+        for (MGWFileInfoDTO dto : uploadedFileList) {
+            if (log.isDebugEnabled()) {
+                log.debug("Scheduled publishing micro-gateway API Usage data for : " + dto.getFileName());
+            }
+            MGWFileDataRetriever dataRetriever = new MGWFileDataRetriever(dto);
+            filesInProgress.put(dto, dataRetriever);
+            usagePublisherPool.execute(() -> {
+                try {
+                    dataRetriever.run();
+                } catch (RuntimeException e) {
+                    log.error("Error occurred while publishing micro-gateway API Usage data of file : " + dto, e);
+                } finally {
+                    onFileCompleted(dto);
+                }
+            });
+        }
+        pollingInterval = minPollingInterval;
+        // if all the idle workers got a file, there could be more files waiting
+        return uploadedFileList.size() == idleWorkers ? awaitFileCompletion() : minPollingInterval;
+    }
+
+    /**
+     * Defers the next poll until a file is completed. The files in progress are checked under the same lock taken
+     * on completion, hence a file completed since the idle workers were counted is not missed.
+     *
+     * @return 0 if a worker is already idle, otherwise -1
+     */
+    private synchronized long awaitFileCompletion() {
+        if (filesInProgress.size() < workerThreadCount) {
+            return 0;
+        }
+        backlogExists = true;
+        return -1;
+    }
+
+    private long backOff() {
+        long delay = pollingInterval;
+        pollingInterval = Math.min(maxPollingInterval, pollingInterval * 2);
+        return delay;
+    }
+
+    private void renewLeases() {
         try {
-            if (!isPaused) {
-                List<MGWFileInfoDTO> uploadedFileList = MGWFileSourceDAO.getNextFilesToProcess(workerThreadCount);
-                for (MGWFileInfoDTO dto : uploadedFileList) {
-                    if (log.isDebugEnabled()) {
-                        log.info("Scheduled publishing micro-gateway API Usage data for : " + dto.getFileName());
-                    }
-                    Runnable worker = new MGWFileDataRetriever(dto);
-                    usagePublisherPool.execute(worker);
+            List<MGWFileInfoDTO> lostFiles = MGWFileSourceDAO.renewLeases(new ArrayList<>(filesInProgress.keySet()),
+                    System.currentTimeMillis() + leaseTimeout);
+            for (MGWFileInfoDTO dto : lostFiles) {
+                MGWFileDataRetriever dataRetriever = filesInProgress.get(dto);
+                if (dataRetriever != null) {
+                    log.error("Lease of the uploaded usage file : " + dto + " could not be renewed as its claim has "
+                            + "been lost. Stopped publishing the file.");
+                    dataRetriever.abort();
                 }
-            } else {
-                log.info("Paused publishing micro-gateway API Usage data ");
             }
-        } catch (MGWFileSourceException e) {
-            log.error("Error occurred while publishing micro-gateway API Usage data.", e);
+        } catch (MGWFileSourceException | RuntimeException e) {
+            log.error("Error occurred while renewing the lease of the uploaded usage files being processed.", e);
+        }
+    }
+
+    private void onFileCompleted(MGWFileInfoDTO dto) {
+        filesInProgress.remove(dto);
+        synchronized (this) {
+            if (backlogExists) {
+                backlogExists = false;
+                schedulePoll(0);
+            }
         }
     }
 
@@ -27,66 +27,162 @@ import org.wso2.carbon.databridge.commons.StreamDefinition;
 import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
 import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileSourceException;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 /**
  * Util Class for MGWFileDataRetriever.
  */
 public class FileDataRetrieverUtil {
 
-    private static volatile Map<String, JSONArray> streamDefinitions = new HashMap<>();
+    private static final Map<String, MGWFilePayloadDecoder> payloadDecoders = new ConcurrentHashMap<>();
+    private static final Pattern USAGE_DATA_ENTRY_PATTERN =
+            Pattern.compile(MGWFileSourceConstants.USAGE_DATA_ENTRY_REGEX);
 
+    /**
+     * Compiles the payload decoder of the given stream definition, which is used to decode all the events of the
+     * stream.
+     *
+     * @param streamDefinition definition of the stream
+     * @param streamId         id of the stream
+     * @throws MGWFileSourceException if the stream definition cannot be parsed
+     */
     public static void addStreamDefinition(StreamDefinition streamDefinition, String streamId) throws
             MGWFileSourceException {
         try {
             String jsonStr = streamDefinition.toString();
             JSONParser jsonParser = new JSONParser();
             JSONObject jsonObject = (JSONObject) jsonParser.parse(jsonStr);
-            streamDefinitions.put(streamId, (JSONArray) jsonObject.get("payloadData"));
-        } catch (ParseException e) {
+            JSONArray payloadData = (JSONArray) jsonObject.get("payloadData");
+            AttributeType[] attributeTypes = new AttributeType[payloadData == null ? 0 : payloadData.size()];
+            for (int i = 0; i < attributeTypes.length; i++) {
+                JSONObject attribute = (JSONObject) payloadData.get(i);
+                attributeTypes[i] = AttributeType.valueOf(attribute.get("type").toString());
+            }
+            addPayloadDecoder(streamId, attributeTypes);
+        } catch (ParseException | RuntimeException e) {
             throw new MGWFileSourceException("Error during parsing stream definition", e);
         }
     }
 
+    /**
+     * Registers the payload decoder of a stream with the given payload attribute types.
+     */
+    static void addPayloadDecoder(String streamId, AttributeType[] attributeTypes) {
+        payloadDecoders.put(streamId, new MGWFilePayloadDecoder(attributeTypes));
+    }
+
+    /**
+     * Checks whether an entry of an uploaded archive holds usage data. Directories of the entry name are ignored.
+     *
+     * @param entryName name of the archive entry
+     * @return true if the entry should be published
+     */
+    public static boolean isUsageDataEntry(String entryName) {
+        int nameBegin = Math.max(entryName.lastIndexOf('/'), entryName.lastIndexOf('\\')) + 1;
+        return USAGE_DATA_ENTRY_PATTERN.matcher(entryName.substring(nameBegin)).matches();
+    }
+
+    public static MGWFilePayloadDecoder getPayloadDecoder(String streamId) {
+        return payloadDecoders.get(streamId);
+    }
+
     public static Object createMetaData(String str) {
-        if (str.isEmpty() || "null".equals(str)) {
+        return createMetaData(str, 0, str.length());
+    }
+
+    /**
+     * Creates the meta or correlation data from the given region of a line.
+     *
+     * @param line  line read from the usage file
+     * @param begin begin index of the value, inclusive
+     * @param end   end index of the value, exclusive
+     * @return meta data or null if the value is empty or "null"
+     */
+    public static Object[] createMetaData(String line, int begin, int end) {
+        int length = end - begin;
+        if (length == 0 || (length == 4 && line.regionMatches(begin, "null", 0, 4))) {
             return null;
         }
-        return new Object[]{str};
+        return new Object[]{line.substring(begin, end)};
     }
 
     public static Object[] createPayload(String streamId, String str) throws NumberFormatException {
+        return createPayload(streamId, str, 0, str.length());
+    }
 
-        JSONArray jsonArray = streamDefinitions.get(streamId);
-        if (jsonArray != null) {
-            String[] strings = str.split(MGWFileSourceConstants.OBJECT_SEPARATOR);
-            Object[] objects = new Object[strings.length];
-            for (int i = 0; i < strings.length; i++) {
-                JSONObject obj = (JSONObject) jsonArray.get(i);
-                objects[i] = getPayloadObject(AttributeType.valueOf(obj.get("type").toString()), strings[i].trim());
-            }
-            return objects;
+    /**
+     * Creates the payload of an event from the given region of a line, without splitting it.
+     *
+     * @param streamId stream id of the event
+     * @param line     line read from the usage file
+     * @param begin    begin index of the payload, inclusive
+     * @param end      end index of the payload, exclusive
+     * @return payload typed according to the stream definition
+     * @throws NumberFormatException if a numeric attribute cannot be parsed
+     */
+    public static Object[] createPayload(String streamId, String line, int begin, int end)
+            throws NumberFormatException {
+
+        MGWFilePayloadDecoder payloadDecoder = payloadDecoders.get(streamId);
+        if (payloadDecoder != null) {
+            return payloadDecoder.decode(line, begin, end);
         }
         return new Object[0];
     }
 
     public static Object getPayloadObject(AttributeType type, String string) throws NumberFormatException {
-        if (string == null || string.isEmpty()) {
+        if (string == null) {
             return null;
         }
-        switch (type) {
-        case STRING:
-            return string;
-        case INT:
-            return Integer.parseInt(string);
-        case LONG:
-            return Long.parseLong(string);
-        case BOOL:
-            return Boolean.parseBoolean(string);
-        default:
-            return string;
+        return MGWFilePayloadDecoder.decodeValue(type, string, 0, string.length());
+    }
+
+    /**
+     * Parses a decimal int from the given region of a line without creating a substring.
+     */
+    public static int parseInt(String line, int begin, int end) throws NumberFormatException {
+        long value = parseLong(line, begin, end);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Value out of int range: \"" + line.substring(begin, end) + "\"");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses a decimal long from the given region of a line without creating a substring. Accepts the same input as
+     * {@link Long#parseLong(String)}.
+     */
+    public static long parseLong(String line, int begin, int end) throws NumberFormatException {
+        if (begin >= end) {
+            throw new NumberFormatException("Empty value cannot be parsed as a number");
+        }
+        boolean negative = false;
+        int i = begin;
+        char first = line.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++i == end) {
+                throw new NumberFormatException("For input string: \"" + line.substring(begin, end) + "\"");
+            }
+        }
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyLimit = limit / 10;
+        long result = 0;
+        // accumulate negatively to handle Long.MIN_VALUE, as done in Long.parseLong
+        for (; i < end; i++) {
+            int digit = line.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multiplyLimit) {
+                throw new NumberFormatException("For input string: \"" + line.substring(begin, end) + "\"");
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw new NumberFormatException("For input string: \"" + line.substring(begin, end) + "\"");
+            }
+            result -= digit;
         }
+        return negative ? result : -result;
     }
 
 }
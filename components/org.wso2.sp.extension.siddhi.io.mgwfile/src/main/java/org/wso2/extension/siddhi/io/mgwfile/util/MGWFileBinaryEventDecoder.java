@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decoder of the binary columnar usage file format, which is an alternative to the delimiter based text format.
+ * <pre>
+ * content   := magic("MGWB") version(1 byte) block*
+ * block     := length(varint) streamId(string) eventCount(varint) timestamps
+ *              columns(meta data) columns(correlation data) columns(payload data)
+ * timestamps:= eventCount x zigzag varint, each the difference to the previous timestamp, starting from 0
+ * columns   := columnCount(varint) column*
+ * column    := type(1 byte) presence(ceil(eventCount / 8) bytes, bit i set if event i has a value) values
+ * string    := length(varint) UTF-8 bytes
+ * </pre>
+ * Values are only written for the events which have a value, in event order.
+ * <ul>
+ * <li>STRING : dictionarySize(varint) dictionarySize x string, followed by a dictionary index (varint) per value</li>
+ * <li>INT, LONG : zigzag varint per value</li>
+ * <li>FLOAT, DOUBLE : 4 or 8 byte IEEE 754 big endian per value</li>
+ * <li>BOOL : ceil(valueCount / 8) bytes, bit i set if value i is true</li>
+ * </ul>
+ * Every block holds events of a single stream and is self contained, so that blocks are decoded independently and
+ * the content can be split on block boundaries. Payload columns must have the type of the corresponding attribute of
+ * the stream definition, except that INT and FLOAT columns are widened for LONG and DOUBLE attributes.
+ */
+public final class MGWFileBinaryEventDecoder {
+
+    public static final int HEADER_LENGTH = 5;
+    public static final int VERSION = 1;
+    private static final byte[] MAGIC = {'M', 'G', 'W', 'B'};
+    private static final int STRING = 0;
+    private static final int INT = 1;
+    private static final int LONG = 2;
+    private static final int FLOAT = 3;
+    private static final int DOUBLE = 4;
+    private static final int BOOL = 5;
+    // attribute type of each column type, indexed by the column type
+    private static final AttributeType[] ATTRIBUTE_TYPES = {AttributeType.STRING, AttributeType.INT,
+            AttributeType.LONG, AttributeType.FLOAT, AttributeType.DOUBLE, AttributeType.BOOL};
+
+    private MGWFileBinaryEventDecoder() {
+    }
+
+    /**
+     * Checks whether the given content starts with the magic header of the binary format.
+     *
+     * @param header first bytes of the content
+     * @param length number of bytes in the header, which may be less than {@link #HEADER_LENGTH}
+     * @return true if the content is in the binary format
+     */
+    public static boolean isBinaryFormat(byte[] header, int length) {
+        if (length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the version of the binary format of the given header.
+     */
+    public static int getVersion(byte[] header) {
+        return header[MAGIC.length] & 0xff;
+    }
+
+    /**
+     * Returns the length of the block starting at the given index, including its length prefix, or -1 if the length
+     * prefix is not completely available.
+     */
+    public static long getBlockLength(byte[] bytes, int begin, int limit) throws IllegalArgumentException {
+        long length = 0;
+        int position = begin;
+        for (int shift = 0; position < limit; shift += 7) {
+            if (shift > 28) {
+                throw new IllegalArgumentException("Invalid block length at index : " + begin);
+            }
+            byte b = bytes[position++];
+            length |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return position - begin + length;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes the events of a complete block.
+     *
+     * @param bytes content
+     * @param begin begin index of the block
+     * @param end   end index of the block, as given by {@link #getBlockLength}
+     * @return events of the block, all of which belong to the same stream
+     * @throws IllegalArgumentException if the block is corrupted or a payload column does not match the type of the
+     *                                  attribute of the stream
+     */
+    public static List<Event> decodeBlock(byte[] bytes, int begin, int end) throws IllegalArgumentException {
+        Reader reader = new Reader(bytes, begin, end);
+        reader.readVarLong();
+        String streamId = reader.readString();
+        int eventCount = reader.readCount();
+        long[] timeStamps = new long[eventCount];
+        long timeStamp = 0;
+        for (int i = 0; i < eventCount; i++) {
+            timeStamp += reader.readZigZag();
+            timeStamps[i] = timeStamp;
+        }
+        Column[] metaData = readColumns(reader, eventCount);
+        Column[] correlationData = readColumns(reader, eventCount);
+        Column[] payloadData = readColumns(reader, eventCount);
+        if (reader.position != end) {
+            throw new IllegalArgumentException("Block of stream : " + streamId + " has " + (end - reader.position)
+                    + " unexpected trailing bytes.");
+        }
+        MGWFilePayloadDecoder payloadDecoder = FileDataRetrieverUtil.getPayloadDecoder(streamId);
+        int payloadLength = payloadData.length;
+        if (payloadDecoder != null) {
+            payloadLength = payloadDecoder.getAttributeCount();
+            for (int i = 0; i < payloadLength && i < payloadData.length; i++) {
+                convertColumn(payloadData[i], payloadDecoder.getAttributeType(i), streamId, i);
+            }
+        }
+        List<Event> events = new ArrayList<>(eventCount);
+        for (int i = 0; i < eventCount; i++) {
+            events.add(new Event(streamId, timeStamps[i], getRow(metaData, i, metaData.length, true),
+                    getRow(correlationData, i, correlationData.length, true),
+                    getRow(payloadData, i, payloadLength, false)));
+        }
+        return events;
+    }
+
+    /**
+     * Returns the values of an event. Missing trailing columns are set to null and additional columns are ignored.
+     */
+    private static Object[] getRow(Column[] columns, int index, int length, boolean nullIfEmpty) {
+        if (length == 0 && nullIfEmpty) {
+            return null;
+        }
+        Object[] row = new Object[length];
+        for (int i = 0; i < length && i < columns.length; i++) {
+            row[i] = columns[i].values[index];
+        }
+        return row;
+    }
+
+    /**
+     * Converts the values of a payload column to the type of the corresponding attribute, if it can be done without
+     * losing precision.
+     *
+     * @throws IllegalArgumentException if the column cannot be converted to the type of the attribute
+     */
+    private static void convertColumn(Column column, AttributeType attributeType, String streamId, int index) {
+        AttributeType columnType = ATTRIBUTE_TYPES[column.type];
+        if (columnType == attributeType) {
+            return;
+        }
+        Object[] values = column.values;
+        if (attributeType == AttributeType.LONG && columnType == AttributeType.INT) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    values[i] = ((Integer) values[i]).longValue();
+                }
+            }
+        } else if (attributeType == AttributeType.DOUBLE && columnType == AttributeType.FLOAT) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    values[i] = ((Float) values[i]).doubleValue();
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Payload column " + index + " of stream : " + streamId + " is of type "
+                    + columnType + ", whereas the attribute is of type " + attributeType + ".");
+        }
+    }
+
+    private static Column[] readColumns(Reader reader, int eventCount) {
+        int columnCount = reader.readCount();
+        Column[] columns = new Column[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = readColumn(reader, eventCount);
+        }
+        return columns;
+    }
+
+    private static Column readColumn(Reader reader, int eventCount) {
+        int type = reader.readByte();
+        boolean[] present = reader.readBits(eventCount);
+        int valueCount = 0;
+        for (boolean p : present) {
+            if (p) {
+                valueCount++;
+            }
+        }
+        Object[] column = new Object[eventCount];
+        switch (type) {
+        case STRING:
+            String[] dictionary = new String[reader.readCount()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = reader.readString();
+            }
+            for (int i = 0; i < eventCount; i++) {
+                if (present[i]) {
+                    int entry = reader.readCount();
+                    if (entry >= dictionary.length) {
+                        throw new IllegalArgumentException("Invalid dictionary index : " + entry);
+                    }
+                    column[i] = dictionary[entry];
+                }
+            }
+            break;
+        case INT:
+            for (int i = 0; i < eventCount; i++) {
+                if (present[i]) {
+                    long value = reader.readZigZag();
+                    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                        throw new IllegalArgumentException("Value out of int range : " + value);
+                    }
+                    column[i] = (int) value;
+                }
+            }
+            break;
+        case LONG:
+            for (int i = 0; i < eventCount; i++) {
+                if (present[i]) {
+                    column[i] = reader.readZigZag();
+                }
+            }
+            break;
+        case FLOAT:
+            for (int i = 0; i < eventCount; i++) {
+                if (present[i]) {
+                    column[i] = Float.intBitsToFloat((int) reader.readFixed(4));
+                }
+            }
+            break;
+        case DOUBLE:
+            for (int i = 0; i < eventCount; i++) {
+                if (present[i]) {
+                    column[i] = Double.longBitsToDouble(reader.readFixed(8));
+                }
+            }
+            break;
+        case BOOL:
+            boolean[] values = reader.readBits(valueCount);
+            for (int i = 0, v = 0; i < eventCount; i++) {
+                if (present[i]) {
+                    column[i] = values[v++];
+                }
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown column type : " + type);
+        }
+        return new Column(type, column);
+    }
+
+    /**
+     * Values of a column of a block, one per event, which are null for the events without a value.
+     */
+    private static class Column {
+
+        private final int type;
+        private final Object[] values;
+
+        Column(int type, Object[] values) {
+            this.type = type;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Reads the primitive values of a block with bounds checks.
+     */
+    private static class Reader {
+
+        private final byte[] bytes;
+        private final int end;
+        private int position;
+
+        Reader(byte[] bytes, int begin, int end) {
+            this.bytes = bytes;
+            this.position = begin;
+            this.end = end;
+        }
+
+        int readByte() {
+            if (position >= end) {
+                throw new IllegalArgumentException("Unexpected end of block.");
+            }
+            return bytes[position++] & 0xff;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Varint is longer than 10 bytes.");
+        }
+
+        long readZigZag() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /**
+         * Reads a count or a length, which cannot exceed the remaining bytes of the block by more than 8 times, as
+         * the smallest value takes a single bit.
+         */
+        int readCount() {
+            long count = readVarLong();
+            if (count < 0 || count > 8L * (end - position)) {
+                throw new IllegalArgumentException("Invalid count : " + count);
+            }
+            return (int) count;
+        }
+
+        long readFixed(int length) {
+            long value = 0;
+            for (int i = 0; i < length; i++) {
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+
+        String readString() {
+            int length = readCount();
+            if (length > end - position) {
+                throw new IllegalArgumentException("String exceeds the block.");
+            }
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        boolean[] readBits(int count) {
+            boolean[] bits = new boolean[count];
+            for (int i = 0; i < count; i += 8) {
+                int b = readByte();
+                for (int j = 0; j < 8 && i + j < count; j++) {
+                    bits[i + j] = (b & (1 << j)) != 0;
+                }
+            }
+            return bits;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
+
+/**
+ * Tokenizer for the events persisted in the uploaded usage file. An event is persisted as a single line in the form of
+ * {@code streamId-KS-<id>-ES-timeStamp-KS-<time>-ES-metaData-KS-<meta>-ES-correlationData-KS-<correlation>-ES-
+ * payloadData-KS-<payload>}. Instead of splitting the line, the boundaries of each value are recorded in a single
+ * pass and the values are decoded directly from the line. An instance holds the state of the last tokenized line,
+ * hence it must not be shared between threads.
+ */
+public class MGWFileEventParser {
+
+    private static final int STREAM_ID = 0;
+    private static final int TIMESTAMP = 1;
+    private static final int META_DATA = 2;
+    private static final int CORRELATION_DATA = 3;
+    private static final int PAYLOAD_DATA = 4;
+    private static final int ELEMENT_COUNT = 5;
+
+    private final int[] valueBegin = new int[ELEMENT_COUNT];
+    private final int[] valueEnd = new int[ELEMENT_COUNT];
+    private String line;
+
+    /**
+     * Records the value boundaries of the given line.
+     *
+     * @param line line read from the usage file
+     * @return false if the line does not match with the expected event format
+     */
+    public boolean tokenize(String line) {
+        this.line = line;
+        int length = line.length();
+        int elementBegin = 0;
+        for (int i = 0; i < ELEMENT_COUNT; i++) {
+            if (elementBegin > length) {
+                return false;
+            }
+            int elementEnd = line.indexOf(MGWFileSourceConstants.EVENT_SEPARATOR, elementBegin);
+            if (elementEnd < 0) {
+                elementEnd = length;
+            }
+            int separator = line.indexOf(MGWFileSourceConstants.KEY_VALUE_SEPARATOR, elementBegin);
+            if (separator < 0 || separator >= elementEnd) {
+                return false;
+            }
+            valueBegin[i] = separator + MGWFileSourceConstants.KEY_VALUE_SEPARATOR.length();
+            valueEnd[i] = elementEnd;
+            elementBegin = elementEnd + MGWFileSourceConstants.EVENT_SEPARATOR.length();
+        }
+        return true;
+    }
+
+    public String getStreamId() {
+        return line.substring(valueBegin[STREAM_ID], valueEnd[STREAM_ID]);
+    }
+
+    public long getTimeStamp() throws NumberFormatException {
+        return FileDataRetrieverUtil.parseLong(line, valueBegin[TIMESTAMP], valueEnd[TIMESTAMP]);
+    }
+
+    public Object[] getMetaData() {
+        return FileDataRetrieverUtil.createMetaData(line, valueBegin[META_DATA], valueEnd[META_DATA]);
+    }
+
+    public Object[] getCorrelationData() {
+        return FileDataRetrieverUtil.createMetaData(line, valueBegin[CORRELATION_DATA], valueEnd[CORRELATION_DATA]);
+    }
+
+    public Object[] getPayloadData(String streamId) throws NumberFormatException {
+        return FileDataRetrieverUtil.createPayload(streamId, line, valueBegin[PAYLOAD_DATA], valueEnd[PAYLOAD_DATA]);
+    }
+
+    /**
+     * Decodes the last tokenized line into an {@link Event}.
+     *
+     * @param streamId stream id of the line, as returned by {@link #getStreamId()}
+     * @return the decoded event
+     * @throws NumberFormatException if a numeric value of the line cannot be parsed
+     */
+    public Event createEvent(String streamId) throws NumberFormatException {
+        return new Event(streamId, getTimeStamp(), getMetaData(), getCorrelationData(), getPayloadData(streamId));
+    }
+
+    @Override
+    public String toString() {
+        return line;
+    }
+}
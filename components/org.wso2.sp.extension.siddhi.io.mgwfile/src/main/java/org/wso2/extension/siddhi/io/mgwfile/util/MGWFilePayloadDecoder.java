@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
+
+/**
+ * Immutable decoder of the payload data of a single stream. The attribute types of the stream definition are resolved
+ * once when the stream is registered, so decoding an event only indexes into the attribute decoders.
+ */
+public final class MGWFilePayloadDecoder {
+
+    private static final AttributeDecoder STRING_DECODER = String::substring;
+    private static final AttributeDecoder INT_DECODER = FileDataRetrieverUtil::parseInt;
+    private static final AttributeDecoder LONG_DECODER = FileDataRetrieverUtil::parseLong;
+    private static final AttributeDecoder BOOL_DECODER =
+            (line, begin, end) -> end - begin == 4 && line.regionMatches(true, begin, "true", 0, 4);
+
+    private final AttributeType[] attributeTypes;
+    private final AttributeDecoder[] attributeDecoders;
+
+    public MGWFilePayloadDecoder(AttributeType[] attributeTypes) {
+        this.attributeTypes = attributeTypes.clone();
+        this.attributeDecoders = new AttributeDecoder[attributeTypes.length];
+        for (int i = 0; i < attributeTypes.length; i++) {
+            attributeDecoders[i] = getAttributeDecoder(attributeTypes[i]);
+        }
+    }
+
+    /**
+     * Decodes the payload in the given region of a line. Missing trailing attributes are set to null and attributes
+     * which are not in the stream definition are ignored.
+     *
+     * @param line  line read from the usage file
+     * @param begin begin index of the payload, inclusive
+     * @param end   end index of the payload, exclusive
+     * @return payload typed according to the stream definition
+     * @throws NumberFormatException if a numeric attribute cannot be parsed
+     */
+    public Object[] decode(String line, int begin, int end) throws NumberFormatException {
+        Object[] objects = new Object[attributeDecoders.length];
+        int separatorLength = MGWFileSourceConstants.OBJECT_SEPARATOR.length();
+        int objectBegin = begin;
+        for (int i = 0; i < objects.length && objectBegin <= end; i++) {
+            int objectEnd = line.indexOf(MGWFileSourceConstants.OBJECT_SEPARATOR, objectBegin);
+            if (objectEnd < 0 || objectEnd > end) {
+                objectEnd = end;
+            }
+            objects[i] = decodeAttribute(i, line, objectBegin, objectEnd);
+            objectBegin = objectEnd + separatorLength;
+        }
+        return objects;
+    }
+
+    /**
+     * Decodes the attribute at the given index from the given region of a line. Surrounding whitespaces are ignored.
+     *
+     * @return decoded value or null if the value is empty
+     */
+    public Object decodeAttribute(int index, String line, int begin, int end) throws NumberFormatException {
+        return decode(attributeDecoders[index], line, begin, end);
+    }
+
+    /**
+     * Decodes a value of the given type from the given region of a line. Surrounding whitespaces are ignored.
+     *
+     * @return decoded value or null if the value is empty
+     */
+    public static Object decodeValue(AttributeType type, String line, int begin, int end)
+            throws NumberFormatException {
+        return decode(getAttributeDecoder(type), line, begin, end);
+    }
+
+    private static Object decode(AttributeDecoder decoder, String line, int begin, int end)
+            throws NumberFormatException {
+        while (begin < end && line.charAt(begin) <= ' ') {
+            begin++;
+        }
+        while (end > begin && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (begin == end) {
+            return null;
+        }
+        return decoder.decode(line, begin, end);
+    }
+
+    public int getAttributeCount() {
+        return attributeTypes.length;
+    }
+
+    public AttributeType getAttributeType(int index) {
+        return attributeTypes[index];
+    }
+
+    private static AttributeDecoder getAttributeDecoder(AttributeType type) {
+        switch (type) {
+        case INT:
+            return INT_DECODER;
+        case LONG:
+            return LONG_DECODER;
+        case BOOL:
+            return BOOL_DECODER;
+        case STRING:
+        default:
+            return STRING_DECODER;
+        }
+    }
+
+    /**
+     * Converts a non empty region of a line to the value of an attribute.
+     */
+    interface AttributeDecoder {
+        Object decode(String line, int begin, int end) throws NumberFormatException;
+    }
+}
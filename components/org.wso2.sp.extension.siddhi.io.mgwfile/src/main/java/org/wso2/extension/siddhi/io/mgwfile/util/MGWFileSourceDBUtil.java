@@ -17,7 +17,6 @@
  */
 package org.wso2.extension.siddhi.io.mgwfile.util;
 
-import com.zaxxer.hikari.HikariDataSource;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -27,6 +26,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import javax.sql.DataSource;
 
 /**
@@ -37,6 +37,8 @@ public class MGWFileSourceDBUtil {
     private static final Log log = LogFactory.getLog(MGWFileSourceDBUtil.class);
 
     private static volatile DataSource dataSource = null;
+    private static volatile MGWFileSourceDialect dialect = null;
+    private static volatile boolean usageTableExists = false;
 
     /**
      * Utility method to get a new database connection.
@@ -110,8 +112,60 @@ public class MGWFileSourceDBUtil {
 
     }
 
-    public static void setDataSource(HikariDataSource dataSource) {
+    public static void setDataSource(DataSource dataSource) {
         MGWFileSourceDBUtil.dataSource = dataSource;
+        dialect = null;
+        usageTableExists = false;
+    }
+
+    /**
+     * Returns the dialect of the usage data source, which is resolved from the given connection on the first call.
+     *
+     * @param connection connection to the usage data source
+     * @return dialect of the usage data source
+     * @throws SQLException if the metadata of the connection cannot be read
+     */
+    public static MGWFileSourceDialect getDialect(Connection connection) throws SQLException {
+        MGWFileSourceDialect resolvedDialect = dialect;
+        if (resolvedDialect == null) {
+            resolvedDialect = MGWFileSourceDialect.resolve(connection.getMetaData());
+            dialect = resolvedDialect;
+            if (log.isDebugEnabled()) {
+                log.debug("Resolved the dialect of data source '" + getDatasourceName() + "' as " + resolvedDialect);
+            }
+        }
+        return resolvedDialect;
+    }
+
+    /**
+     * Check whether the usage table exists. Once the table is found, it is not checked again. An existing table must
+     * have all the columns used by this version.
+     *
+     * @param connection connection to the usage data source
+     * @return existence
+     * @throws SQLException if an error occurred while creating the statement or the table was created by an earlier
+     *                      version and is not upgraded
+     */
+    public static boolean isUsageTableExist(Connection connection) throws SQLException {
+        if (usageTableExists) {
+            return true;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(MGWFileSourceConstants.TABLE_EXISTENCE_SQL);
+        } catch (SQLException e) {
+            //  logging is not required here.
+            return false;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(MGWFileSourceConstants.TABLE_COLUMNS_EXISTENCE_SQL);
+        } catch (SQLException e) {
+            throw new SQLException("Table 'AM_USAGE_UPLOADED_FILES' in '" + getDatasourceName() + "' was created by "
+                    + "an earlier version and does not have the columns required to process the uploaded usage "
+                    + "files. Stop all the worker nodes, run the script of the database in "
+                    + MGWFileSourceConstants.UPGRADE_SCRIPTS_DIRECTORY + " and restart the nodes.", e);
+        }
+        usageTableExists = true;
+        return true;
     }
 
     public static String getDatasourceName() {
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
+/**
+ * Database specific behaviour of the usage table queries. The dialect is resolved once from the metadata of the
+ * usage data source and the dialect specific SQL is kept with it.
+ */
+public enum MGWFileSourceDialect {
+
+    MYSQL(MGWFileSourceConstants.CLAIM_NEXT_FILES_QUERY_MYSQL, false, true),
+    H2(MGWFileSourceConstants.CLAIM_NEXT_FILES_QUERY_H2, false, false),
+    POSTGRESQL(MGWFileSourceConstants.CLAIM_NEXT_FILES_QUERY_POSTGRESQL, true, false),
+    ORACLE(MGWFileSourceConstants.CLAIM_NEXT_FILES_QUERY_ORACLE, false, false),
+    MSSQL(MGWFileSourceConstants.CLAIM_NEXT_FILES_QUERY_MSSQL, false, false),
+    DB2(MGWFileSourceConstants.CLAIM_NEXT_FILES_QUERY_DEFAULT, false, false),
+    INFORMIX(MGWFileSourceConstants.CLAIM_NEXT_FILES_QUERY_INFORMIX, false, false),
+    DEFAULT(MGWFileSourceConstants.CLAIM_NEXT_FILES_QUERY_DEFAULT, false, false);
+
+    private final String claimNextFilesQuery;
+    private final boolean binaryContent;
+    private final boolean partitionDropSupported;
+
+    MGWFileSourceDialect(String claimNextFilesQuery, boolean binaryContent, boolean partitionDropSupported) {
+        this.claimNextFilesQuery = claimNextFilesQuery;
+        this.binaryContent = binaryContent;
+        this.partitionDropSupported = partitionDropSupported;
+    }
+
+    /**
+     * Resolves the dialect of a database.
+     *
+     * @param metaData metadata of a connection to the database
+     * @return dialect of the database
+     * @throws SQLException if the metadata cannot be read
+     */
+    public static MGWFileSourceDialect resolve(DatabaseMetaData metaData) throws SQLException {
+        String productName = metaData.getDatabaseProductName();
+        if (metaData.getDriverName().contains("Oracle")) {
+            return ORACLE;
+        } else if (productName.contains("Microsoft")) {
+            return MSSQL;
+        } else if (productName.contains("DB2")) {
+            return DB2;
+        } else if (productName.contains("Informix")) {
+            return INFORMIX;
+        } else if (productName.contains("PostgreSQL")) {
+            return POSTGRESQL;
+        } else if (productName.contains("H2")) {
+            return H2;
+        } else if (productName.contains("MySQL")) {
+            return MYSQL;
+        }
+        return DEFAULT;
+    }
+
+    public String getClaimNextFilesQuery() {
+        return claimNextFilesQuery;
+    }
+
+    /**
+     * Returns whether the file content is a binary column rather than a BLOB, e.g. PostgreSQL bytea, which does not
+     * support the getBlob operation.
+     */
+    public boolean isBinaryContent() {
+        return binaryContent;
+    }
+
+    public boolean isPartitionDropSupported() {
+        return partitionDropSupported;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceDS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Util class for keeping the content of the uploaded usage files in a local or shared directory instead of the
+ * database. Only the metadata of the files are kept in the database when the storage directory is configured.
+ */
+public class MGWFileStorageUtil {
+
+    private static final Log log = LogFactory.getLog(MGWFileStorageUtil.class);
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    /**
+     * Returns whether the content of the uploaded files is kept in the storage directory.
+     */
+    public static boolean isFileStorageEnabled() {
+        return StringUtils.isNotEmpty(MGWFileSourceDS.getFileStorageDirectory());
+    }
+
+    /**
+     * Moves the given file into the storage directory. The file becomes visible under its final name only once it is
+     * completely written, so that a node sharing the directory never reads a partially written file.
+     *
+     * @param fileName    name of the uploaded file
+     * @param contentFile file with the uploaded content
+     * @throws IOException if the file cannot be moved into the storage directory
+     */
+    public static void store(String fileName, Path contentFile) throws IOException {
+        move(contentFile, resolve(fileName));
+    }
+
+    /**
+     * Moves the given file into the given directory. The file becomes visible under its final name only once it is
+     * completely written.
+     *
+     * @param directory   directory to move the file into
+     * @param fileName    name of the file in the directory
+     * @param contentFile file to be moved
+     * @return path of the moved file
+     * @throws IOException if the file cannot be moved into the directory
+     */
+    public static Path moveInto(Path directory, String fileName, Path contentFile) throws IOException {
+        Path targetFile = resolve(directory, fileName);
+        move(contentFile, targetFile);
+        return targetFile;
+    }
+
+    private static void move(Path contentFile, Path targetFile) throws IOException {
+        Files.createDirectories(targetFile.getParent());
+        try {
+            Files.move(contentFile, targetFile, StandardCopyOption.ATOMIC_MOVE);
+            return;
+        } catch (AtomicMoveNotSupportedException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Copying " + contentFile + " into " + targetFile.getParent()
+                        + " as it is on a different file store.");
+            }
+        }
+        Path tempFile = Files.createTempFile(targetFile.getParent(), targetFile.getFileName().toString(),
+                TEMP_FILE_SUFFIX);
+        try {
+            Files.copy(contentFile, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(tempFile, targetFile, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        Files.deleteIfExists(contentFile);
+    }
+
+    /**
+     * Opens the stored content of the given file. Files which fit in a single mapping are memory-mapped, larger
+     * files are read through the file channel.
+     *
+     * @param fileName name of the uploaded file
+     * @return InputStream with the content of the file or null if the file is not in the storage directory
+     * @throws IOException if the file cannot be read
+     */
+    public static InputStream open(String fileName) throws IOException {
+        Path storedFile = resolve(fileName);
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(storedFile, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            return Channels.newInputStream(channel);
+        }
+        try {
+            return new MappedFileInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } finally {
+            // the mapping remains valid after the channel is closed
+            channel.close();
+        }
+    }
+
+    /**
+     * Deletes the stored content of the given file, if present.
+     *
+     * @param fileName name of the uploaded file
+     */
+    public static void delete(String fileName) {
+        try {
+            Files.deleteIfExists(resolve(fileName));
+        } catch (IOException e) {
+            log.warn("Failed to delete the stored usage file : " + fileName, e);
+        }
+    }
+
+    private static Path resolve(String fileName) throws IOException {
+        return resolve(Paths.get(MGWFileSourceDS.getFileStorageDirectory()), fileName);
+    }
+
+    private static Path resolve(Path directory, String fileName) throws IOException {
+        Path normalizedDirectory = directory.toAbsolutePath().normalize();
+        Path file = normalizedDirectory.resolve(fileName).normalize();
+        if (!normalizedDirectory.equals(file.getParent())) {
+            throw new IOException("Invalid usage file name : " + fileName);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link InputStream} over a memory-mapped file. Reads are served from the page cache without copying the content
+ * through an intermediate channel buffer. The mapping is released when the buffer is garbage collected.
+ */
+public class MappedFileInputStream extends InputStream {
+
+    private ByteBuffer buffer;
+
+    public MappedFileInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() throws IOException {
+        ByteBuffer content = getBuffer();
+        if (!content.hasRemaining()) {
+            return -1;
+        }
+        return content.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        ByteBuffer content = getBuffer();
+        if (length == 0) {
+            return 0;
+        }
+        if (!content.hasRemaining()) {
+            return -1;
+        }
+        int count = Math.min(length, content.remaining());
+        content.get(bytes, offset, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        ByteBuffer content = getBuffer();
+        int skipped = (int) Math.max(0, Math.min(count, content.remaining()));
+        content.position(content.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return getBuffer().remaining();
+    }
+
+    @Override
+    public void close() {
+        buffer = null;
+    }
+
+    private ByteBuffer getBuffer() throws IOException {
+        if (buffer == null) {
+            throw new IOException("Stream is closed.");
+        }
+        return buffer;
+    }
+}
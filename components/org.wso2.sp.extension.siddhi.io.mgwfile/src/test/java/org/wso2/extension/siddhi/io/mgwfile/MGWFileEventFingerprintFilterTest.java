@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.commons.Event;
+
+/**
+ * Tests of {@link MGWFileEventFingerprintFilter}.
+ */
+public class MGWFileEventFingerprintFilterTest {
+
+    private static final String STREAM_ID = "org.wso2.test.Request:1.0.0";
+
+    @Test
+    public void testReplayIsDropped() {
+        MGWFileEventFingerprintFilter filter = new MGWFileEventFingerprintFilter(60000, 1000);
+        Assert.assertTrue(filter.add(event(1L, "GET", 200, 1.5)));
+        Assert.assertFalse(filter.add(event(1L, "GET", 200, 1.5)));
+        Assert.assertFalse(filter.add(event(1L, "GET", 200, 1.5)));
+    }
+
+    @Test
+    public void testDistinctEventsAreKept() {
+        MGWFileEventFingerprintFilter filter = new MGWFileEventFingerprintFilter(60000, 1000);
+        Assert.assertTrue(filter.add(event(1L, "GET", 200, 1.5)));
+        Assert.assertTrue(filter.add(event(2L, "GET", 200, 1.5)));
+        Assert.assertTrue(filter.add(event(1L, "POST", 200, 1.5)));
+        Assert.assertTrue(filter.add(event(1L, "GET", 201, 1.5)));
+        Assert.assertTrue(filter.add(event(1L, "GET", 200, 2.5)));
+        Assert.assertTrue(filter.add(event(1L, "GET", 200, null)));
+        Assert.assertTrue(filter.add(new Event("org.wso2.test.Other:1.0.0", 1L, null, null,
+                new Object[]{"GET", 200, 1.5})));
+        Assert.assertTrue(filter.add(new Event(STREAM_ID, 1L, new Object[]{"meta"}, null,
+                new Object[]{"GET", 200, 1.5})));
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        int eventCount = 100000;
+        MGWFileEventFingerprintFilter filter = new MGWFileEventFingerprintFilter(60000, eventCount);
+        int dropped = 0;
+        for (int i = 0; i < eventCount; i++) {
+            if (!filter.add(event(i, "GET", i % 7, (double) i))) {
+                dropped++;
+            }
+        }
+        // about one in a million is expected, hence a few are tolerated
+        Assert.assertTrue(dropped <= 3, "Dropped " + dropped + " distinct events.");
+    }
+
+    @Test
+    public void testWindowExpiry() throws InterruptedException {
+        MGWFileEventFingerprintFilter filter = new MGWFileEventFingerprintFilter(100, 1000);
+        Assert.assertTrue(filter.add(event(1L, "GET", 200, 1.5)));
+        // a fingerprint is remembered for at most two windows
+        Thread.sleep(250);
+        Assert.assertTrue(filter.add(event(1L, "GET", 200, 1.5)));
+        Assert.assertFalse(filter.add(event(1L, "GET", 200, 1.5)));
+    }
+
+    private static Event event(long timeStamp, String method, int status, Double latency) {
+        return new Event(STREAM_ID, timeStamp, null, null, new Object[]{method, status, latency});
+    }
+}
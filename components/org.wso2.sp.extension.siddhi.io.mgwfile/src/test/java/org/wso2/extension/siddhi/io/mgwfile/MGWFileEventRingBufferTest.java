@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests of {@link MGWFileEventRingBuffer}.
+ */
+public class MGWFileEventRingBufferTest {
+
+    @Test
+    public void testCapacity() {
+        Assert.assertEquals(new MGWFileEventRingBuffer<>(0).capacity(), 2);
+        Assert.assertEquals(new MGWFileEventRingBuffer<>(4).capacity(), 4);
+        Assert.assertEquals(new MGWFileEventRingBuffer<>(5).capacity(), 8);
+    }
+
+    @Test
+    public void testOfferAndPoll() {
+        MGWFileEventRingBuffer<Integer> ringBuffer = new MGWFileEventRingBuffer<>(4);
+        Assert.assertTrue(ringBuffer.isEmpty());
+        Assert.assertNull(ringBuffer.poll());
+        // wrap around the buffer a few times
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                Assert.assertEquals(ringBuffer.offer(i), round * 4L + i);
+            }
+            Assert.assertEquals(ringBuffer.offer(4), -1);
+            Assert.assertEquals(ringBuffer.size(), 4);
+            for (int i = 0; i < 4; i++) {
+                Assert.assertEquals(ringBuffer.poll(), Integer.valueOf(i));
+            }
+            Assert.assertNull(ringBuffer.poll());
+            Assert.assertEquals(ringBuffer.getHead(), (round + 1) * 4L);
+        }
+    }
+
+    @Test(timeOut = 30000)
+    public void testConcurrentProducers() throws InterruptedException {
+        int producerCount = 4;
+        int elementCount = 100000;
+        MGWFileEventRingBuffer<Integer> ringBuffer = new MGWFileEventRingBuffer<>(64);
+        ExecutorService producers = Executors.newFixedThreadPool(producerCount);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int p = 0; p < producerCount; p++) {
+            int producer = p;
+            producers.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < elementCount; i++) {
+                    while (ringBuffer.offer(producer * elementCount + i) < 0) {
+                        Thread.yield();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        List<List<Integer>> received = new ArrayList<>();
+        for (int p = 0; p < producerCount; p++) {
+            received.add(new ArrayList<>());
+        }
+        for (int count = 0; count < producerCount * elementCount; ) {
+            Integer element = ringBuffer.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            received.get(element / elementCount).add(element % elementCount);
+            count++;
+        }
+        producers.shutdown();
+        Assert.assertTrue(producers.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(ringBuffer.isEmpty());
+        // the elements of each producer are received once and in order
+        for (List<Integer> elements : received) {
+            Assert.assertEquals(elements.size(), elementCount);
+            for (int i = 0; i < elementCount; i++) {
+                Assert.assertEquals(elements.get(i).intValue(), i);
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile;
+
+import io.siddhi.core.stream.input.source.SourceEventListener;
+import io.siddhi.query.api.definition.StreamDefinition;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tests of the overflow policies of {@link MGWFileStreamConsumer}.
+ */
+public class MGWFileStreamConsumerTest {
+
+    private static final String STREAM_ID = "org.wso2.test.Request:1.0.0";
+
+    @Test(timeOut = 30000)
+    public void testBlockPolicy() throws Exception {
+        RecordingEventListener eventListener = new RecordingEventListener();
+        MGWFileStreamConsumer consumer = new MGWFileStreamConsumer(STREAM_ID, eventListener, 2,
+                MGWFileStreamConsumer.OverflowPolicy.BLOCK);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Assert.assertEquals(consumer.publish("a", 1), 0);
+            Assert.assertEquals(consumer.publish("b", 1), 1);
+            // the buffer is full and not consumed, hence the producer waits
+            Future<Long> blockedPublish = executor.submit(() -> consumer.publish("c", 1));
+            try {
+                blockedPublish.get(200, TimeUnit.MILLISECONDS);
+                Assert.fail("Published to a full buffer with the BLOCK policy.");
+            } catch (TimeoutException e) {
+                // expected
+            }
+            new Thread(consumer).start();
+            long position = blockedPublish.get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(position, 2);
+            consumer.awaitDelivery(position);
+            Assert.assertEquals(eventListener.events.toArray(), new Object[]{"a", "b", "c"});
+            Assert.assertEquals(consumer.getDroppedEventCount(), 0);
+        } finally {
+            consumer.stop();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeOut = 30000)
+    public void testDropPolicy() throws Exception {
+        RecordingEventListener eventListener = new RecordingEventListener();
+        MGWFileStreamConsumer consumer = new MGWFileStreamConsumer(STREAM_ID, eventListener, 2,
+                MGWFileStreamConsumer.OverflowPolicy.DROP);
+        try {
+            Assert.assertEquals(consumer.publish("a", 1), 0);
+            Assert.assertEquals(consumer.publish("b", 1), 1);
+            Assert.assertEquals(consumer.publish("c", 5), -1);
+            Assert.assertEquals(consumer.publish("d", 2), -1);
+            Assert.assertEquals(consumer.getDroppedEventCount(), 7);
+            Assert.assertEquals(consumer.getQueueDepth(), 2);
+            new Thread(consumer).start();
+            consumer.awaitDelivery(1);
+            Assert.assertEquals(eventListener.events.toArray(), new Object[]{"a", "b"});
+        } finally {
+            consumer.stop();
+        }
+    }
+
+    @Test(timeOut = 30000)
+    public void testStoppedConsumerDoesNotBlock() throws Exception {
+        MGWFileStreamConsumer consumer = new MGWFileStreamConsumer(STREAM_ID, new RecordingEventListener(), 2,
+                MGWFileStreamConsumer.OverflowPolicy.BLOCK);
+        consumer.publish("a", 1);
+        consumer.publish("b", 1);
+        consumer.stop();
+        Assert.assertEquals(consumer.publish("c", 1), -1);
+        Assert.assertEquals(consumer.getDroppedEventCount(), 1);
+        // waiting for the delivery of a stopped consumer returns immediately
+        consumer.awaitDelivery(0);
+    }
+
+    /**
+     * Event listener which records the delivered events.
+     */
+    private static class RecordingEventListener implements SourceEventListener {
+
+        private final List<Object> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public StreamDefinition getStreamDefinition() {
+            return null;
+        }
+
+        @Override
+        public void onEvent(Object eventObject, Object[] transportProperties) {
+            events.add(eventObject);
+        }
+
+        @Override
+        public void onEvent(Object eventObject, String[] transportProperties) {
+            events.add(eventObject);
+        }
+
+        @Override
+        public void onEvent(Object eventObject, Object[] transportProperties, String[] transportSyncProperties) {
+            events.add(eventObject);
+        }
+
+        @Override
+        public void onEvent(Object eventObject, String[] transportProperties, String[] transportSyncProperties) {
+            events.add(eventObject);
+        }
+    }
+}
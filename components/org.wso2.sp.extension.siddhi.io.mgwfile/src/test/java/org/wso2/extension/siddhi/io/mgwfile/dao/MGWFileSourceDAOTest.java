@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.dao;
+
+import org.apache.commons.io.IOUtils;
+import org.h2.jdbcx.JdbcDataSource;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
+import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileInfoDTO;
+import org.wso2.extension.siddhi.io.mgwfile.dto.MGWFileStatisticsDTO;
+import org.wso2.extension.siddhi.io.mgwfile.exception.MGWFileClaimLostException;
+import org.wso2.extension.siddhi.io.mgwfile.util.MGWFileSourceDBUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests of the claim and lease queries of {@link MGWFileSourceDAO} against an in-memory H2 database created with a
+ * copy of the H2 script shipped with the product.
+ */
+public class MGWFileSourceDAOTest {
+
+    private static final String H2_SCRIPT = "sql/h2.sql";
+    private static final long LEASE_TIMEOUT = 60000;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private Connection keepAliveConnection;
+
+    @BeforeClass
+    public void createTable() throws IOException, SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:mgwfile_dao_test;DB_CLOSE_DELAY=-1");
+        // the in-memory database is kept while a connection is open
+        keepAliveConnection = dataSource.getConnection();
+        String script;
+        try (InputStream scriptStream = getClass().getClassLoader().getResourceAsStream(H2_SCRIPT)) {
+            Assert.assertNotNull(scriptStream, "Cannot find the H2 script : " + H2_SCRIPT);
+            script = IOUtils.toString(scriptStream, StandardCharsets.UTF_8);
+        }
+        try (Statement statement = keepAliveConnection.createStatement()) {
+            for (String sql : script.split(";")) {
+                if (!sql.trim().isEmpty()) {
+                    statement.execute(sql);
+                }
+            }
+        }
+        MGWFileSourceDBUtil.setDataSource(dataSource);
+    }
+
+    @AfterClass
+    public void dropTable() throws SQLException {
+        MGWFileSourceDBUtil.setDataSource(null);
+        keepAliveConnection.close();
+    }
+
+    @BeforeMethod
+    public void clearTable() throws SQLException {
+        try (Statement statement = keepAliveConnection.createStatement()) {
+            statement.executeUpdate("DELETE FROM AM_USAGE_UPLOADED_FILES");
+        }
+    }
+
+    @Test
+    public void testClaimInUploadOrder() throws Exception {
+        upload("file-2", 2000);
+        upload("file-1", 1000);
+        upload("file-3", 3000);
+        List<MGWFileInfoDTO> claimed = MGWFileSourceDAO.getNextFilesToProcess(2, LEASE_TIMEOUT, MAX_ATTEMPTS);
+        Assert.assertEquals(getFileNames(claimed), Arrays.asList("file-1", "file-2"));
+        Assert.assertNotNull(claimed.get(0).getClaimId());
+        Assert.assertEquals(claimed.get(0).getClaimId(), claimed.get(1).getClaimId());
+        List<MGWFileInfoDTO> next = MGWFileSourceDAO.getNextFilesToProcess(2, LEASE_TIMEOUT, MAX_ATTEMPTS);
+        Assert.assertEquals(getFileNames(next), Collections.singletonList("file-3"));
+        Assert.assertNotEquals(next.get(0).getClaimId(), claimed.get(0).getClaimId());
+        Assert.assertTrue(MGWFileSourceDAO.getNextFilesToProcess(2, LEASE_TIMEOUT, MAX_ATTEMPTS).isEmpty());
+        assertStatistics(0, 3, 0, 0);
+    }
+
+    @Test
+    public void testProgressAndCompletion() throws Exception {
+        upload("file-1", 1000);
+        MGWFileInfoDTO dto = claimSingle(LEASE_TIMEOUT);
+        Assert.assertEquals(dto.getEntryIndex(), 0);
+        Assert.assertEquals(dto.getOffset(), 0);
+        try (Connection connection = MGWFileSourceDBUtil.getConnection()) {
+            MGWFileSourceDAO.updateOffset(connection, dto, 1, 4096);
+            Assert.assertEquals(getColumn("file-1", "FILE_ENTRY"), 1L);
+            Assert.assertEquals(getColumn("file-1", "FILE_OFFSET"), 4096L);
+            MGWFileSourceDAO.updateCompletion(connection, dto);
+        }
+        assertStatistics(0, 0, 1, 0);
+        Assert.assertTrue(MGWFileSourceDAO.getNextFilesToProcess(1, LEASE_TIMEOUT, MAX_ATTEMPTS).isEmpty());
+    }
+
+    @Test
+    public void testExpiredLeaseIsReclaimedWithProgress() throws Exception {
+        upload("file-1", 1000);
+        MGWFileInfoDTO expired = claimSingle(-1000);
+        try (Connection connection = MGWFileSourceDBUtil.getConnection()) {
+            MGWFileSourceDAO.updateOffset(connection, expired, 2, 100);
+        }
+        MGWFileInfoDTO reclaimed = claimSingle(LEASE_TIMEOUT);
+        Assert.assertNotEquals(reclaimed.getClaimId(), expired.getClaimId());
+        Assert.assertEquals(reclaimed.getEntryIndex(), 2);
+        Assert.assertEquals(reclaimed.getOffset(), 100);
+        Assert.assertEquals(getColumn("file-1", "ATTEMPT_COUNT"), 2L);
+        // the node which lost the claim can no longer update the file
+        try (Connection connection = MGWFileSourceDBUtil.getConnection()) {
+            try {
+                MGWFileSourceDAO.updateOffset(connection, expired, 3, 0);
+                Assert.fail("Updated the offset of a file whose claim was lost.");
+            } catch (MGWFileClaimLostException e) {
+                // expected
+            }
+            try {
+                MGWFileSourceDAO.updateCompletion(connection, expired);
+                Assert.fail("Completed a file whose claim was lost.");
+            } catch (MGWFileClaimLostException e) {
+                // expected
+            }
+        }
+        Assert.assertEquals(getColumn("file-1", "FILE_ENTRY"), 2L);
+        assertStatistics(0, 1, 0, 0);
+    }
+
+    @Test
+    public void testRenewLeases() throws Exception {
+        upload("file-1", 1000);
+        upload("file-2", 2000);
+        List<MGWFileInfoDTO> claimed = MGWFileSourceDAO.getNextFilesToProcess(2, -1000, MAX_ATTEMPTS);
+        Assert.assertEquals(claimed.size(), 2);
+        long leaseExpiry = System.currentTimeMillis() + LEASE_TIMEOUT;
+        MGWFileInfoDTO lost = new MGWFileInfoDTO("file-2", 2000, 0, 0, "another-claim");
+        List<MGWFileInfoDTO> lostFiles = MGWFileSourceDAO.renewLeases(Arrays.asList(claimed.get(0), lost),
+                leaseExpiry);
+        Assert.assertEquals(lostFiles, Collections.singletonList(lost));
+        // the renewed file is kept, while the other one is reclaimed
+        List<MGWFileInfoDTO> reclaimed = MGWFileSourceDAO.getNextFilesToProcess(2, LEASE_TIMEOUT, MAX_ATTEMPTS);
+        Assert.assertEquals(getFileNames(reclaimed), Collections.singletonList("file-2"));
+    }
+
+    @Test
+    public void testFailedFileIsParked() throws Exception {
+        upload("file-1", 1000);
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            claimSingle(-1000);
+        }
+        Assert.assertTrue(MGWFileSourceDAO.getNextFilesToProcess(1, LEASE_TIMEOUT, MAX_ATTEMPTS).isEmpty());
+        Assert.assertEquals(getColumn("file-1", "FILE_PROCESSED"), 3L);
+        assertStatistics(0, 0, 0, 1);
+    }
+
+    @Test
+    public void testDuplicateContentIsSkipped() throws Exception {
+        Assert.assertTrue(upload("file-1", 1000));
+        MGWFileInfoDTO duplicate = new MGWFileInfoDTO("file-2", 2000);
+        duplicate.setContentHash("hash-file-1");
+        Assert.assertFalse(MGWFileSourceDAO.persistUploadedFile(duplicate, new ByteArrayInputStream(new byte[1])));
+        MGWFileInfoDTO published = new MGWFileInfoDTO("file-3", 3000);
+        published.setContentHash("hash-file-1");
+        Assert.assertFalse(MGWFileSourceDAO.persistPublishedFile(published));
+        assertStatistics(1, 0, 0, 0);
+    }
+
+    @Test
+    public void testDefaultClaimQuery() throws Exception {
+        upload("file-2", 2000);
+        upload("file-1", 1000);
+        try (Connection connection = MGWFileSourceDBUtil.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     MGWFileSourceConstants.CLAIM_NEXT_FILES_QUERY_DEFAULT)) {
+            statement.setString(1, "default-claim");
+            statement.setTimestamp(2, new Timestamp(System.currentTimeMillis() + LEASE_TIMEOUT));
+            statement.setInt(3, 1);
+            Assert.assertEquals(statement.executeUpdate(), 1);
+        }
+        Assert.assertEquals(getColumn("file-1", "FILE_PROCESSED"), 1L);
+        Assert.assertEquals(getColumn("file-2", "FILE_PROCESSED"), 0L);
+    }
+
+    private static boolean upload(String fileName, long timeStamp) throws Exception {
+        MGWFileInfoDTO dto = new MGWFileInfoDTO(fileName, timeStamp);
+        dto.setContentHash("hash-" + fileName);
+        return MGWFileSourceDAO.persistUploadedFile(dto,
+                new ByteArrayInputStream(fileName.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MGWFileInfoDTO claimSingle(long leaseTimeout) throws Exception {
+        List<MGWFileInfoDTO> claimed = MGWFileSourceDAO.getNextFilesToProcess(1, leaseTimeout, MAX_ATTEMPTS);
+        Assert.assertEquals(claimed.size(), 1);
+        return claimed.get(0);
+    }
+
+    private static List<String> getFileNames(List<MGWFileInfoDTO> dtos) {
+        String[] fileNames = new String[dtos.size()];
+        for (int i = 0; i < fileNames.length; i++) {
+            fileNames[i] = dtos.get(i).getFileName();
+        }
+        return Arrays.asList(fileNames);
+    }
+
+    private long getColumn(String fileName, String column) throws SQLException {
+        try (PreparedStatement statement = keepAliveConnection.prepareStatement(
+                "SELECT " + column + " FROM AM_USAGE_UPLOADED_FILES WHERE FILE_NAME=?")) {
+            statement.setString(1, fileName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                Assert.assertTrue(resultSet.next());
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
+    private static void assertStatistics(long pending, long inProgress, long completed, long failed)
+            throws Exception {
+        MGWFileStatisticsDTO statistics = MGWFileSourceDAO.getFileStatistics();
+        Assert.assertEquals(statistics.getPendingFileCount(), pending);
+        Assert.assertEquals(statistics.getInProgressFileCount(), inProgress);
+        Assert.assertEquals(statistics.getCompletedFileCount(), completed);
+        Assert.assertEquals(statistics.getFailedFileCount(), failed);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Round trip tests of {@link MGWFileBinaryEventDecoder} with content produced by {@link MGWFileBinaryEventEncoder}.
+ */
+public class MGWFileBinaryEventDecoderTest {
+
+    private static final String STREAM_ID = "org.wso2.test.Request:1.0.0";
+    private static final String WIDENED_STREAM_ID = "org.wso2.test.Widened:1.0.0";
+    private static final String UNKNOWN_STREAM_ID = "org.wso2.test.Unknown:1.0.0";
+
+    @BeforeClass
+    public void registerStreams() {
+        FileDataRetrieverUtil.addPayloadDecoder(STREAM_ID, new AttributeType[]{AttributeType.STRING,
+                AttributeType.INT, AttributeType.LONG, AttributeType.FLOAT, AttributeType.DOUBLE, AttributeType.BOOL});
+        FileDataRetrieverUtil.addPayloadDecoder(WIDENED_STREAM_ID,
+                new AttributeType[]{AttributeType.LONG, AttributeType.DOUBLE});
+    }
+
+    @Test
+    public void testHeader() {
+        byte[] content = new MGWFileBinaryEventEncoder().toByteArray();
+        Assert.assertEquals(content.length, MGWFileBinaryEventDecoder.HEADER_LENGTH);
+        Assert.assertTrue(MGWFileBinaryEventDecoder.isBinaryFormat(content, content.length));
+        Assert.assertEquals(MGWFileBinaryEventDecoder.getVersion(content), MGWFileBinaryEventDecoder.VERSION);
+        Assert.assertFalse(MGWFileBinaryEventDecoder.isBinaryFormat(content, 3));
+        Assert.assertFalse(MGWFileBinaryEventDecoder.isBinaryFormat("streamId".getBytes(), 8));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        List<Event> events = Arrays.asList(
+                new Event(STREAM_ID, 1580000000000L, new Object[]{"meta", 1}, null,
+                        new Object[]{"GET", 200, 12L, 1.5f, 2.25, true}),
+                new Event(STREAM_ID, 1579999999000L, new Object[]{"meta", null}, null,
+                        new Object[]{"GET", -1, Long.MIN_VALUE, -0.5f, Double.MAX_VALUE, false}),
+                new Event(STREAM_ID, 1580000001000L, new Object[]{"other", Integer.MAX_VALUE}, null,
+                        new Object[]{null, null, null, null, null, null}),
+                new Event(STREAM_ID, 1580000001000L, new Object[]{"other", 3}, null,
+                        new Object[]{"\u00fcnicode", 0, Long.MAX_VALUE, Float.NaN, -0.0, true}));
+        List<Event> decoded = decode(new MGWFileBinaryEventEncoder().addBlock(events).toByteArray()).get(0);
+        Assert.assertEquals(decoded.size(), events.size());
+        for (int i = 0; i < events.size(); i++) {
+            Event expected = events.get(i);
+            Event actual = decoded.get(i);
+            Assert.assertEquals(actual.getStreamId(), STREAM_ID);
+            Assert.assertEquals(actual.getTimeStamp(), expected.getTimeStamp());
+            Assert.assertEquals(actual.getMetaData(), expected.getMetaData());
+            Assert.assertNull(actual.getCorrelationData());
+            Assert.assertEquals(actual.getPayloadData(), expected.getPayloadData());
+        }
+    }
+
+    @Test
+    public void testMultipleBlocks() {
+        byte[] content = new MGWFileBinaryEventEncoder()
+                .addBlock(Collections.singletonList(new Event(STREAM_ID, 1L, null, null,
+                        new Object[]{"a", 1, 1L, 1f, 1d, true})))
+                .addBlock(Collections.singletonList(new Event(WIDENED_STREAM_ID, 2L, null, null,
+                        new Object[]{2L, 2d})))
+                .toByteArray();
+        List<List<Event>> blocks = decode(content);
+        Assert.assertEquals(blocks.size(), 2);
+        Assert.assertEquals(blocks.get(0).get(0).getStreamId(), STREAM_ID);
+        Assert.assertEquals(blocks.get(1).get(0).getStreamId(), WIDENED_STREAM_ID);
+        Assert.assertEquals(blocks.get(1).get(0).getPayloadData(), new Object[]{2L, 2d});
+    }
+
+    @Test
+    public void testWidening() {
+        List<Event> events = Collections.singletonList(new Event(WIDENED_STREAM_ID, 1L, null, null,
+                new Object[]{7, 0.5f}));
+        Event decoded = decode(new MGWFileBinaryEventEncoder().addBlock(events).toByteArray()).get(0).get(0);
+        Assert.assertEquals(decoded.getPayloadData(), new Object[]{7L, 0.5d});
+    }
+
+    @Test
+    public void testMissingAndAdditionalColumns() {
+        Event missing = decode(new MGWFileBinaryEventEncoder().addBlock(Collections.singletonList(
+                new Event(WIDENED_STREAM_ID, 1L, null, null, new Object[]{7L}))).toByteArray()).get(0).get(0);
+        Assert.assertEquals(missing.getPayloadData(), new Object[]{7L, null});
+        Event additional = decode(new MGWFileBinaryEventEncoder().addBlock(Collections.singletonList(
+                new Event(WIDENED_STREAM_ID, 1L, null, null, new Object[]{7L, 1d, "x"}))).toByteArray()).get(0).get(0);
+        Assert.assertEquals(additional.getPayloadData(), new Object[]{7L, 1d});
+    }
+
+    @Test
+    public void testUnknownStream() {
+        Event decoded = decode(new MGWFileBinaryEventEncoder().addBlock(Collections.singletonList(
+                new Event(UNKNOWN_STREAM_ID, 1L, null, null, new Object[]{7, "x"}))).toByteArray()).get(0).get(0);
+        Assert.assertEquals(decoded.getPayloadData(), new Object[]{7, "x"});
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMismatchedColumnType() {
+        decode(new MGWFileBinaryEventEncoder().addBlock(Collections.singletonList(
+                new Event(STREAM_ID, 1L, null, null, new Object[]{"GET", "200", 1L, 1f, 1d, true}))).toByteArray());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNarrowingColumnType() {
+        decode(new MGWFileBinaryEventEncoder().addBlock(Collections.singletonList(
+                new Event(STREAM_ID, 1L, null, null, new Object[]{"GET", 200L, 1L, 1f, 1d, true}))).toByteArray());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTruncatedBlock() {
+        byte[] block = MGWFileBinaryEventEncoder.encodeBlock(Collections.singletonList(
+                new Event(STREAM_ID, 1L, null, null, new Object[]{"GET", 200, 1L, 1f, 1d, true})));
+        byte[] content = new MGWFileBinaryEventEncoder().toByteArray();
+        byte[] truncated = Arrays.copyOf(block, block.length - 1);
+        byte[] bytes = new byte[content.length + 1 + truncated.length];
+        System.arraycopy(content, 0, bytes, 0, content.length);
+        bytes[content.length] = (byte) block.length;
+        System.arraycopy(truncated, 0, bytes, content.length + 1, truncated.length);
+        MGWFileBinaryEventDecoder.decodeBlock(bytes, content.length, bytes.length);
+    }
+
+    @Test
+    public void testIncompleteLengthPrefix() {
+        byte[] bytes = {(byte) 0x80};
+        Assert.assertEquals(MGWFileBinaryEventDecoder.getBlockLength(bytes, 0, bytes.length), -1);
+    }
+
+    /**
+     * Decodes all the blocks of the given content.
+     */
+    private static List<List<Event>> decode(byte[] content) {
+        List<List<Event>> blocks = new ArrayList<>();
+        int position = MGWFileBinaryEventDecoder.HEADER_LENGTH;
+        while (position < content.length) {
+            long length = MGWFileBinaryEventDecoder.getBlockLength(content, position, content.length);
+            Assert.assertTrue(length > 0 && position + length <= content.length);
+            blocks.add(MGWFileBinaryEventDecoder.decodeBlock(content, position, (int) (position + length)));
+            position += length;
+        }
+        return blocks;
+    }
+}
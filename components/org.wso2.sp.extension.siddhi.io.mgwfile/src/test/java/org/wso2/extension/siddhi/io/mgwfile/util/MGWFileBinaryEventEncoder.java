@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encoder of the binary usage file format read by {@link MGWFileBinaryEventDecoder}, which is used to produce test
+ * content. The type of a column is taken from its first value, so that all the values of a column must have the same
+ * type.
+ */
+public final class MGWFileBinaryEventEncoder {
+
+    private static final byte[] MAGIC = {'M', 'G', 'W', 'B'};
+    private static final int STRING = 0;
+    private static final int INT = 1;
+    private static final int LONG = 2;
+    private static final int FLOAT = 3;
+    private static final int DOUBLE = 4;
+    private static final int BOOL = 5;
+
+    private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+    public MGWFileBinaryEventEncoder() {
+        content.write(MAGIC, 0, MAGIC.length);
+        content.write(MGWFileBinaryEventDecoder.VERSION);
+    }
+
+    /**
+     * Appends a block with the given events, all of which must belong to the same stream.
+     *
+     * @return this encoder
+     */
+    public MGWFileBinaryEventEncoder addBlock(List<Event> events) {
+        byte[] block = encodeBlock(events);
+        writeVarLong(content, block.length);
+        content.write(block, 0, block.length);
+        return this;
+    }
+
+    /**
+     * Appends bytes as they are, for example to produce corrupted content.
+     *
+     * @return this encoder
+     */
+    public MGWFileBinaryEventEncoder addBytes(byte[] bytes) {
+        content.write(bytes, 0, bytes.length);
+        return this;
+    }
+
+    public byte[] toByteArray() {
+        return content.toByteArray();
+    }
+
+    /**
+     * Encodes a block without its length prefix.
+     */
+    public static byte[] encodeBlock(List<Event> events) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeString(out, events.get(0).getStreamId());
+        writeVarLong(out, events.size());
+        long previous = 0;
+        for (Event event : events) {
+            writeZigZag(out, event.getTimeStamp() - previous);
+            previous = event.getTimeStamp();
+        }
+        List<Object[]> metaData = new ArrayList<>();
+        List<Object[]> correlationData = new ArrayList<>();
+        List<Object[]> payloadData = new ArrayList<>();
+        for (Event event : events) {
+            metaData.add(event.getMetaData());
+            correlationData.add(event.getCorrelationData());
+            payloadData.add(event.getPayloadData());
+        }
+        writeColumns(out, metaData);
+        writeColumns(out, correlationData);
+        writeColumns(out, payloadData);
+        return out.toByteArray();
+    }
+
+    private static void writeColumns(ByteArrayOutputStream out, List<Object[]> rows) {
+        int columnCount = 0;
+        for (Object[] row : rows) {
+            if (row != null) {
+                columnCount = Math.max(columnCount, row.length);
+            }
+        }
+        writeVarLong(out, columnCount);
+        for (int c = 0; c < columnCount; c++) {
+            Object[] column = new Object[rows.size()];
+            for (int i = 0; i < column.length; i++) {
+                Object[] row = rows.get(i);
+                column[i] = row != null && c < row.length ? row[c] : null;
+            }
+            writeColumn(out, column);
+        }
+    }
+
+    private static void writeColumn(ByteArrayOutputStream out, Object[] column) {
+        List<Object> values = new ArrayList<>();
+        boolean[] present = new boolean[column.length];
+        for (int i = 0; i < column.length; i++) {
+            if (column[i] != null) {
+                present[i] = true;
+                values.add(column[i]);
+            }
+        }
+        int type = values.isEmpty() ? STRING : getType(values.get(0));
+        out.write(type);
+        writeBits(out, present);
+        switch (type) {
+        case STRING:
+            Map<Object, Integer> dictionary = new LinkedHashMap<>();
+            for (Object value : values) {
+                dictionary.putIfAbsent(value, dictionary.size());
+            }
+            writeVarLong(out, dictionary.size());
+            for (Object value : dictionary.keySet()) {
+                writeString(out, (String) value);
+            }
+            for (Object value : values) {
+                writeVarLong(out, dictionary.get(value));
+            }
+            break;
+        case INT:
+        case LONG:
+            for (Object value : values) {
+                writeZigZag(out, ((Number) value).longValue());
+            }
+            break;
+        case FLOAT:
+            for (Object value : values) {
+                writeFixed(out, Float.floatToIntBits((Float) value), 4);
+            }
+            break;
+        case DOUBLE:
+            for (Object value : values) {
+                writeFixed(out, Double.doubleToLongBits((Double) value), 8);
+            }
+            break;
+        default:
+            boolean[] bits = new boolean[values.size()];
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = (Boolean) values.get(i);
+            }
+            writeBits(out, bits);
+        }
+    }
+
+    private static int getType(Object value) {
+        if (value instanceof String) {
+            return STRING;
+        } else if (value instanceof Integer) {
+            return INT;
+        } else if (value instanceof Long) {
+            return LONG;
+        } else if (value instanceof Float) {
+            return FLOAT;
+        } else if (value instanceof Double) {
+            return DOUBLE;
+        } else if (value instanceof Boolean) {
+            return BOOL;
+        }
+        throw new IllegalArgumentException("Unsupported value type : " + value.getClass());
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeZigZag(ByteArrayOutputStream out, long value) {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    private static void writeFixed(ByteArrayOutputStream out, long value, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            out.write((int) (value >>> (8 * i)));
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeBits(ByteArrayOutputStream out, boolean[] bits) {
+        for (int i = 0; i < bits.length; i += 8) {
+            int b = 0;
+            for (int j = 0; j < 8 && i + j < bits.length; j++) {
+                if (bits[i + j]) {
+                    b |= 1 << j;
+                }
+            }
+            out.write(b);
+        }
+    }
+}
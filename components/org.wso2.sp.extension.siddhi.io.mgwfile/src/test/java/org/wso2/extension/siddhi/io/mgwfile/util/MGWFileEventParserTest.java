@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.io.mgwfile.util;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.commons.AttributeType;
+import org.wso2.carbon.databridge.commons.Event;
+import org.wso2.extension.siddhi.io.mgwfile.MGWFileSourceConstants;
+
+import java.util.Arrays;
+
+/**
+ * Tests of {@link MGWFileEventParser} and the payload decoding of the text usage file format.
+ */
+public class MGWFileEventParserTest {
+
+    private static final String STREAM_ID = "org.wso2.test.Request:1.0.0";
+    private static final AttributeType[] ATTRIBUTE_TYPES = new AttributeType[]{AttributeType.STRING,
+            AttributeType.INT, AttributeType.LONG, AttributeType.BOOL, AttributeType.STRING};
+
+    @BeforeClass
+    public void registerStreams() {
+        FileDataRetrieverUtil.addPayloadDecoder(STREAM_ID, ATTRIBUTE_TYPES);
+    }
+
+    @Test
+    public void testCreateEvent() {
+        MGWFileEventParser parser = new MGWFileEventParser();
+        Assert.assertTrue(parser.tokenize(line("1580000000000", "meta", "null",
+                "GET-OS-200-OS- -9223372036854775808 -OS-TRUE-OS-a-KS-b")));
+        Assert.assertEquals(parser.getStreamId(), STREAM_ID);
+        Event event = parser.createEvent(parser.getStreamId());
+        Assert.assertEquals(event.getStreamId(), STREAM_ID);
+        Assert.assertEquals(event.getTimeStamp(), 1580000000000L);
+        Assert.assertEquals(event.getMetaData(), new Object[]{"meta"});
+        Assert.assertNull(event.getCorrelationData());
+        Assert.assertEquals(event.getPayloadData(), new Object[]{"GET", 200, Long.MIN_VALUE, true, "a-KS-b"});
+    }
+
+    @Test
+    public void testMissingAndEmptyAttributes() {
+        MGWFileEventParser parser = new MGWFileEventParser();
+        Assert.assertTrue(parser.tokenize(line("1", "", "", "GET-OS--OS-7")));
+        Event event = parser.createEvent(STREAM_ID);
+        Assert.assertNull(event.getMetaData());
+        Assert.assertEquals(event.getPayloadData(), new Object[]{"GET", null, 7L, null, null});
+    }
+
+    @Test
+    public void testUnknownStream() {
+        MGWFileEventParser parser = new MGWFileEventParser();
+        Assert.assertTrue(parser.tokenize("streamId-KS-unknown-ES-timeStamp-KS-1-ES-metaData-KS-null-ES-"
+                + "correlationData-KS-null-ES-payloadData-KS-x-OS-y"));
+        Assert.assertEquals(parser.createEvent(parser.getStreamId()).getPayloadData(), new Object[0]);
+    }
+
+    @Test
+    public void testInvalidLines() {
+        MGWFileEventParser parser = new MGWFileEventParser();
+        Assert.assertFalse(parser.tokenize(""));
+        Assert.assertFalse(parser.tokenize("streamId-KS-" + STREAM_ID));
+        Assert.assertFalse(parser.tokenize("streamId-KS-" + STREAM_ID + "-ES-timeStamp-ES-metaData-KS-null-ES-"
+                + "correlationData-KS-null-ES-payloadData-KS-x"));
+        Assert.assertFalse(parser.tokenize("streamId-KS-" + STREAM_ID + "-ES-timeStamp-KS-1-ES-metaData-KS-null"));
+    }
+
+    @Test(expectedExceptions = NumberFormatException.class)
+    public void testInvalidTimeStamp() {
+        MGWFileEventParser parser = new MGWFileEventParser();
+        Assert.assertTrue(parser.tokenize(line("1a", "null", "null", "GET")));
+        parser.createEvent(STREAM_ID);
+    }
+
+    @Test(expectedExceptions = NumberFormatException.class)
+    public void testIntOutOfRange() {
+        MGWFileEventParser parser = new MGWFileEventParser();
+        Assert.assertTrue(parser.tokenize(line("1", "null", "null", "GET-OS-2147483648")));
+        parser.createEvent(STREAM_ID);
+    }
+
+    @Test
+    public void testSameEventsAsSplitting() {
+        String[] lines = new String[]{
+                line("1580000000000", "meta", "correlation", "GET-OS-200-OS-1024-OS-true-OS-/pizzashack/1.0.0"),
+                line("-1", "null", "null", "POST-OS--7-OS-+9223372036854775807-OS-FALSE-OS- padded "),
+                line("0", "null", "null", "PUT-OS-0-OS- 42-OS-yes-OS-"),
+                line("1", "null", "null", "DELETE-OS--OS--OS--OS-x")
+        };
+        for (String line : lines) {
+            MGWFileEventParser parser = new MGWFileEventParser();
+            Assert.assertTrue(parser.tokenize(line), line);
+            assertEventEquals(parser.createEvent(parser.getStreamId()), parseBySplitting(line), line);
+        }
+    }
+
+    @Test
+    public void testTrailingEmptyAttributesAreNull() {
+        String line = line("1", "null", "null", "GET-OS-200-OS--OS-");
+        // splitting drops the trailing empty attributes, hence the payload was shorter than the stream definition
+        Assert.assertEquals(parseBySplitting(line).getPayloadData(), new Object[]{"GET", 200});
+        MGWFileEventParser parser = new MGWFileEventParser();
+        Assert.assertTrue(parser.tokenize(line));
+        Assert.assertEquals(parser.createEvent(parser.getStreamId()).getPayloadData(),
+                new Object[]{"GET", 200, null, null, null});
+    }
+
+    @Test
+    public void testParseLong() {
+        Assert.assertEquals(FileDataRetrieverUtil.parseLong("x-42x", 1, 4), -42L);
+        Assert.assertEquals(FileDataRetrieverUtil.parseLong("+9223372036854775807", 0, 20), Long.MAX_VALUE);
+        for (String invalid : new String[]{"", "-", "+", "9223372036854775808", "1.0", "0x1"}) {
+            try {
+                FileDataRetrieverUtil.parseLong(invalid, 0, invalid.length());
+                Assert.fail("Parsed an invalid value : " + invalid);
+            } catch (NumberFormatException e) {
+                // expected
+            }
+        }
+    }
+
+    private static void assertEventEquals(Event actual, Event expected, String line) {
+        Assert.assertEquals(actual.getStreamId(), expected.getStreamId(), line);
+        Assert.assertEquals(actual.getTimeStamp(), expected.getTimeStamp(), line);
+        Assert.assertEquals(actual.getMetaData(), expected.getMetaData(), line);
+        Assert.assertEquals(actual.getCorrelationData(), expected.getCorrelationData(), line);
+        // the payload created by splitting lacks the trailing empty attributes
+        Assert.assertEquals(actual.getPayloadData(),
+                Arrays.copyOf(expected.getPayloadData(), ATTRIBUTE_TYPES.length), line);
+    }
+
+    /**
+     * Creates the event of the given line by splitting it on the separators, as it was done before
+     * {@link MGWFileEventParser}.
+     */
+    private static Event parseBySplitting(String line) {
+        String[] elements = line.split(MGWFileSourceConstants.EVENT_SEPARATOR);
+        String streamId = elements[0].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
+        String timeStamp = elements[1].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
+        String metaData = elements[2].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
+        String correlationData = elements[3].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
+        String payloadData = elements[4].split(MGWFileSourceConstants.KEY_VALUE_SEPARATOR)[1];
+        String[] strings = payloadData.split(MGWFileSourceConstants.OBJECT_SEPARATOR);
+        Object[] payload = new Object[strings.length];
+        for (int i = 0; i < strings.length; i++) {
+            String string = strings[i].trim();
+            if (string.isEmpty()) {
+                continue;
+            }
+            switch (ATTRIBUTE_TYPES[i]) {
+            case INT:
+                payload[i] = Integer.parseInt(string);
+                break;
+            case LONG:
+                payload[i] = Long.parseLong(string);
+                break;
+            case BOOL:
+                payload[i] = Boolean.parseBoolean(string);
+                break;
+            default:
+                payload[i] = string;
+            }
+        }
+        return new Event(streamId, Long.parseLong(timeStamp), splitMetaData(metaData), splitMetaData(correlationData),
+                payload);
+    }
+
+    private static Object[] splitMetaData(String metaData) {
+        return metaData.isEmpty() || "null".equals(metaData) ? null : new Object[]{metaData};
+    }
+
+    private static String line(String timeStamp, String metaData, String correlationData, String payloadData) {
+        return "streamId-KS-" + STREAM_ID + "-ES-timeStamp-KS-" + timeStamp + "-ES-metaData-KS-" + metaData
+                + "-ES-correlationData-KS-" + correlationData + "-ES-payloadData-KS-" + payloadData;
+    }
+}
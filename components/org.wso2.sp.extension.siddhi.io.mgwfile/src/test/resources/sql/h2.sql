@@ -0,0 +1,17 @@
+
+CREATE TABLE IF NOT EXISTS AM_USAGE_UPLOADED_FILES (
+  FILE_NAME varchar(255) NOT NULL,
+  FILE_TIMESTAMP TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  FILE_PROCESSED tinyint(1) DEFAULT 0,
+  FILE_CONTENT MEDIUMBLOB DEFAULT NULL,
+  FILE_ENTRY INT DEFAULT 0,
+  FILE_OFFSET BIGINT DEFAULT 0,
+  LEASE_EXPIRY TIMESTAMP DEFAULT NULL,
+  CLAIM_ID varchar(255) DEFAULT NULL,
+  ATTEMPT_COUNT INT DEFAULT 0,
+  CONTENT_HASH varchar(64) DEFAULT NULL,
+  PRIMARY KEY (FILE_NAME, FILE_TIMESTAMP)
+);
+
+CREATE INDEX IF NOT EXISTS IDX_AM_USAGE_FILES_PROCESSED ON AM_USAGE_UPLOADED_FILES (FILE_PROCESSED, FILE_TIMESTAMP);
+CREATE UNIQUE INDEX IF NOT EXISTS IDX_AM_USAGE_FILES_HASH ON AM_USAGE_UPLOADED_FILES (CONTENT_HASH);
\ No newline at end of file
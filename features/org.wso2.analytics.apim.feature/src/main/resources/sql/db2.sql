@@ -4,5 +4,14 @@ CREATE TABLE IF NOT EXISTS AM_USAGE_UPLOADED_FILES (
    FILE_TIMESTAMP TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
    FILE_PROCESSED SMALLINT DEFAULT 0,
    FILE_CONTENT BLOB(16777215) DEFAULT NULL,
+   FILE_ENTRY INTEGER DEFAULT 0,
+   FILE_OFFSET BIGINT DEFAULT 0,
+   LEASE_EXPIRY TIMESTAMP DEFAULT NULL,
+   CLAIM_ID varchar(255) DEFAULT NULL,
+   ATTEMPT_COUNT INTEGER DEFAULT 0,
+   CONTENT_HASH varchar(64) DEFAULT NULL,
    PRIMARY KEY (FILE_NAME, FILE_TIMESTAMP)
-);
\ No newline at end of file
+);
+
+CREATE INDEX IDX_AM_USAGE_FILES_PROCESSED ON AM_USAGE_UPLOADED_FILES (FILE_PROCESSED, FILE_TIMESTAMP);
+CREATE UNIQUE INDEX IDX_AM_USAGE_FILES_HASH ON AM_USAGE_UPLOADED_FILES (CONTENT_HASH) EXCLUDE NULL KEYS;
\ No newline at end of file
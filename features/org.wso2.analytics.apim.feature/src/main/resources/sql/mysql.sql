@@ -4,5 +4,24 @@ CREATE TABLE IF NOT EXISTS AM_USAGE_UPLOADED_FILES (
    FILE_TIMESTAMP TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
    FILE_PROCESSED tinyint(1) DEFAULT 0,
    FILE_CONTENT MEDIUMBLOB DEFAULT NULL,
-   PRIMARY KEY (FILE_NAME, FILE_TIMESTAMP)
-);
\ No newline at end of file
+   FILE_ENTRY INT DEFAULT 0,
+   FILE_OFFSET BIGINT DEFAULT 0,
+   LEASE_EXPIRY TIMESTAMP NULL DEFAULT NULL,
+   CLAIM_ID varchar(255) DEFAULT NULL,
+   ATTEMPT_COUNT INT DEFAULT 0,
+   CONTENT_HASH varchar(64) DEFAULT NULL,
+   PRIMARY KEY (FILE_NAME, FILE_TIMESTAMP),
+   INDEX IDX_AM_USAGE_FILES_PROCESSED (FILE_PROCESSED, FILE_TIMESTAMP),
+   UNIQUE INDEX IDX_AM_USAGE_FILES_HASH (CONTENT_HASH)
+);
+
+-- Optionally, partition the table by day so that the cleanup task drops whole partitions of processed files
+-- (usage.cleanup.partition.drop=true) instead of deleting them row by row. Partitions have to be added ahead of time.
+-- As every unique index of a partitioned table has to include the partitioning column, IDX_AM_USAGE_FILES_HASH has to
+-- be recreated as a non-unique index first. Then the same content uploaded concurrently may be accepted twice.
+-- ALTER TABLE AM_USAGE_UPLOADED_FILES DROP INDEX IDX_AM_USAGE_FILES_HASH, ADD INDEX IDX_AM_USAGE_FILES_HASH (CONTENT_HASH);
+-- ALTER TABLE AM_USAGE_UPLOADED_FILES PARTITION BY RANGE (UNIX_TIMESTAMP(FILE_TIMESTAMP)) (
+--    PARTITION P20200101 VALUES LESS THAN (UNIX_TIMESTAMP('2020-01-02 00:00:00')),
+--    PARTITION P20200102 VALUES LESS THAN (UNIX_TIMESTAMP('2020-01-03 00:00:00')),
+--    PARTITION PMAX VALUES LESS THAN MAXVALUE
+-- );
\ No newline at end of file
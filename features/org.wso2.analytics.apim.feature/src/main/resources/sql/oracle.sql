@@ -4,5 +4,14 @@ CREATE TABLE AM_USAGE_UPLOADED_FILES (
    FILE_TIMESTAMP TIMESTAMP(0) DEFAULT SYSTIMESTAMP,
    FILE_PROCESSED number(3) DEFAULT 0,
    FILE_CONTENT BLOB DEFAULT NULL,
+   FILE_ENTRY number(10) DEFAULT 0,
+   FILE_OFFSET number(19) DEFAULT 0,
+   LEASE_EXPIRY TIMESTAMP(0) DEFAULT NULL,
+   CLAIM_ID varchar2(255) DEFAULT NULL,
+   ATTEMPT_COUNT number(10) DEFAULT 0,
+   CONTENT_HASH varchar2(64) DEFAULT NULL,
    PRIMARY KEY (FILE_NAME, FILE_TIMESTAMP)
-);
\ No newline at end of file
+);
+
+CREATE INDEX IDX_AM_USAGE_FILES_PROCESSED ON AM_USAGE_UPLOADED_FILES (FILE_PROCESSED, FILE_TIMESTAMP);
+CREATE UNIQUE INDEX IDX_AM_USAGE_FILES_HASH ON AM_USAGE_UPLOADED_FILES (CONTENT_HASH);
\ No newline at end of file
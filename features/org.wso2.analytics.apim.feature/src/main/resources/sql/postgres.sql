@@ -4,5 +4,14 @@ CREATE TABLE IF NOT EXISTS AM_USAGE_UPLOADED_FILES (
    FILE_TIMESTAMP TIMESTAMP(0) DEFAULT CURRENT_TIMESTAMP,
    FILE_PROCESSED smallint DEFAULT 0,
    FILE_CONTENT BYTEA DEFAULT NULL,
+   FILE_ENTRY INT DEFAULT 0,
+   FILE_OFFSET BIGINT DEFAULT 0,
+   LEASE_EXPIRY TIMESTAMP(0) DEFAULT NULL,
+   CLAIM_ID varchar(255) DEFAULT NULL,
+   ATTEMPT_COUNT INT DEFAULT 0,
+   CONTENT_HASH varchar(64) DEFAULT NULL,
    PRIMARY KEY (FILE_NAME, FILE_TIMESTAMP)
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS IDX_AM_USAGE_FILES_PROCESSED ON AM_USAGE_UPLOADED_FILES (FILE_PROCESSED, FILE_TIMESTAMP);
+CREATE UNIQUE INDEX IF NOT EXISTS IDX_AM_USAGE_FILES_HASH ON AM_USAGE_UPLOADED_FILES (CONTENT_HASH);
\ No newline at end of file
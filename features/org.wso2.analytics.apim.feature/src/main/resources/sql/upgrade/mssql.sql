@@ -0,0 +1,16 @@
+-- Upgrades AM_USAGE_UPLOADED_FILES created by an earlier version, which only has the FILE_NAME, FILE_TIMESTAMP,
+-- FILE_PROCESSED and FILE_CONTENT columns. Stop all the worker nodes before running it. Files which were being
+-- processed when the nodes were stopped are processed again from the beginning.
+
+ALTER TABLE AM_USAGE_UPLOADED_FILES ADD
+   FILE_ENTRY INT DEFAULT 0 WITH VALUES,
+   FILE_OFFSET BIGINT DEFAULT 0 WITH VALUES,
+   LEASE_EXPIRY DATETIME2(0) DEFAULT NULL,
+   CLAIM_ID varchar(255) DEFAULT NULL,
+   ATTEMPT_COUNT INT DEFAULT 0 WITH VALUES,
+   CONTENT_HASH varchar(64) DEFAULT NULL;
+
+CREATE INDEX IDX_AM_USAGE_FILES_PROCESSED ON AM_USAGE_UPLOADED_FILES (FILE_PROCESSED, FILE_TIMESTAMP);
+CREATE UNIQUE INDEX IDX_AM_USAGE_FILES_HASH ON AM_USAGE_UPLOADED_FILES (CONTENT_HASH) WHERE CONTENT_HASH IS NOT NULL;
+
+UPDATE AM_USAGE_UPLOADED_FILES SET LEASE_EXPIRY=GETDATE() WHERE FILE_PROCESSED=1;
@@ -0,0 +1,19 @@
+-- Upgrades AM_USAGE_UPLOADED_FILES created by an earlier version, which only has the FILE_NAME, FILE_TIMESTAMP,
+-- FILE_PROCESSED and FILE_CONTENT columns. Stop all the worker nodes before running it. Files which were being
+-- processed when the nodes were stopped are processed again from the beginning.
+
+ALTER TABLE AM_USAGE_UPLOADED_FILES ADD (
+   FILE_ENTRY number(10) DEFAULT 0,
+   FILE_OFFSET number(19) DEFAULT 0,
+   LEASE_EXPIRY TIMESTAMP(0) DEFAULT NULL,
+   CLAIM_ID varchar2(255) DEFAULT NULL,
+   ATTEMPT_COUNT number(10) DEFAULT 0,
+   CONTENT_HASH varchar2(64) DEFAULT NULL
+);
+
+CREATE INDEX IDX_AM_USAGE_FILES_PROCESSED ON AM_USAGE_UPLOADED_FILES (FILE_PROCESSED, FILE_TIMESTAMP);
+CREATE UNIQUE INDEX IDX_AM_USAGE_FILES_HASH ON AM_USAGE_UPLOADED_FILES (CONTENT_HASH);
+
+UPDATE AM_USAGE_UPLOADED_FILES SET FILE_ENTRY=0, FILE_OFFSET=0, ATTEMPT_COUNT=0 WHERE ATTEMPT_COUNT IS NULL;
+UPDATE AM_USAGE_UPLOADED_FILES SET LEASE_EXPIRY=SYSTIMESTAMP WHERE FILE_PROCESSED=1;
+COMMIT;
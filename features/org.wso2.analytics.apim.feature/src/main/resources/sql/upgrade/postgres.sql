@@ -0,0 +1,17 @@
+-- Upgrades AM_USAGE_UPLOADED_FILES created by an earlier version, which only has the FILE_NAME, FILE_TIMESTAMP,
+-- FILE_PROCESSED and FILE_CONTENT columns. Stop all the worker nodes before running it. Files which were being
+-- processed when the nodes were stopped are processed again from the beginning.
+
+ALTER TABLE AM_USAGE_UPLOADED_FILES
+   ADD COLUMN IF NOT EXISTS FILE_ENTRY INT DEFAULT 0,
+   ADD COLUMN IF NOT EXISTS FILE_OFFSET BIGINT DEFAULT 0,
+   ADD COLUMN IF NOT EXISTS LEASE_EXPIRY TIMESTAMP(0) DEFAULT NULL,
+   ADD COLUMN IF NOT EXISTS CLAIM_ID varchar(255) DEFAULT NULL,
+   ADD COLUMN IF NOT EXISTS ATTEMPT_COUNT INT DEFAULT 0,
+   ADD COLUMN IF NOT EXISTS CONTENT_HASH varchar(64) DEFAULT NULL;
+
+CREATE INDEX IF NOT EXISTS IDX_AM_USAGE_FILES_PROCESSED ON AM_USAGE_UPLOADED_FILES (FILE_PROCESSED, FILE_TIMESTAMP);
+CREATE UNIQUE INDEX IF NOT EXISTS IDX_AM_USAGE_FILES_HASH ON AM_USAGE_UPLOADED_FILES (CONTENT_HASH);
+
+UPDATE AM_USAGE_UPLOADED_FILES SET FILE_ENTRY=0, FILE_OFFSET=0, ATTEMPT_COUNT=0 WHERE ATTEMPT_COUNT IS NULL;
+UPDATE AM_USAGE_UPLOADED_FILES SET LEASE_EXPIRY=CURRENT_TIMESTAMP WHERE FILE_PROCESSED=1;